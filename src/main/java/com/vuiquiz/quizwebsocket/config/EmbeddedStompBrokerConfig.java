@@ -0,0 +1,36 @@
+package com.vuiquiz.quizwebsocket.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * In-process ActiveMQ Artemis with a STOMP acceptor, so relay broker mode can be run and tested without an
+ * external broker. Enable with the {@code embedded-broker} profile (see application-embedded-broker.yml).
+ */
+@Configuration
+@Profile("embedded-broker")
+@Slf4j
+public class EmbeddedStompBrokerConfig {
+
+    // Started during bean initialization, i.e. before the broker relay connects on context start
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public EmbeddedActiveMQ embeddedStompBroker(WebSocketProperties properties) throws Exception {
+        WebSocketProperties.Broker broker = properties.getBroker();
+        ConfigurationImpl configuration = new ConfigurationImpl();
+        configuration.setPersistenceEnabled(false);
+        configuration.setSecurityEnabled(false);
+        configuration.setJMXManagementEnabled(false);
+        // /queue/... and /topic/... keep the point-to-point and publish-subscribe semantics of the simple broker
+        configuration.addAcceptorConfiguration("stomp", "tcp://" + broker.getRelayHost() + ":" + broker.getRelayPort()
+                + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+
+        EmbeddedActiveMQ server = new EmbeddedActiveMQ();
+        server.setConfiguration(configuration);
+        log.info("Embedded STOMP broker will listen on {}:{}", broker.getRelayHost(), broker.getRelayPort());
+        return server;
+    }
+}
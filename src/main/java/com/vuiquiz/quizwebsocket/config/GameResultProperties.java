@@ -0,0 +1,50 @@
+package com.vuiquiz.quizwebsocket.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for storing the results of finished games, bound from {@code app.results.*}.
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "app.results")
+public class GameResultProperties {
+
+    private Copy copy = new Copy();
+    private Finalize finalize = new Finalize();
+    private Checkpoint checkpoint = new Checkpoint();
+
+    @Setter
+    @Getter
+    public static class Copy {
+        // Player and answer rows are streamed with PostgreSQL COPY instead of INSERT batches from this many rows on
+        private boolean enabled = true;
+        private int minRows = 20000;
+    }
+
+    @Setter
+    @Getter
+    public static class Finalize {
+        // Accept finalize requests into the spool and persist them in the background; false = persist in the request
+        private boolean async = true;
+        private String spoolDir = "./spool/finalize";
+        private int workers = 2;
+        private int queueCapacity = 1000;
+        private int maxAttempts = 3;
+        private long retryDelayMs = 5000;
+        // How long the status of a finished job can still be fetched
+        private long jobRetentionMs = 3600000;
+    }
+
+    @Setter
+    @Getter
+    public static class Checkpoint {
+        // Checkpointed sessions still unfinalized this long after they were created are marked ABANDONED
+        private long abandonAfterMs = 21600000;
+        private long sweepIntervalMs = 600000;
+    }
+}
@@ -79,6 +79,7 @@ public class WebSecurityConfig {
                                 .requestMatchers("/api/session/join/**").permitAll()
                                 .requestMatchers(HttpMethod.GET, "/api/quizzes/public").permitAll()
                                 .requestMatchers("/api/session/finalize").authenticated()
+                                .requestMatchers("/api/session/checkpoint").authenticated()
                                 // Public reports (as per user's previous statement)
                                 .requestMatchers("/api/reports/**").permitAll()
                                 // Authenticated user's own session history
@@ -92,6 +93,8 @@ public class WebSecurityConfig {
                                 .requestMatchers("/api/admin/images/**").hasRole("ADMIN")
                                 .requestMatchers("/api/admin/tags/**").hasRole("ADMIN")
                                 .requestMatchers("/api/admin/reports/**").hasRole("ADMIN")
+                                .requestMatchers("/actuator/health").permitAll()
+                                .requestMatchers("/actuator/**").hasRole("ADMIN")
                                 .anyRequest().authenticated()
                 );
 
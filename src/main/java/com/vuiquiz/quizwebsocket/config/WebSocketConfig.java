@@ -1,15 +1,36 @@
 package com.vuiquiz.quizwebsocket.config;
 
+import com.vuiquiz.quizwebsocket.service.websocket.ClusterTopicGuard;
+import com.vuiquiz.quizwebsocket.service.websocket.CompactFrameCodec;
+import com.vuiquiz.quizwebsocket.service.websocket.InboundLaneExecutor;
+import com.vuiquiz.quizwebsocket.service.websocket.InboundRateLimitInterceptor;
+import com.vuiquiz.quizwebsocket.service.websocket.OutboundPriorityExecutor;
+import com.vuiquiz.quizwebsocket.service.websocket.SlowConsumerPolicy;
+import com.vuiquiz.quizwebsocket.service.websocket.WebSocketCompression;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final InboundLaneExecutor inboundLaneExecutor;
+    private final InboundRateLimitInterceptor inboundRateLimitInterceptor;
+    private final OutboundPriorityExecutor outboundPriorityExecutor;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final CompactFrameCodec compactFrameCodec;
+    private final WebSocketCompression webSocketCompression;
+    private final WebSocketProperties properties;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // For messages TO clients (broadcast or specific)
@@ -18,7 +39,22 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Spring resolves this to a user-specific queue like "/user/{username}/queue/private"
         // or "/queue/private-user<session_id>" if no username.
         // The simple broker needs to be aware of these top-level prefixes.
-        config.enableSimpleBroker("/topic", "/queue"); // <--- MODIFIED HERE
+        WebSocketProperties.Broker broker = properties.getBroker();
+        if (broker.getMode() == WebSocketProperties.BrokerMode.RELAY) {
+            // Same prefixes, but kept on an external broker so a game's participants may use any node
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(broker.getRelayHost())
+                    .setRelayPort(broker.getRelayPort())
+                    .setClientLogin(broker.getClientLogin())
+                    .setClientPasscode(broker.getClientPasscode())
+                    .setSystemLogin(broker.getSystemLogin())
+                    .setSystemPasscode(broker.getSystemPasscode());
+            if (StringUtils.hasText(broker.getVirtualHost())) {
+                relay.setVirtualHost(broker.getVirtualHost());
+            }
+        } else {
+            config.enableSimpleBroker("/topic", "/queue"); // <--- MODIFIED HERE
+        }
 
         // For messages FROM clients to @MessageMapping methods in controllers
         config.setApplicationDestinationPrefixes("/app");
@@ -34,6 +70,37 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // WebSocket handshake endpoint
         registry.addEndpoint("/ws-quiz")
+                .setHandshakeHandler(webSocketCompression.handshakeHandler()) // Decides on permessage-deflate
                 .setAllowedOrigins("*"); // Adjust in production
     }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Messages of one game are handled in order on one lane; different games run in parallel
+        registration.executor(inboundLaneExecutor);
+        // Runs on the transport thread, so flooding clients are cut off before their frames reach a lane
+        registration.interceptors(inboundRateLimitInterceptor, new ClusterTopicGuard());
+        // CBOR frames are turned into JSON before they are queued, so everything behind the channel sees JSON only
+        registration.interceptors(compactFrameCodec.inbound());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Sessions waiting for a question start or time-up are served before those with only roster deltas and
+        // relayed answers queued; each session still gets its frames in publish order
+        registration.executor(outboundPriorityExecutor);
+        // Sees every frame before it reaches a session, so a session that is behind gets only the newest supersedable ones
+        registration.interceptors(slowConsumerPolicy);
+        // Last, on the frames that are actually sent: JSON -> CBOR for sessions that negotiated it
+        registration.interceptors(compactFrameCodec.outbound());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        WebSocketProperties.SlowConsumer slowConsumer = properties.getSlowConsumer();
+        registration.setSendTimeLimit(slowConsumer.getSendTimeLimitMs())
+                .setSendBufferSizeLimit(slowConsumer.getSendBufferSizeLimit())
+                .addDecoratorFactory(slowConsumerPolicy)
+                .addDecoratorFactory(webSocketCompression);
+    }
 }
@@ -0,0 +1,185 @@
+package com.vuiquiz.quizwebsocket.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tuning knobs for the real-time game pipeline, bound from {@code app.websocket.*}.
+ */
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "app.websocket")
+public class WebSocketProperties {
+
+    private Roster roster = new Roster();
+    private Inbound inbound = new Inbound();
+    private Outbound outbound = new Outbound();
+    private SlowConsumer slowConsumer = new SlowConsumer();
+    private Codec codec = new Codec();
+    private Compression compression = new Compression();
+    private QuestionTimer questionTimer = new QuestionTimer();
+    private AnswerDigest answerDigest = new AnswerDigest();
+    private RateLimit rateLimit = new RateLimit();
+    private Broker broker = new Broker();
+    private Resume resume = new Resume();
+    private LastValue lastValue = new LastValue();
+    private Pin pin = new Pin();
+    private Reaper reaper = new Reaper();
+
+    public enum BrokerMode {
+        SIMPLE, // In-memory broker; every participant of a game must be connected to the same node
+        RELAY // External STOMP broker shared by all nodes
+    }
+
+    @Setter
+    @Getter
+    public static class Roster {
+        // Join/leave events of one game within this window are sent as a single ROSTER_DELTA frame
+        private long debounceMs = 150;
+    }
+
+    @Setter
+    @Getter
+    public static class Inbound {
+        // Number of ordered game lanes for the clientInboundChannel; 0 means one per CPU core
+        private int lanes = 0;
+        // Messages a single lane may queue before new ones are rejected
+        private int laneQueueCapacity = 10_000;
+    }
+
+    @Setter
+    @Getter
+    public static class Outbound {
+        // Threads sending frames to clients, most urgent priority class first (in publish order per destination); 0 means two per CPU core
+        private int threads = 0;
+    }
+
+    @Setter
+    @Getter
+    public static class SlowConsumer {
+        private boolean enabled = true;
+        // Frames handed to a session but not yet written to its socket, from which on supersedable frames are conflated
+        private int conflateAfterFrames = 32;
+        // Backlog at which the session is closed
+        private int maxBacklogFrames = 512;
+        // Spring's own limits for a single session's send buffer; the session is closed when either is exceeded
+        private int sendTimeLimitMs = 10_000;
+        private int sendBufferSizeLimit = 512 * 1024;
+    }
+
+    @Setter
+    @Getter
+    public static class Codec {
+        // Clients may ask for CBOR frames with a frame-codec header at CONNECT and send CBOR as application/cbor
+        private boolean enabled = true;
+    }
+
+    @Setter
+    @Getter
+    public static class Compression {
+        // Whether permessage-deflate may be negotiated at the handshake; off, Tomcat would accept any browser's offer
+        private boolean enabled = false;
+        // Reset the server's compressor after every frame, so idle connections hold no deflate window
+        private boolean serverNoContextTakeover = true;
+        // Trial-deflate outgoing frames and report ratio and time per game
+        private boolean measure = false;
+        // Frames below this size are counted, not deflated, by the measurement
+        private int minFrameBytes = 256;
+    }
+
+    @Setter
+    @Getter
+    public static class QuestionTimer {
+        // Measure reaction times on the server and close answer windows when the question's time limit is known
+        private boolean enabled = true;
+        // Added to the time limit before the server closes the window, for answers still in flight
+        private long closeGraceMs = 500;
+        // Answers after the window closed are dropped instead of relayed
+        private boolean rejectLateAnswers = true;
+    }
+
+    @Setter
+    @Getter
+    public static class AnswerDigest {
+        // Whether hosts may switch their game to digest mode via /app/digest/{gamepin}
+        private boolean enabled = true;
+        // Cadence of ANSWER_DIGEST frames while a slide is open
+        private long tickMs = 250;
+        // Number of fastest answers listed in each digest
+        private int fastestCount = 5;
+    }
+
+    @Setter
+    @Getter
+    public static class RateLimit {
+        private boolean enabled = true;
+        // Average SEND/SUBSCRIBE frames per second a single STOMP session may push, and how many at once
+        private double sessionRatePerSecond = 20;
+        private int sessionBurst = 40;
+        // Same for all frames addressed to one game; sized for every player answering within a second
+        private double gameRatePerSecond = 1000;
+        private int gameBurst = 2000;
+        // Send a STOMP ERROR instead of silently dropping excess frames
+        private boolean rejectWithError = false;
+    }
+
+    @Setter
+    @Getter
+    public static class Broker {
+        private BrokerMode mode = BrokerMode.SIMPLE;
+        // External STOMP broker used in RELAY mode (also where the embedded-broker profile listens)
+        private String relayHost = "localhost";
+        private int relayPort = 61613;
+        private String clientLogin = "guest";
+        private String clientPasscode = "guest";
+        private String systemLogin = "guest";
+        private String systemPasscode = "guest";
+        private String virtualHost;
+        // How often a node announces itself to the others, and after how long a silent node's participants are dropped
+        private long nodeHeartbeatMs = 5_000;
+        private long nodeTimeoutMs = 15_000;
+    }
+
+    @Setter
+    @Getter
+    public static class Resume {
+        // Whether players get a resume token and keep their place for a while after their socket drops
+        private boolean enabled = true;
+        // How long a disconnected player keeps its place before it is removed from the game
+        private long graceMs = 15_000;
+        // Recent host broadcasts kept per game, and private frames kept per player, for replay after a resume
+        private int gameReplayCapacity = 64;
+        private int playerReplayCapacity = 16;
+    }
+
+    @Setter
+    @Getter
+    public static class LastValue {
+        // Whether new subscribers of /topic/player/{pin} get the latest host broadcast of every message ID
+        private boolean enabled = true;
+        // Distinct message IDs cached per game, and the largest frame worth caching
+        private int maxTypesPerGame = 16;
+        private int maxFrameBytes = 65_536;
+    }
+
+    @Setter
+    @Getter
+    public static class Pin {
+        // Sessions created through /api/session/create that no host joined within this time are removed
+        private long placeholderTtlMs = 600_000;
+    }
+
+    @Setter
+    @Getter
+    public static class Reaper {
+        // How often game sessions are checked for eviction
+        private long intervalMs = 60_000;
+        // Games nobody sent anything to for this long are evicted, whoever is still subscribed
+        private long idleTimeoutMs = 1_800_000;
+        // Games whose host left this long ago are evicted, even if players are still connected
+        private long hostlessTimeoutMs = 300_000;
+    }
+}
@@ -1,8 +1,16 @@
 // src/main/java/com/vuiquiz/quizwebsocket/controller/GameResultController.java
 package com.vuiquiz.quizwebsocket.controller;
 
+import com.vuiquiz.quizwebsocket.config.GameResultProperties;
+import com.vuiquiz.quizwebsocket.dto.FinalizationJobDto;
 import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto;
+import com.vuiquiz.quizwebsocket.dto.SessionSlideCheckpointDto;
+import com.vuiquiz.quizwebsocket.exception.FinalizationQueueFullException;
+import com.vuiquiz.quizwebsocket.exception.ForbiddenAccessException;
+import com.vuiquiz.quizwebsocket.exception.ResourceNotFoundException;
+import com.vuiquiz.quizwebsocket.exception.SessionAlreadyFinalizedException;
 import com.vuiquiz.quizwebsocket.payload.response.MessageResponse;
+import com.vuiquiz.quizwebsocket.service.FinalizationJobService;
 import com.vuiquiz.quizwebsocket.service.GameResultService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -11,11 +19,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
@@ -25,29 +37,104 @@ import org.springframework.web.bind.annotation.*;
 public class GameResultController {
 
     private final GameResultService gameResultService;
+    private final FinalizationJobService finalizationJobService;
+    private final GameResultProperties gameResultProperties;
 
     @PostMapping("/finalize")
     @PreAuthorize("isAuthenticated()") // Or a more specific role/permission like "hasRole('HOST')" or "hasAuthority('FINALIZE_SESSION')"
     @Operation(summary = "Finalize a game session and save results",
-            description = "Receives the complete game session data after it has ended and stores it in the database. This includes session details, player scores, slide information, and individual answers.",
+            description = "Receives the complete game session data after it has ended and stores it in the database. This includes session details, player scores, slide information, and individual answers. "
+                    + "With app.results.finalize.async (the default) the payload is accepted into a durable spool and stored in the background; the response carries a job ID to poll. "
+                    + "Retrying with the same Idempotency-Key header (or idempotencyKey field) returns the first result instead of storing the session twice.",
             security = @SecurityRequirement(name = "bearerAuth"))
     @ApiResponse(responseCode = "201", description = "Game session results saved successfully")
+    @ApiResponse(responseCode = "202", description = "Game session results accepted, see GET /api/session/finalize/{jobId}")
     @ApiResponse(responseCode = "400", description = "Invalid input data")
     @ApiResponse(responseCode = "401", description = "Unauthorized - User not authenticated or not authorized")
+    @ApiResponse(responseCode = "403", description = "The session names another user as its host")
+    @ApiResponse(responseCode = "404", description = "The quiz does not exist")
     @ApiResponse(responseCode = "500", description = "Internal server error during processing")
-    public ResponseEntity<?> finalizeSession(@Valid @RequestBody SessionFinalizationDto sessionFinalizationDto) {
+    @ApiResponse(responseCode = "503", description = "Too many finalizations waiting, try again shortly")
+    public ResponseEntity<?> finalizeSession(@Valid @RequestBody SessionFinalizationDto sessionFinalizationDto,
+                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
+            if (StringUtils.hasText(idempotencyKey) && !StringUtils.hasText(sessionFinalizationDto.getIdempotencyKey())) {
+                sessionFinalizationDto.setIdempotencyKey(idempotencyKey);
+            }
             log.info("Received request to finalize session for gamePin: {}", sessionFinalizationDto.getGamePin());
+            if (gameResultProperties.getFinalize().isAsync()) {
+                FinalizationJobDto job = finalizationJobService.submit(sessionFinalizationDto);
+                return ResponseEntity.accepted()
+                        .location(URI.create("/api/session/finalize/" + job.getJobId()))
+                        .body(job);
+            }
             String sessionId = gameResultService.saveSessionFinalization(sessionFinalizationDto);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(new MessageResponse("Game session results saved successfully. Session ID: " + sessionId));
         } catch (IllegalArgumentException e) {
             log.warn("Bad request while finalizing session for gamePin {}: {}", sessionFinalizationDto.getGamePin(), e.getMessage());
             return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        } catch (ForbiddenAccessException e) {
+            log.warn("Forbidden finalize for gamePin {}: {}", sessionFinalizationDto.getGamePin(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new MessageResponse("Error: " + e.getMessage()));
+        } catch (ResourceNotFoundException e) {
+            log.warn("Not finalizing session for gamePin {}: {}", sessionFinalizationDto.getGamePin(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse("Error: " + e.getMessage()));
+        } catch (FinalizationQueueFullException e) {
+            log.warn("Not accepting finalize for gamePin {}: {}", sessionFinalizationDto.getGamePin(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(new MessageResponse("Too many sessions are being finalized, please try again shortly."));
         } catch (Exception e) {
             log.error("Error finalizing session for gamePin {}: {}", sessionFinalizationDto.getGamePin(), e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new MessageResponse("An unexpected error occurred while saving session results."));
         }
     }
+
+    @PostMapping("/checkpoint")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Save the slides of a game in progress",
+            description = "Stores slides as they close, with their answers and the players' running totals, so that writes are spread over the game. "
+                    + "The session is identified like its finalization (Idempotency-Key, or gamePin + host + sessionStartTime); "
+                    + "POST /api/session/finalize then completes it and only needs the final player totals. Slides already stored are skipped.",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponse(responseCode = "200", description = "Slides saved")
+    @ApiResponse(responseCode = "400", description = "Invalid input data")
+    @ApiResponse(responseCode = "401", description = "Unauthorized - User not authenticated or not authorized")
+    @ApiResponse(responseCode = "409", description = "The session was already finalized")
+    @ApiResponse(responseCode = "500", description = "Internal server error during processing")
+    public ResponseEntity<MessageResponse> checkpointSession(@Valid @RequestBody SessionSlideCheckpointDto checkpointDto,
+                                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (StringUtils.hasText(idempotencyKey) && !StringUtils.hasText(checkpointDto.getIdempotencyKey())) {
+            checkpointDto.setIdempotencyKey(idempotencyKey);
+        }
+        try {
+            String sessionId = gameResultService.saveSlideCheckpoint(checkpointDto);
+            return ResponseEntity.ok(new MessageResponse("Slides saved. Session ID: " + sessionId));
+        } catch (IllegalArgumentException e) {
+            log.warn("Bad request while checkpointing session for gamePin {}: {}", checkpointDto.getGamePin(), e.getMessage());
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        } catch (SessionAlreadyFinalizedException e) {
+            log.warn("Not checkpointing session for gamePin {}: {}", checkpointDto.getGamePin(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new MessageResponse("Error: " + e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error checkpointing session for gamePin {}: {}", checkpointDto.getGamePin(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new MessageResponse("An unexpected error occurred while saving the slides."));
+        }
+    }
+
+    @GetMapping("/finalize/{jobId}")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Get the status of a finalization job",
+            description = "Returns the status of a finalization accepted by POST /api/session/finalize. Only the user who submitted it can see it; finished jobs stay visible for app.results.finalize.job-retention-ms.",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponse(responseCode = "200", description = "Job status")
+    @ApiResponse(responseCode = "404", description = "No such job for this user, or it expired")
+    public ResponseEntity<FinalizationJobDto> getFinalizationJob(@PathVariable String jobId) {
+        return finalizationJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
 }
\ No newline at end of file
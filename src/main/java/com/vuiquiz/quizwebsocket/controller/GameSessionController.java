@@ -21,12 +21,17 @@ public class GameSessionController {
     /**
      * API to create a placeholder for a new WebSocket game session.
      * The first client connecting via WebSocket for this pin will become the host.
-     * @return A map containing the generated gamePin.
+     * @return A map containing the generated gamePin, or 503 if every PIN is in use.
      */
     @PostMapping("/create")
     public ResponseEntity<Map<String, String>> createSession() {
-        // CORRECTED: Call createSession() without arguments, as defined in the refactored GameSessionManager
-        String gamePin = sessionManager.createSession();
+        String gamePin;
+        try {
+            gamePin = sessionManager.createSession();
+        } catch (IllegalStateException e) {
+            log.error("API: /api/session/create failed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", "No game PIN available, try again later."));
+        }
         log.info("API: /api/session/create called, generated gamePin: {}", gamePin);
         return ResponseEntity.ok(Map.of("gamePin", gamePin));
     }
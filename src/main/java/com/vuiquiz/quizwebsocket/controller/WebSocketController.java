@@ -1,18 +1,28 @@
 package com.vuiquiz.quizwebsocket.controller;
 
+import com.vuiquiz.quizwebsocket.service.websocket.AnswerDigestService;
+import com.vuiquiz.quizwebsocket.service.websocket.GameActionRelayEngine;
+import com.vuiquiz.quizwebsocket.service.websocket.GameMessageBroadcaster;
+import com.vuiquiz.quizwebsocket.service.websocket.GameMessageIds;
 import com.vuiquiz.quizwebsocket.service.websocket.GameSessionManager;
+import com.vuiquiz.quizwebsocket.service.websocket.OutboundPriority;
+import com.vuiquiz.quizwebsocket.service.websocket.PlayerResumeService;
+import com.vuiquiz.quizwebsocket.service.websocket.QuestionTimer;
+import com.vuiquiz.quizwebsocket.service.websocket.RelayMetrics;
+import com.vuiquiz.quizwebsocket.service.websocket.RosterUpdateCoalescer;
+import com.vuiquiz.quizwebsocket.service.websocket.SlowConsumerPolicy;
+import com.vuiquiz.quizwebsocket.service.websocket.TopicLastValueCache;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -22,25 +32,35 @@ import java.util.Map;
 public class WebSocketController {
 
     private final GameSessionManager sessionManager;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final ObjectMapper objectMapper;
+    private final GameMessageBroadcaster broadcaster;
+    private final GameActionRelayEngine relayEngine;
+    private final RosterUpdateCoalescer rosterUpdateCoalescer;
+    private final AnswerDigestService answerDigestService;
+    private final PlayerResumeService playerResumeService;
+    private final RelayMetrics relayMetrics;
+    private final TopicLastValueCache lastValueCache;
+    private final QuestionTimer questionTimer;
 
-    private static final TypeReference<List<Map<String, Object>>> MESSAGE_LIST_TYPE_REF = new TypeReference<>() {};
     private static final String USER_QUEUE_PRIVATE_SUFFIX = "/queue/private"; // For client subscription
     private static final String BROKER_USER_QUEUE_PREFIX = "/queue/private-user"; // How SimpleBroker sees it
 
     @MessageMapping("/controller/{gamepin}")
     public void relayGameAction(@DestinationVariable String gamepin,
-                                @Payload String messagePayload,
+                                @Payload byte[] messagePayload,
                                 SimpMessageHeaderAccessor headerAccessor) {
 
+        long startNanos = System.nanoTime();
         String senderSessionId = headerAccessor.getSessionId();
         if (senderSessionId == null) {
             log.error("Cannot process message without sender session ID for gamepin {}", gamepin);
             return;
         }
+        // A player that resumed on a new socket keeps acting as its original ID
+        senderSessionId = playerResumeService.participantIdOf(senderSessionId);
 
-        log.debug("Received raw message on /app/controller/{} from {}: {}", gamepin, senderSessionId, messagePayload);
+        if (log.isDebugEnabled()) {
+            log.debug("Received raw message on /app/controller/{} from {}: {}", gamepin, senderSessionId, new String(messagePayload, StandardCharsets.UTF_8));
+        }
 
         GameSessionManager.SessionInfo session = sessionManager.getSession(gamepin);
         if (session == null) {
@@ -48,86 +68,155 @@ public class WebSocketController {
             return;
         }
 
+        session.touch();
         boolean isHostMessage = session.isHost(senderSessionId);
+        relayMetrics.recordInbound(isHostMessage, messagePayload.length);
 
         try {
-            List<Map<String, Object>> messageList = objectMapper.readValue(messagePayload, MESSAGE_LIST_TYPE_REF);
+            List<GameActionRelayEngine.RelayFrame> frames = relayEngine.relay(messagePayload, senderSessionId, isHostMessage);
 
-            if (messageList == null || messageList.isEmpty()) {
+            if (frames.isEmpty()) {
+                relayMetrics.recordFailure();
                 log.warn("Received empty or invalid message structure from {} for session {}", senderSessionId, gamepin);
                 return;
             }
 
-            for (Map<String, Object> message : messageList) {
-                Map<String, Object> dataMap = null;
-                Object dataObj = message.get("data");
-
-                if (dataObj instanceof Map) {
-                    dataMap = (Map<String, Object>) dataObj;
-                } else {
-                    log.warn("Message from {} for session {} is missing 'data' map or has incorrect format. Original message: {}", senderSessionId, gamepin, message);
-                    continue;
-                }
-
-                boolean processedPrivately = false;
-
-                if (isHostMessage && dataMap != null) {
-                    Object messageDataIdObj = dataMap.get("id");
-                    Object targetPlayerCidObj = dataMap.get("cid");
-
-                    if (messageDataIdObj instanceof Number && targetPlayerCidObj instanceof String) {
-                        int msgId = ((Number) messageDataIdObj).intValue();
-                        String targetPlayerCid = (String) targetPlayerCidObj; // This IS the STOMP session ID of the player
-
-                        if (msgId == 8 || msgId == 13) {
-                            String privateMessagePayloadJson = objectMapper.writeValueAsString(message); // Use the original message structure
-
-                            // +++ MODIFICATION: Send directly to the resolved broker queue +++
-                            String resolvedBrokerDestination = BROKER_USER_QUEUE_PREFIX + targetPlayerCid;
-
-                            log.info("Relaying private message from HOST {} to Player {} on resolved broker destination: {}. Message: {}",
-                                    senderSessionId, targetPlayerCid, resolvedBrokerDestination, privateMessagePayloadJson);
-
-                            // Instead of convertAndSendToUser, use convertAndSend directly to the broker queue
-                            // that the client (sub-1) is actually subscribed to.
-                            messagingTemplate.convertAndSend(resolvedBrokerDestination, privateMessagePayloadJson);
-                            // +++ END MODIFICATION +++
-
-                            processedPrivately = true;
-                        }
+            for (GameActionRelayEngine.RelayFrame frame : frames) {
+                if (frame.isPrivate()) {
+                    relayMetrics.recordFrame(RelayMetrics.Route.ofPrivate(frame.messageId()), frame.payload().length);
+                    Map<String, String> seqHeaders = playerResumeService.recordPrivate(gamepin, frame.privateTargetSessionId(), frame.payload());
+                    String targetSessionId = playerResumeService.currentSessionOf(frame.privateTargetSessionId());
+                    if (targetSessionId == null) {
+                        log.debug("Player {} is reconnecting; private message from HOST {} kept for replay.", frame.privateTargetSessionId(), senderSessionId);
+                        continue;
                     }
-                }
-
-                if (!processedPrivately) {
-                    if (dataMap != null) {
-                        dataMap.put("cid", senderSessionId);
-                    } else {
-                        log.error("DataMap is null when attempting to set sender's CID for non-private message. Session: {}, Sender: {}. Message: {}", gamepin, senderSessionId, message);
+                    // Send directly to the resolved broker queue the player (sub-1) is subscribed to
+                    String resolvedBrokerDestination = BROKER_USER_QUEUE_PREFIX + targetSessionId;
+                    log.debug("Relaying private message from HOST {} to Player {} on resolved broker destination: {}",
+                            senderSessionId, frame.privateTargetSessionId(), resolvedBrokerDestination);
+                    broadcaster.send(resolvedBrokerDestination, frame.payload(), seqHeaders, OutboundPriority.of(frame.messageId()),
+                            SlowConsumerPolicy.conflationKeyOf(frame.messageId()));
+                } else if (isHostMessage) {
+                    if (!questionTimer.onHostBroadcast(gamepin, frame.messageId(), frame.payload())) {
+                        log.debug("Dropping TIME_UP from HOST {}: the server already closed the question.", senderSessionId);
                         continue;
                     }
-                    String modifiedPayload = objectMapper.writeValueAsString(message); // Use the original message map
-                    if (isHostMessage) {
-                        String destination = "/topic/player/" + gamepin;
-                        log.info("Broadcasting message from HOST {} to Players [{}]: {}", senderSessionId, destination, modifiedPayload);
-                        messagingTemplate.convertAndSend(destination, modifiedPayload);
-                    } else {
-                        String hostSessionId = session.getHostSessionId();
-                        if (hostSessionId != null) {
-                            String destination = "/topic/host/" + gamepin;
-                            log.info("Relaying message from PLAYER {} to Host {} [{}]: {}", senderSessionId, hostSessionId, destination, modifiedPayload);
-                            messagingTemplate.convertAndSend(destination, modifiedPayload);
-                        } else {
-                            log.warn("Player {} sent message for session {} but host is not connected.", senderSessionId, gamepin);
+                    String destination = "/topic/player/" + gamepin;
+                    log.debug("Broadcasting message from HOST {} to Players [{}]", senderSessionId, destination);
+                    relayMetrics.recordFrame(RelayMetrics.Route.HOST_BROADCAST, frame.payload().length);
+                    Map<String, String> seqHeaders = playerResumeService.recordBroadcast(gamepin, frame.payload());
+                    broadcaster.send(destination, frame.payload(), seqHeaders, OutboundPriority.of(frame.messageId()));
+                    lastValueCache.record(gamepin, frame.messageId(), frame.payload(), seqHeaders);
+                    answerDigestService.onHostBroadcast(gamepin, frame.messageId());
+                } else {
+                    String hostSessionId = session.getHostSessionId();
+                    byte[] payload = frame.payload();
+                    if (frame.messageId() == GameMessageIds.ANSWER) {
+                        payload = questionTimer.stampAnswer(gamepin, senderSessionId, payload);
+                        if (payload == null) {
+                            log.debug("Dropping late answer from PLAYER {} in session {}: the question is closed.", senderSessionId, gamepin);
+                            continue;
                         }
                     }
+                    if (frame.messageId() == GameMessageIds.ANSWER
+                            && answerDigestService.tryRecordAnswer(gamepin, senderSessionId, payload)) {
+                        log.debug("Answer from PLAYER {} absorbed into the answer digest of session {}", senderSessionId, gamepin);
+                        relayMetrics.recordFrame(RelayMetrics.Route.ANSWER_DIGEST, payload.length);
+                    } else if (hostSessionId != null) {
+                        String destination = "/topic/host/" + gamepin;
+                        log.debug("Relaying message from PLAYER {} to Host {} [{}]", senderSessionId, hostSessionId, destination);
+                        relayMetrics.recordFrame(RelayMetrics.Route.PLAYER_TO_HOST, payload.length);
+                        broadcaster.send(destination, payload, OutboundPriority.of(frame.messageId()));
+                    } else {
+                        log.warn("Player {} sent message for session {} but host is not connected.", senderSessionId, gamepin);
+                    }
                 }
             }
+            relayMetrics.recordRelay(isHostMessage, startNanos);
         } catch (JsonProcessingException e) {
-            log.error("Failed to parse/serialize message from {} for session {}: {}. Raw payload: {}", senderSessionId, gamepin, e.getMessage(), messagePayload);
-        } catch (ClassCastException e) {
-            log.error("Failed processing message structure (casting issue) from {} for session {}: {}. Raw payload: {}", senderSessionId, gamepin, e.getMessage(), messagePayload);
+            relayMetrics.recordFailure();
+            log.error("Failed to parse message from {} for session {}: {}. Raw payload: {}", senderSessionId, gamepin, e.getMessage(), new String(messagePayload, StandardCharsets.UTF_8));
         } catch (Exception e) {
+            relayMetrics.recordFailure();
             log.error("Unexpected error relaying message from {} for session {}: {}", senderSessionId, gamepin, e.getMessage(), e);
         }
     }
+
+    /**
+     * Lets the host ask for the full roster, e.g. after missing a ROSTER_DELTA.
+     * The ROSTER_SNAPSHOT is sent to the host's private queue only.
+     */
+    @MessageMapping("/roster/{gamepin}")
+    public void requestRosterSnapshot(@DestinationVariable String gamepin,
+                                      SimpMessageHeaderAccessor headerAccessor) {
+        String senderSessionId = headerAccessor.getSessionId();
+        GameSessionManager.SessionInfo session = sessionManager.getSession(gamepin);
+        if (senderSessionId == null || session == null || !session.isHost(senderSessionId)) {
+            log.warn("Ignoring roster snapshot request from {} for session {}: not the host.", senderSessionId, gamepin);
+            return;
+        }
+        try {
+            byte[] snapshot = rosterUpdateCoalescer.buildSnapshot(gamepin);
+            if (snapshot != null) {
+                broadcaster.send(BROKER_USER_QUEUE_PREFIX + senderSessionId, snapshot);
+                log.debug("Sent roster snapshot of session {} to host {}", gamepin, senderSessionId);
+            }
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize roster snapshot for session {}: {}", gamepin, e.getMessage());
+        }
+    }
+
+    /**
+     * Lets a player that reconnected with a resume token fetch what it missed: {"lastSeq": n}, the highest
+     * seq header it received. Replies PLAYER_RESUMED on its private queue, followed by the missed frames in order.
+     */
+    @MessageMapping("/resume/{gamepin}")
+    public void resumePlayer(@DestinationVariable String gamepin,
+                             @Payload Map<String, Object> body,
+                             SimpMessageHeaderAccessor headerAccessor) {
+        String sessionId = headerAccessor.getSessionId();
+        if (sessionId == null) {
+            return;
+        }
+        String privateQueue = BROKER_USER_QUEUE_PREFIX + sessionId;
+        long lastSeq = body.get("lastSeq") instanceof Number number ? number.longValue() : 0L;
+        PlayerResumeService.Replay replay = playerResumeService.replay(gamepin, sessionId, lastSeq);
+        if (replay == null) {
+            log.warn("Session {} asked to resume in session {} without a valid resume token.", sessionId, gamepin);
+            broadcaster.send(privateQueue, "{\"type\":\"RESUME_FAILED\"}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        Map<String, Object> resumed = new LinkedHashMap<>();
+        resumed.put("type", "PLAYER_RESUMED");
+        resumed.put("clientId", replay.playerId());
+        resumed.put("currentSeq", replay.currentSeq());
+        resumed.put("replayed", replay.frames().size());
+        resumed.put("complete", replay.complete()); // false: some frames were evicted, resync from the host
+        broadcaster.sendJson(resumed, privateQueue);
+        for (PlayerResumeService.ReplayFrame frame : replay.frames()) {
+            broadcaster.send(privateQueue, frame.payload(), Map.of(PlayerResumeService.SEQ_HEADER, Long.toString(frame.seq()), "replay", "true"));
+        }
+        log.info("Session {}: replayed {} frames after seq {} to player {} (complete: {}).",
+                gamepin, replay.frames().size(), lastSeq, replay.playerId(), replay.complete());
+    }
+
+    /**
+     * Lets the host switch its game to answer digest mode: {"enabled": true|false}.
+     * The resulting mode is confirmed on the host's private queue as ANSWER_DIGEST_MODE.
+     */
+    @MessageMapping("/digest/{gamepin}")
+    public void configureAnswerDigest(@DestinationVariable String gamepin,
+                                      @Payload Map<String, Object> body,
+                                      SimpMessageHeaderAccessor headerAccessor) {
+        String senderSessionId = headerAccessor.getSessionId();
+        GameSessionManager.SessionInfo session = sessionManager.getSession(gamepin);
+        if (senderSessionId == null || session == null || !session.isHost(senderSessionId)) {
+            log.warn("Ignoring answer digest request from {} for session {}: not the host.", senderSessionId, gamepin);
+            return;
+        }
+        boolean enabled = answerDigestService.setEnabled(gamepin, Boolean.TRUE.equals(body.get("enabled")));
+        String confirmation = "{\"type\":\"ANSWER_DIGEST_MODE\",\"enabled\":" + enabled + "}";
+        broadcaster.send(BROKER_USER_QUEUE_PREFIX + senderSessionId, confirmation.getBytes(StandardCharsets.UTF_8));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.vuiquiz.quizwebsocket.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Status of an accepted session finalization, stored in the background.")
+public class FinalizationJobDto {
+
+    @Schema(description = "ID of the finalization job.", example = "3f2c9a1e-7b4d-4e0a-9c51-0d8f6a2b7e13")
+    private String jobId;
+
+    @Schema(description = "The game PIN of the session.", example = "195970")
+    private String gamePin;
+
+    @Schema(description = "ACCEPTED (waiting or retrying), RUNNING, SUCCEEDED or FAILED.", example = "SUCCEEDED")
+    private String status;
+
+    @Schema(description = "UUID of the saved game session, once SUCCEEDED.", example = "a1b2c3d4-e5f6-7890-1234-567890abcdef", nullable = true)
+    private String sessionId;
+
+    @Schema(description = "Why the job FAILED.", nullable = true)
+    private String error;
+
+    @Schema(description = "Attempts made to store the results so far.", example = "1")
+    private Integer attempts;
+
+    @Schema(description = "Unix timestamp (milliseconds) when the payload was accepted.", example = "1746977337512")
+    private Long acceptedAt;
+
+    @Schema(description = "Unix timestamp (milliseconds) when the job SUCCEEDED or FAILED.", example = "1746977338107", nullable = true)
+    private Long finishedAt;
+}
@@ -8,6 +8,7 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -36,6 +37,11 @@ public class SessionFinalizationDto {
     @Schema(description = "Unix timestamp (in milliseconds) when the session started.", example = "1746977232795", nullable = true)
     private Long sessionStartTime;
 
+    @Size(max = 200, message = "Idempotency key must be at most 200 characters.")
+    @Schema(description = "Key identifying this finalization across retries; may also be sent as the Idempotency-Key header. "
+            + "If absent, gamePin + host + sessionStartTime is used.", example = "195970-1746977232795", nullable = true)
+    private String idempotencyKey;
+
     @Schema(description = "Unix timestamp (in milliseconds) when the session ended.", example = "1746977337440", nullable = true)
     private Long sessionEndTime;
 
@@ -0,0 +1,61 @@
+package com.vuiquiz.quizwebsocket.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "Slides that closed during a game still in progress, stored before the game ends. "
+        + "The session is identified like its finalization: by idempotencyKey, or gamePin + host + sessionStartTime.")
+public class SessionSlideCheckpointDto {
+
+    @NotBlank(message = "Game PIN cannot be blank.")
+    @Schema(description = "The game PIN of the session.", example = "195970", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String gamePin;
+
+    @NotBlank(message = "Quiz ID cannot be blank.")
+    @Schema(description = "UUID of the quiz being played.", example = "6b14fbae-7e64-4a38-a7ee-5c56c1224825", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String quizId;
+
+    @NotBlank(message = "Host User ID cannot be blank.")
+    @Schema(description = "User ID of the host running the session. If invalid, backend will use authenticated user.", example = "host-1746977232792", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String hostUserId;
+
+    @Schema(description = "Unix timestamp (in milliseconds) when the session started. Required unless idempotencyKey is set.", example = "1746977232795", nullable = true)
+    private Long sessionStartTime;
+
+    @Size(max = 200, message = "Idempotency key must be at most 200 characters.")
+    @Schema(description = "The key the session will be finalized with; may also be sent as the Idempotency-Key header.", example = "195970-1746977232795", nullable = true)
+    private String idempotencyKey;
+
+    @NotBlank(message = "Game type cannot be blank.")
+    @Schema(description = "Type of game session (e.g., 'LIVE', 'ASSIGNMENT').", example = "LIVE", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String gameType;
+
+    @Schema(description = "Flag indicating if late joins are allowed.", example = "true")
+    private boolean allowLateJoin;
+
+    @Schema(description = "Flag indicating if power-ups are enabled for the session.", example = "false")
+    private boolean powerUpsEnabled;
+
+    @Valid
+    @Schema(description = "Players with their running totals: at least every player who answered on these slides and was not sent before. "
+            + "Players already stored are updated.", nullable = true)
+    private List<SessionPlayerDto> players;
+
+    @Valid
+    @NotEmpty(message = "Slides list cannot be empty.")
+    @Schema(description = "The closed slides with their answers. Slides already stored for the session are skipped, so a checkpoint can be retried.")
+    private List<SessionGameSlideDto> slides;
+}
@@ -0,0 +1,12 @@
+// src/main/java/com/vuiquiz/quizwebsocket/exception/FinalizationQueueFullException.java
+package com.vuiquiz.quizwebsocket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class FinalizationQueueFullException extends RuntimeException {
+    public FinalizationQueueFullException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,12 @@
+// src/main/java/com/vuiquiz/quizwebsocket/exception/SessionAlreadyFinalizedException.java
+package com.vuiquiz.quizwebsocket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class SessionAlreadyFinalizedException extends RuntimeException {
+    public SessionAlreadyFinalizedException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
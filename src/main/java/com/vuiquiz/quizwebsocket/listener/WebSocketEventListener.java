@@ -1,6 +1,10 @@
 package com.vuiquiz.quizwebsocket.listener;
 
 import com.vuiquiz.quizwebsocket.service.websocket.GameSessionManager;
+import com.vuiquiz.quizwebsocket.service.websocket.PlayerResumeService;
+import com.vuiquiz.quizwebsocket.service.websocket.RelayMetrics;
+import com.vuiquiz.quizwebsocket.service.websocket.RosterUpdateCoalescer;
+import com.vuiquiz.quizwebsocket.service.websocket.TopicLastValueCache;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -13,12 +17,13 @@ import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
 
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,11 +35,33 @@ public class WebSocketEventListener {
 
     private final GameSessionManager sessionManager;
     private final SimpMessagingTemplate messagingTemplate;
+    private final RosterUpdateCoalescer rosterUpdateCoalescer;
+    private final PlayerResumeService playerResumeService;
+    private final RelayMetrics relayMetrics;
+    private final TopicLastValueCache lastValueCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // Pattern to extract gamePin from destinations
     private static final Pattern GAME_PIN_PATTERN = Pattern.compile(".*/(player|host|controller)/(\\d{6})(?:/.*)?");
 
+    // A reconnecting player presents its resume token on CONNECT, before it subscribes to anything
+    @EventListener
+    public void handleWebSocketSessionConnect(SessionConnectEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        String resumeToken = headerAccessor.getFirstNativeHeader(PlayerResumeService.RESUME_TOKEN_HEADER);
+        String sessionId = headerAccessor.getSessionId();
+        if (sessionId != null) {
+            relayMetrics.connectionOpened(sessionId);
+        }
+        if (resumeToken == null || sessionId == null) {
+            return;
+        }
+        String playerId = playerResumeService.bindOnConnect(sessionId, resumeToken);
+        if (playerId == null) {
+            log.info("Session {} presented an unknown or expired resume token; it will join as a new participant.", sessionId);
+        }
+    }
+
     // Option 1: Use @EventListener annotation (often preferred)
     @EventListener
     public void handleWebSocketConnectListener(SessionSubscribeEvent event) {
@@ -52,6 +79,13 @@ public class WebSocketEventListener {
         String gamePin = extractGamePin(destination);
 
         if (gamePin != null) {
+            GameSessionManager.ParticipantRef participant = sessionManager.findParticipant(sessionId);
+            if (participant != null && participant.gamePin().equals(gamePin)
+                    && !sessionId.equals(playerResumeService.participantIdOf(sessionId))) {
+                log.debug("Resumed session {} re-subscribed to {}; it keeps its place.", sessionId, destination);
+                return;
+            }
+
             GameSessionManager.SessionInfo session = sessionManager.getSession(gamePin);
             if (session == null) {
                 log.warn("Session {} subscribed to destination for non-existent game pin: {}", sessionId, gamePin);
@@ -65,20 +99,29 @@ public class WebSocketEventListener {
                 isNewHost = sessionManager.trySetHost(gamePin, sessionId);
                 if (isNewHost) {
                     log.info("Session {}: First participant {} assigned as HOST.", gamePin, sessionId);
+                    relayMetrics.participantJoined(true);
                     sendConfirmation(sessionId, true);
                 } else {
                     log.info("Session {}: Host already set, adding {} as player.", gamePin, sessionId);
                     sessionManager.addParticipant(gamePin, sessionId);
-                    sendConfirmation(sessionId, false);
+                    relayMetrics.participantJoined(false);
+                    sendPlayerConfirmation(gamePin, sessionId);
                 }
             } else {
                 log.debug("Session {}: Adding participant {}.", gamePin, sessionId);
                 sessionManager.addParticipant(gamePin, sessionId);
                 if (!session.isHost(sessionId)) {
-                    sendConfirmation(sessionId, false);
+                    relayMetrics.participantJoined(false);
+                    sendPlayerConfirmation(gamePin, sessionId);
+                }
+            }
+            rosterUpdateCoalescer.participantJoined(gamePin, sessionId);
+            if (destination.startsWith("/topic/player/") && !session.isHost(sessionId)) {
+                int replayed = lastValueCache.replayTo(gamePin, sessionId, headerAccessor.getSubscriptionId());
+                if (replayed > 0) {
+                    log.debug("Session {}: sent {} last-value frames to late subscriber {}", gamePin, replayed, sessionId);
                 }
             }
-            notifyPlayerUpdate(gamePin, sessionId, "PARTICIPANT_JOINED");
         } else {
             log.debug("Subscription by {} to non-game destination: {}", sessionId, destination);
         }
@@ -96,11 +139,15 @@ public class WebSocketEventListener {
         }
 
         log.info("WebSocket session disconnected: {}", sessionId);
+        relayMetrics.connectionClosed(sessionId);
+        if (playerResumeService.onDisconnect(sessionId) != PlayerResumeService.DisconnectOutcome.NOT_RESUMABLE) {
+            return; // The player keeps its place until it resumes or the grace period ends
+        }
         String gamePin = sessionManager.removeParticipant(sessionId);
 
         if (gamePin != null) {
             GameSessionManager.SessionInfo session = sessionManager.getSession(gamePin);
-            notifyPlayerUpdate(gamePin, sessionId, "PARTICIPANT_LEFT");
+            rosterUpdateCoalescer.participantLeft(gamePin, sessionId);
             if (session == null) {
                 log.info("Session {} was removed because the host or last player disconnected.", gamePin);
             }
@@ -122,12 +169,25 @@ public class WebSocketEventListener {
         return null;
     }
 
+    private void sendPlayerConfirmation(String gamePin, String sessionId) {
+        String resumeToken = sessionManager.findParticipant(sessionId) != null
+                ? playerResumeService.issueToken(gamePin, sessionId)
+                : null;
+        sendConfirmation(sessionId, false, resumeToken);
+    }
+
     private void sendConfirmation(String sessionId, boolean isHost) {
-        Map<String, Object> payload = Map.of(
-                "type", isHost ? "HOST_ASSIGNED" : "PLAYER_ASSIGNED",
-                "isHost", isHost,
-                "clientId", sessionId // Also send back the client's ID
-        );
+        sendConfirmation(sessionId, isHost, null);
+    }
+
+    private void sendConfirmation(String sessionId, boolean isHost, String resumeToken) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", isHost ? "HOST_ASSIGNED" : "PLAYER_ASSIGNED");
+        payload.put("isHost", isHost);
+        payload.put("clientId", sessionId); // Also send back the client's ID
+        if (resumeToken != null) {
+            payload.put("resumeToken", resumeToken); // Sent as the resume-token CONNECT header after a reconnect
+        }
         try {
             String jsonPayload = objectMapper.writeValueAsString(payload);
             // Send to a user-specific queue
@@ -141,44 +201,6 @@ public class WebSocketEventListener {
     }
 
 
-    private void notifyPlayerUpdate(String gamePin, String affectedSessionId, String eventType) {
-        GameSessionManager.SessionInfo session = sessionManager.getSession(gamePin);
-        if (session == null) {
-            log.debug("Cannot notify player update for already removed session {}", gamePin);
-            return;
-        }
-
-        Map<String, Object> updatePayload = Map.of(
-                "type", eventType,
-                "playerCount", session.getPlayerCount(),
-                "hostId", Objects.toString(session.getHostSessionId(),""),
-                "affectedId", Objects.toString(affectedSessionId,"")
-                // Add more info like nicknames if clients need it
-        );
-
-        try {
-            String jsonPayload = objectMapper.writeValueAsString(updatePayload);
-
-            // Notify players topic
-            String playerTopic = "/topic/player/" + gamePin;
-            log.info("Notifying players on {}: {}", playerTopic, jsonPayload);
-            messagingTemplate.convertAndSend(playerTopic, jsonPayload);
-
-            // Notify host topic
-            String hostId = session.getHostSessionId();
-            if (hostId != null) {
-                String hostTopic = "/topic/host/" + gamePin;
-                log.info("Notifying host on {}: {}", hostTopic, jsonPayload);
-                messagingTemplate.convertAndSend(hostTopic, jsonPayload);
-            }
-
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize player update message for session {}: {}", gamePin, e.getMessage());
-        } catch (Exception e) {
-            log.error("Failed to send player update for session {}: {}", gamePin, e.getMessage());
-        }
-    }
-
     private MessageHeaders createHeaders(String sessionId) {
         SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
         headerAccessor.setSessionId(sessionId);
@@ -16,7 +16,9 @@ import java.util.UUID;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "game_session") // Removed unique constraint on game_pin from @Table annotation
+@Table(name = "game_session", uniqueConstraints = { // Removed unique constraint on game_pin from @Table annotation
+        @UniqueConstraint(name = "uk_game_session_finalize_key", columnNames = {"finalize_key"})
+})
 public class GameSession { // No soft delete in the schema for this table
 
     @Id
@@ -72,6 +74,10 @@ public class GameSession { // No soft delete in the schema for this table
     @Column(name = "created_at", nullable = false, updatable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
     private OffsetDateTime createdAt;
 
+    // SHA-256 of host + idempotency key (or PIN + start time); a retried finalize finds its session by it
+    @Column(name = "finalize_key", length = 64, updatable = false)
+    private String finalizeKey;
+
     @PrePersist
     protected void onCreate() {
         createdAt = OffsetDateTime.now();
@@ -0,0 +1,325 @@
+package com.vuiquiz.quizwebsocket.repository;
+
+import com.vuiquiz.quizwebsocket.model.GameSlide;
+import com.vuiquiz.quizwebsocket.model.Player;
+import com.vuiquiz.quizwebsocket.model.PlayerAnswer;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Bulk inserts of the rows a finished game produces: its slides, players and answers.
+ * <p>
+ * Finalization writes every row exactly once, so these bypass the persistence context and go out as JDBC batches
+ * of {@link #BATCH_SIZE} statements; with {@code reWriteBatchedInserts=true} on the PostgreSQL URL the driver
+ * folds each batch into multi-row INSERTs. IDs are assigned here, before the insert, so answers can reference
+ * their slide and player without reading anything back. Defaults the entities set in @PrePersist are applied
+ * the same way. Runs in the caller's transaction.
+ * <p>
+ * For the largest games the player and answer rows can instead be streamed with PostgreSQL COPY in CSV format,
+ * which skips statement parsing and planning per row altogether; the stored rows are the same either way.
+ * <p>
+ * A game checkpointed slide by slide writes its rows over several transactions; the lookups and
+ * {@link #updatePlayers(List)} let each one add to what is stored instead of repeating it.
+ */
+@Repository
+@RequiredArgsConstructor
+public class GameResultBatchRepository {
+
+    public static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_GAME_SLIDE = "INSERT INTO game_slide (slide_id, session_id, slide_index, slide_type, status, "
+            + "started_at, ended_at, question_distribution_json, original_question_id) VALUES (?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?)";
+
+    private static final String INSERT_PLAYER = "INSERT INTO player (player_id, nickname, status, joined_at, join_slide_index, waiting_since, "
+            + "rank, total_score, correct_answers, streak_count, answer_count, unanswered_count, avatar_id, total_time, average_time, "
+            + "device_info_json, last_activity_at, client_id, user_id, session_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?, ?, ?, ?)";
+
+    private static final String INSERT_PLAYER_ANSWER = "INSERT INTO player_answer (answer_id, slide_id, choice, text, reaction_time_ms, "
+            + "answer_timestamp, status, base_points, final_points, used_power_up_id, used_power_up_context_json, player_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?)";
+
+    private static final String UPDATE_PLAYER = "UPDATE player SET nickname = ?, status = ?, joined_at = ?, join_slide_index = ?, "
+            + "waiting_since = ?, rank = ?, total_score = ?, correct_answers = ?, streak_count = ?, answer_count = ?, unanswered_count = ?, "
+            + "avatar_id = ?, total_time = ?, average_time = ?, device_info_json = CAST(? AS jsonb), last_activity_at = ?, user_id = ? "
+            + "WHERE player_id = ?";
+
+    private static final String COPY_PLAYER = "COPY player (player_id, nickname, status, joined_at, join_slide_index, waiting_since, "
+            + "rank, total_score, correct_answers, streak_count, answer_count, unanswered_count, avatar_id, total_time, average_time, "
+            + "device_info_json, last_activity_at, client_id, user_id, session_id) FROM STDIN WITH (FORMAT csv)";
+
+    private static final String COPY_PLAYER_ANSWER = "COPY player_answer (answer_id, slide_id, choice, text, reaction_time_ms, "
+            + "answer_timestamp, status, base_points, final_points, used_power_up_id, used_power_up_context_json, player_id) "
+            + "FROM STDIN WITH (FORMAT csv)";
+
+    // CSV is handed to the driver in chunks of about this many characters
+    private static final int COPY_CHUNK_CHARS = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Holds a transaction-scoped advisory lock on the finalize key, so a retry racing its original waits for it
+     * to commit and then finds the stored session instead of writing a second one.
+     */
+    public void lockFinalizeKey(String finalizeKey) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext(?))", (ResultSetExtractor<Void>) rs -> null, finalizeKey);
+    }
+
+    /**
+     * @return The IDs of the players already stored for the session, by client ID.
+     */
+    public Map<String, UUID> findPlayerIdsByClientId(UUID sessionId) {
+        Map<String, UUID> playerIds = new HashMap<>();
+        jdbcTemplate.query("SELECT client_id, player_id FROM player WHERE session_id = ?",
+                (RowCallbackHandler) rs -> playerIds.put(rs.getString(1), rs.getObject(2, UUID.class)), sessionId);
+        return playerIds;
+    }
+
+    public Set<Integer> findSlideIndexes(UUID sessionId) {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT slide_index FROM game_slide WHERE session_id = ?", Integer.class, sessionId));
+    }
+
+    public void insertGameSlides(List<GameSlide> slides) {
+        slides.forEach(slide -> {
+            if (slide.getSlideId() == null) {
+                slide.setSlideId(UUID.randomUUID());
+            }
+        });
+        jdbcTemplate.batchUpdate(INSERT_GAME_SLIDE, slides, BATCH_SIZE, (ps, slide) -> {
+            ps.setObject(1, slide.getSlideId());
+            ps.setObject(2, slide.getSessionId());
+            setInteger(ps, 3, slide.getSlideIndex());
+            ps.setString(4, slide.getSlideType());
+            ps.setString(5, slide.getStatus());
+            ps.setObject(6, slide.getStartedAt());
+            ps.setObject(7, slide.getEndedAt());
+            ps.setString(8, slide.getQuestionDistributionJson());
+            ps.setObject(9, slide.getOriginalQuestionId());
+        });
+    }
+
+    public void insertPlayers(List<Player> players) {
+        assignPlayerDefaults(players);
+        jdbcTemplate.batchUpdate(INSERT_PLAYER, players, BATCH_SIZE, (ps, player) -> {
+            ps.setObject(1, player.getPlayerId());
+            ps.setString(2, player.getNickname());
+            ps.setString(3, player.getStatus());
+            ps.setObject(4, player.getJoinedAt());
+            setInteger(ps, 5, player.getJoinSlideIndex());
+            ps.setObject(6, player.getWaitingSince());
+            setInteger(ps, 7, player.getRank());
+            setInteger(ps, 8, player.getTotalScore());
+            setInteger(ps, 9, player.getCorrectAnswers());
+            setInteger(ps, 10, player.getStreakCount());
+            setInteger(ps, 11, player.getAnswerCount());
+            setInteger(ps, 12, player.getUnansweredCount());
+            ps.setObject(13, player.getAvatarId());
+            if (player.getTotalTime() != null) {
+                ps.setLong(14, player.getTotalTime());
+            } else {
+                ps.setNull(14, Types.BIGINT);
+            }
+            setInteger(ps, 15, player.getAverageTime());
+            ps.setString(16, player.getDeviceInfoJson());
+            ps.setObject(17, player.getLastActivityAt());
+            ps.setString(18, player.getClientId());
+            ps.setObject(19, player.getUserId());
+            ps.setObject(20, player.getSessionId());
+        });
+    }
+
+    /**
+     * Overwrites stored players, matched by player ID, with their latest totals.
+     */
+    public void updatePlayers(List<Player> players) {
+        assignPlayerDefaults(players);
+        jdbcTemplate.batchUpdate(UPDATE_PLAYER, players, BATCH_SIZE, (ps, player) -> {
+            ps.setString(1, player.getNickname());
+            ps.setString(2, player.getStatus());
+            ps.setObject(3, player.getJoinedAt());
+            setInteger(ps, 4, player.getJoinSlideIndex());
+            ps.setObject(5, player.getWaitingSince());
+            setInteger(ps, 6, player.getRank());
+            setInteger(ps, 7, player.getTotalScore());
+            setInteger(ps, 8, player.getCorrectAnswers());
+            setInteger(ps, 9, player.getStreakCount());
+            setInteger(ps, 10, player.getAnswerCount());
+            setInteger(ps, 11, player.getUnansweredCount());
+            ps.setObject(12, player.getAvatarId());
+            if (player.getTotalTime() != null) {
+                ps.setLong(13, player.getTotalTime());
+            } else {
+                ps.setNull(13, Types.BIGINT);
+            }
+            setInteger(ps, 14, player.getAverageTime());
+            ps.setString(15, player.getDeviceInfoJson());
+            ps.setObject(16, player.getLastActivityAt());
+            ps.setObject(17, player.getUserId());
+            ps.setObject(18, player.getPlayerId());
+        });
+    }
+
+    public void insertPlayerAnswers(List<PlayerAnswer> answers) {
+        assignAnswerDefaults(answers);
+        jdbcTemplate.batchUpdate(INSERT_PLAYER_ANSWER, answers, BATCH_SIZE, (ps, answer) -> {
+            ps.setObject(1, answer.getAnswerId());
+            ps.setObject(2, answer.getSlideId());
+            ps.setString(3, answer.getChoice());
+            ps.setString(4, answer.getText());
+            setInteger(ps, 5, answer.getReactionTimeMs());
+            ps.setObject(6, answer.getAnswerTimestamp());
+            ps.setString(7, answer.getStatus());
+            setInteger(ps, 8, answer.getBasePoints());
+            setInteger(ps, 9, answer.getFinalPoints());
+            ps.setObject(10, answer.getUsedPowerUpId());
+            ps.setString(11, answer.getUsedPowerUpContextJson());
+            ps.setObject(12, answer.getPlayerId());
+        });
+    }
+
+    public void copyPlayers(List<Player> players) {
+        assignPlayerDefaults(players);
+        copyIn(COPY_PLAYER, players, (player, row) -> row
+                .add(player.getPlayerId()).add(player.getNickname()).add(player.getStatus()).add(player.getJoinedAt())
+                .add(player.getJoinSlideIndex()).add(player.getWaitingSince()).add(player.getRank()).add(player.getTotalScore())
+                .add(player.getCorrectAnswers()).add(player.getStreakCount()).add(player.getAnswerCount())
+                .add(player.getUnansweredCount()).add(player.getAvatarId()).add(player.getTotalTime()).add(player.getAverageTime())
+                .add(player.getDeviceInfoJson()).add(player.getLastActivityAt()).add(player.getClientId()).add(player.getUserId())
+                .add(player.getSessionId()));
+    }
+
+    public void copyPlayerAnswers(List<PlayerAnswer> answers) {
+        assignAnswerDefaults(answers);
+        copyIn(COPY_PLAYER_ANSWER, answers, (answer, row) -> row
+                .add(answer.getAnswerId()).add(answer.getSlideId()).add(answer.getChoice()).add(answer.getText())
+                .add(answer.getReactionTimeMs()).add(answer.getAnswerTimestamp()).add(answer.getStatus())
+                .add(answer.getBasePoints()).add(answer.getFinalPoints()).add(answer.getUsedPowerUpId())
+                .add(answer.getUsedPowerUpContextJson()).add(answer.getPlayerId()));
+    }
+
+    private static void assignPlayerDefaults(List<Player> players) {
+        OffsetDateTime now = OffsetDateTime.now();
+        players.forEach(player -> {
+            if (player.getPlayerId() == null) {
+                player.setPlayerId(UUID.randomUUID());
+            }
+            if (player.getJoinedAt() == null) {
+                player.setJoinedAt(now);
+            }
+            if (player.getLastActivityAt() == null) {
+                player.setLastActivityAt(now);
+            }
+        });
+    }
+
+    private static void assignAnswerDefaults(List<PlayerAnswer> answers) {
+        OffsetDateTime now = OffsetDateTime.now();
+        answers.forEach(answer -> {
+            if (answer.getAnswerId() == null) {
+                answer.setAnswerId(UUID.randomUUID());
+            }
+            if (answer.getAnswerTimestamp() == null) {
+                answer.setAnswerTimestamp(now);
+            }
+        });
+    }
+
+    // Streams the rows on the transaction's connection; a failed COPY is cancelled and fails the transaction
+    private <T> void copyIn(String sql, List<T> rows, BiConsumer<T, CsvRow> columns) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                CsvRow row = new CsvRow();
+                for (T value : rows) {
+                    columns.accept(value, row);
+                    row.end();
+                    if (row.length() >= COPY_CHUNK_CHARS) {
+                        byte[] chunk = row.drain();
+                        copy.writeToCopy(chunk, 0, chunk.length);
+                    }
+                }
+                byte[] chunk = row.drain();
+                if (chunk.length > 0) {
+                    copy.writeToCopy(chunk, 0, chunk.length);
+                }
+                copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Rows in PostgreSQL's CSV format: text is always quoted, so an unquoted empty field is NULL and "" an empty string.
+     */
+    static final class CsvRow {
+        private final StringBuilder buffer = new StringBuilder(COPY_CHUNK_CHARS + 4096);
+        private boolean firstColumn = true;
+
+        CsvRow add(Object value) {
+            if (!firstColumn) {
+                buffer.append(',');
+            }
+            firstColumn = false;
+            if (value instanceof String text) {
+                buffer.append('"');
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '"') {
+                        buffer.append('"');
+                    }
+                    buffer.append(c);
+                }
+                buffer.append('"');
+            } else if (value != null) {
+                buffer.append(value); // Numbers, UUIDs and ISO-8601 timestamps need no quoting
+            }
+            return this;
+        }
+
+        void end() {
+            buffer.append('\n');
+            firstColumn = true;
+        }
+
+        int length() {
+            return buffer.length();
+        }
+
+        byte[] drain() {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            buffer.setLength(0);
+            return bytes;
+        }
+    }
+
+    private static void setInteger(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
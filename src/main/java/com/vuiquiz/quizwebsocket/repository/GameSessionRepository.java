@@ -2,8 +2,12 @@ package com.vuiquiz.quizwebsocket.repository;
 
 import com.vuiquiz.quizwebsocket.model.GameSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -16,4 +20,15 @@ public interface GameSessionRepository extends JpaRepository<GameSession, UUID>
     List<GameSession> findByStatus(String status);
     // Find active sessions (e.g., LOBBY or RUNNING) by gamePin
     Optional<GameSession> findByGamePinAndStatusIn(String gamePin, List<String> statuses);
+    // Served by the unique index on finalize_key
+    Optional<GameSession> findByFinalizeKey(String finalizeKey);
+    // Close checkpointed sessions whose game is gone; the status condition leaves finalized sessions alone
+    @Modifying
+    @Query("UPDATE GameSession g SET g.status = :newStatus, g.endedAt = COALESCE(g.endedAt, :now) WHERE g.gamePin = :gamePin AND g.status = :status")
+    int updateStatusByGamePin(@Param("gamePin") String gamePin, @Param("status") String status,
+                              @Param("newStatus") String newStatus, @Param("now") OffsetDateTime now);
+    @Modifying
+    @Query("UPDATE GameSession g SET g.status = :newStatus, g.endedAt = COALESCE(g.endedAt, :now) WHERE g.createdAt < :cutoff AND g.status = :status")
+    int updateStatusByCreatedAtBefore(@Param("cutoff") OffsetDateTime cutoff, @Param("status") String status,
+                                      @Param("newStatus") String newStatus, @Param("now") OffsetDateTime now);
 }
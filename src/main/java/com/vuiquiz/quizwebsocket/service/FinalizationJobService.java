@@ -0,0 +1,29 @@
+package com.vuiquiz.quizwebsocket.service;
+
+import com.vuiquiz.quizwebsocket.dto.FinalizationJobDto;
+import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto;
+import com.vuiquiz.quizwebsocket.exception.FinalizationQueueFullException;
+import com.vuiquiz.quizwebsocket.exception.ForbiddenAccessException;
+import com.vuiquiz.quizwebsocket.exception.ResourceNotFoundException;
+
+import java.util.Optional;
+
+public interface FinalizationJobService {
+    /**
+     * Accepts the final results of a game session for storage in the background. The payload is durable once
+     * this returns: it is replayed after a restart until it has been stored or has failed for good.
+     *
+     * @param sessionData The DTO containing all finalization data for the session.
+     * @return The accepted job.
+     * @throws FinalizationQueueFullException if the job queue is full.
+     * @throws ResourceNotFoundException      if the quiz does not exist.
+     * @throws ForbiddenAccessException       if the session names another existing user as its host.
+     */
+    FinalizationJobDto submit(SessionFinalizationDto sessionData);
+
+    /**
+     * @param jobId ID returned by {@link #submit(SessionFinalizationDto)}.
+     * @return The job's current status, if it exists and was submitted by the authenticated user.
+     */
+    Optional<FinalizationJobDto> getJob(String jobId);
+}
@@ -2,6 +2,13 @@
 package com.vuiquiz.quizwebsocket.service;
 
 import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto; // Assuming this DTO will be created based on session-finalization.dto.ts
+import com.vuiquiz.quizwebsocket.dto.SessionSlideCheckpointDto;
+import com.vuiquiz.quizwebsocket.exception.ForbiddenAccessException;
+import com.vuiquiz.quizwebsocket.exception.ResourceNotFoundException;
+import com.vuiquiz.quizwebsocket.exception.SessionAlreadyFinalizedException;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
 
 public interface GameResultService {
     /**
@@ -12,4 +19,73 @@ public interface GameResultService {
      * @return The UUID of the saved GameSession.
      */
     String saveSessionFinalization(SessionFinalizationDto sessionData);
+
+    /**
+     * Saves the final results of a game session on behalf of the given user, e.g. from a background job
+     * where there is no security context.
+     *
+     * @param sessionData         The DTO containing all finalization data for the session.
+     * @param authenticatedUserId The user who submitted the results.
+     * @return The UUID of the saved GameSession.
+     */
+    String saveSessionFinalization(SessionFinalizationDto sessionData, UUID authenticatedUserId);
+
+    /**
+     * Runs the checks {@link #saveSessionFinalization(SessionFinalizationDto, UUID)} makes before writing
+     * anything, so a finalization that is stored later can be refused while its host is still waiting.
+     *
+     * @param sessionData         The DTO containing all finalization data for the session.
+     * @param authenticatedUserId The user who submitted the results.
+     * @throws IllegalArgumentException  if the quizId is missing or malformed.
+     * @throws ResourceNotFoundException if the quiz does not exist.
+     * @throws ForbiddenAccessException  if the session names another existing user as its host.
+     */
+    void validateFinalization(SessionFinalizationDto sessionData, UUID authenticatedUserId);
+
+    /**
+     * Saves slides of a game still in progress, with their answers and players, so the finalization only has
+     * to add what came after. The first checkpoint creates the session; slides it already has are skipped.
+     * A later finalization with the same key completes this session instead of creating another.
+     *
+     * @param checkpoint The closed slides and the players' running totals.
+     * @return The UUID of the GameSession being checkpointed.
+     * @throws SessionAlreadyFinalizedException if the session was already finalized.
+     */
+    String saveSlideCheckpoint(SessionSlideCheckpointDto checkpoint);
+
+    /**
+     * Marks the checkpointed, unfinalized sessions of a game that has ended as ABANDONED. A later finalization
+     * still completes them, and a later checkpoint reopens them.
+     *
+     * @param gamePin The game PIN of the session.
+     * @return The number of sessions marked.
+     */
+    int abandonCheckpointedSessions(String gamePin);
+
+    /**
+     * Marks checkpointed, unfinalized sessions created before the cutoff as ABANDONED, e.g. those of games lost
+     * with a node that stopped.
+     *
+     * @param cutoff Sessions created before this are marked.
+     * @return The number of sessions marked.
+     */
+    int abandonCheckpointedSessionsCreatedBefore(OffsetDateTime cutoff);
+
+    /**
+     * Replaces the device-reported reaction times and answer timestamps in the DTO with the server's
+     * measurements, for the answers this node measured while the game ran.
+     *
+     * @param sessionData The DTO containing all finalization data for the session.
+     */
+    void resolveServerTiming(SessionFinalizationDto sessionData);
+
+    /**
+     * The key under which a finalization is stored once: derived from the host and the idempotency key, or the
+     * game PIN and start time if the client sent none. Retries of the same finalization have the same key.
+     *
+     * @param sessionData         The DTO containing all finalization data for the session.
+     * @param authenticatedUserId The user who submitted the results.
+     * @return The key, or null if nothing identifies the finalization.
+     */
+    String finalizeKeyOf(SessionFinalizationDto sessionData, UUID authenticatedUserId);
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+package com.vuiquiz.quizwebsocket.service.impl;
+
+import com.vuiquiz.quizwebsocket.config.GameResultProperties;
+import com.vuiquiz.quizwebsocket.dto.FinalizationJobDto;
+import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto;
+import com.vuiquiz.quizwebsocket.exception.FinalizationQueueFullException;
+import com.vuiquiz.quizwebsocket.exception.ForbiddenAccessException;
+import com.vuiquiz.quizwebsocket.exception.ResourceNotFoundException;
+import com.vuiquiz.quizwebsocket.exception.UnauthorizedException;
+import com.vuiquiz.quizwebsocket.security.services.UserDetailsImpl;
+import com.vuiquiz.quizwebsocket.service.FinalizationJobService;
+import com.vuiquiz.quizwebsocket.service.GameResultService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session finalization in the background.
+ * <p>
+ * A finalize request is checked (quiz, host) like a synchronous one, its server-measured answer times are resolved while the game's timeline is
+ * still in memory, and the payload is appended to the {@link FinalizationSpool}; the host gets a job ID at once.
+ * A fixed pool of {@code workers} stores the jobs, so a burst of games ending together queues here instead of
+ * holding request threads and database connections. Failures that may pass (e.g. the database being away) are
+ * retried up to {@code max-attempts} times; invalid payloads fail at once. Entries still in the spool at startup
+ * are stored again, so a job that was being stored when the node stopped is completed after the restart; storing
+ * is idempotent per finalize key, so a replay of a job whose session was already written stores nothing twice.
+ */
+@Service
+@Slf4j
+public class FinalizationJobServiceImpl implements FinalizationJobService {
+
+    enum Status {
+        ACCEPTED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private final GameResultService gameResultService;
+    private final FinalizationSpool spool;
+    private final GameResultProperties.Finalize settings;
+    // <Job ID, job>; finished jobs are dropped after job-retention-ms
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    // <Finalize key, latest job for it>; a retried submit gets that job back instead of a new one
+    private final Map<String, Job> jobsByKey = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "finalize-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter retried;
+    private final Timer storeTime;
+
+    public FinalizationJobServiceImpl(GameResultService gameResultService, FinalizationSpool spool,
+                                      GameResultProperties properties, MeterRegistry meterRegistry) {
+        this.gameResultService = gameResultService;
+        this.spool = spool;
+        this.settings = properties.getFinalize();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(settings.getWorkers(), settings.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueCapacity()), r -> {
+            Thread thread = new Thread(r, "finalize-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.succeeded = Counter.builder("results.finalize.jobs")
+                .description("Finalize jobs that finished")
+                .tag("outcome", "succeeded")
+                .register(meterRegistry);
+        this.failed = Counter.builder("results.finalize.jobs")
+                .description("Finalize jobs that finished")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        this.retried = Counter.builder("results.finalize.retries")
+                .description("Finalize attempts that failed and were scheduled again")
+                .register(meterRegistry);
+        this.storeTime = Timer.builder("results.finalize.time")
+                .description("Time taken by one attempt to store a finalized session")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("results.finalize.pending", this, FinalizationJobServiceImpl::countPending)
+                .description("Accepted finalize jobs not stored yet")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void recover() {
+        List<FinalizationSpool.Entry> entries;
+        try {
+            entries = spool.pending();
+        } catch (IOException e) {
+            log.error("Could not read the finalize spool; unfinished jobs are not replayed: {}", e.getMessage(), e);
+            return;
+        }
+        if (!entries.isEmpty()) {
+            log.info("Replaying {} unfinished finalize jobs from the spool.", entries.size());
+        }
+        for (FinalizationSpool.Entry entry : entries) {
+            Job job = new Job(entry, gameResultService.finalizeKeyOf(entry.payload(), entry.userId()));
+            track(job);
+            dispatch(job);
+        }
+    }
+
+    @Override
+    public FinalizationJobDto submit(SessionFinalizationDto sessionData) {
+        UUID userId = getAuthenticatedUserId();
+        if (userId == null) {
+            throw new UnauthorizedException("User must be authenticated to finalize a session.");
+        }
+        String finalizeKey = gameResultService.finalizeKeyOf(sessionData, userId);
+        Job previous = finalizeKey != null ? jobsByKey.get(finalizeKey) : null;
+        if (previous != null && previous.status != Status.FAILED) {
+            log.info("Finalize for gamePin: {} was already accepted as job {}", sessionData.getGamePin(), previous.entry.jobId());
+            return previous.toDto();
+        }
+        if (workers.getQueue().remainingCapacity() == 0) {
+            throw new FinalizationQueueFullException("The finalize queue is full.");
+        }
+        // Refused now rather than failing in the background after the host was told it was accepted
+        gameResultService.validateFinalization(sessionData, userId);
+
+        gameResultService.resolveServerTiming(sessionData);
+        FinalizationSpool.Entry entry = new FinalizationSpool.Entry(UUID.randomUUID().toString(), userId, System.currentTimeMillis(), sessionData);
+        try {
+            spool.append(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spool the finalize payload of game " + sessionData.getGamePin(), e);
+        }
+        Job job = new Job(entry, finalizeKey);
+        track(job);
+        log.info("Accepted finalize job {} for gamePin: {}", entry.jobId(), sessionData.getGamePin());
+        dispatch(job);
+        return job.toDto();
+    }
+
+    @Override
+    public Optional<FinalizationJobDto> getJob(String jobId) {
+        Job job = jobs.get(jobId);
+        UUID userId = getAuthenticatedUserId();
+        if (job == null || !job.entry.userId().equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(job.toDto());
+    }
+
+    private void track(Job job) {
+        jobs.put(job.entry.jobId(), job);
+        if (job.finalizeKey != null) {
+            jobsByKey.put(job.finalizeKey, job);
+        }
+    }
+
+    // The job is in the spool already, so a full queue only delays it
+    private void dispatch(Job job) {
+        try {
+            workers.execute(() -> store(job));
+        } catch (RejectedExecutionException e) {
+            if (!workers.isShutdown()) {
+                scheduler.schedule(() -> dispatch(job), settings.getRetryDelayMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void store(Job job) {
+        job.status = Status.RUNNING;
+        int attempt = ++job.attempts;
+        long startNanos = System.nanoTime();
+        try {
+            String sessionId = gameResultService.saveSessionFinalization(job.entry.payload(), job.entry.userId());
+            job.sessionId = sessionId;
+            finish(job, Status.SUCCEEDED);
+            spool.complete(job.entry.jobId());
+            succeeded.increment();
+            log.info("Finalize job {} stored gamePin {} as session ID {} (attempt {}).", job.entry.jobId(), job.entry.payload().getGamePin(), sessionId, attempt);
+        } catch (IllegalArgumentException | ResourceNotFoundException | ForbiddenAccessException | UnauthorizedException e) {
+            giveUp(job, e); // Would fail the same way again
+        } catch (Exception e) {
+            if (attempt < settings.getMaxAttempts() && !workers.isShutdown()) {
+                job.status = Status.ACCEPTED;
+                job.error = e.getMessage();
+                retried.increment();
+                log.warn("Finalize job {} failed (attempt {} of {}), retrying: {}", job.entry.jobId(), attempt, settings.getMaxAttempts(), e.getMessage());
+                scheduler.schedule(() -> dispatch(job), settings.getRetryDelayMs() * attempt, TimeUnit.MILLISECONDS);
+            } else {
+                giveUp(job, e);
+            }
+        } finally {
+            storeTime.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void giveUp(Job job, Exception e) {
+        job.error = e.getMessage();
+        finish(job, Status.FAILED);
+        spool.fail(job.entry.jobId());
+        failed.increment();
+        log.error("Finalize job {} for gamePin {} failed after {} attempts: {}", job.entry.jobId(), job.entry.payload().getGamePin(), job.attempts, e.getMessage(), e);
+    }
+
+    private void finish(Job job, Status status) {
+        job.finishedAt = System.currentTimeMillis();
+        job.status = status;
+        scheduler.schedule(() -> {
+            jobs.remove(job.entry.jobId(), job);
+            if (job.finalizeKey != null) {
+                jobsByKey.remove(job.finalizeKey, job);
+            }
+        }, settings.getJobRetentionMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private long countPending() {
+        return jobs.values().stream().filter(job -> job.status == Status.ACCEPTED || job.status == Status.RUNNING).count();
+    }
+
+    // Unfinished jobs stay in the spool and are replayed on the next start
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    private UUID getAuthenticatedUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated() && authentication.getPrincipal() instanceof UserDetailsImpl userDetails) {
+            return userDetails.getId();
+        }
+        return null;
+    }
+
+    private static final class Job {
+        private final FinalizationSpool.Entry entry;
+        private final String finalizeKey;
+        private volatile Status status = Status.ACCEPTED;
+        private volatile int attempts;
+        private volatile String sessionId;
+        private volatile String error;
+        private volatile Long finishedAt;
+
+        Job(FinalizationSpool.Entry entry, String finalizeKey) {
+            this.entry = entry;
+            this.finalizeKey = finalizeKey;
+        }
+
+        FinalizationJobDto toDto() {
+            return FinalizationJobDto.builder()
+                    .jobId(entry.jobId())
+                    .gamePin(entry.payload().getGamePin())
+                    .status(status.name())
+                    .sessionId(sessionId)
+                    .error(status == Status.SUCCEEDED ? null : error)
+                    .attempts(attempts)
+                    .acceptedAt(entry.acceptedAt())
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.vuiquiz.quizwebsocket.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.GameResultProperties;
+import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Local write-ahead spool of accepted finalize payloads: one file per job in {@code spool-dir}.
+ * <p>
+ * An entry is written to a temporary file, forced to disk and then atomically renamed, so after a crash every
+ * {@code .json} file is a complete entry that was acknowledged to its host, and a leftover {@code .tmp} file was
+ * never acknowledged. Entries are deleted once stored and moved to {@code failed/} when they cannot be stored.
+ */
+@Component
+@Slf4j
+public class FinalizationSpool {
+
+    private static final String ENTRY_SUFFIX = ".json";
+    private static final String PARTIAL_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final Path failedDirectory;
+    private final ObjectMapper objectMapper;
+
+    public record Entry(String jobId, UUID userId, long acceptedAt, SessionFinalizationDto payload) {
+    }
+
+    public FinalizationSpool(GameResultProperties properties, ObjectMapper objectMapper) {
+        this.directory = Paths.get(properties.getFinalize().getSpoolDir()).toAbsolutePath().normalize();
+        this.failedDirectory = directory.resolve("failed");
+        this.objectMapper = objectMapper;
+        try {
+            Files.createDirectories(failedDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the finalize spool directory " + directory, e);
+        }
+    }
+
+    /**
+     * Durably stores the entry; once this returns it survives a crash.
+     */
+    public void append(Entry entry) throws IOException {
+        Path partial = directory.resolve(entry.jobId() + PARTIAL_SUFFIX);
+        ByteBuffer content = ByteBuffer.wrap(objectMapper.writeValueAsBytes(entry));
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.move(partial, entryPath(entry.jobId()), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+    }
+
+    public void complete(String jobId) {
+        try {
+            Files.deleteIfExists(entryPath(jobId));
+        } catch (IOException e) {
+            // Left in place, it would be stored again after a restart
+            log.error("Could not remove stored finalize job {} from the spool: {}", jobId, e.getMessage());
+        }
+    }
+
+    public void fail(String jobId) {
+        try {
+            Files.move(entryPath(jobId), failedDirectory.resolve(jobId + ENTRY_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Could not move failed finalize job {} out of the spool: {}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * @return Every entry not yet stored, oldest first. Partial writes are discarded, unreadable entries moved to failed/.
+     */
+    public List<Entry> pending() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PARTIAL_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(ENTRY_SUFFIX)) {
+                    try {
+                        entries.add(objectMapper.readValue(file.toFile(), Entry.class));
+                    } catch (IOException e) {
+                        log.error("Unreadable finalize spool entry {}: {}", file, e.getMessage());
+                        Files.move(file, failedDirectory.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::acceptedAt));
+        return entries;
+    }
+
+    private Path entryPath(String jobId) {
+        return directory.resolve(jobId + ENTRY_SUFFIX);
+    }
+
+    // Makes the rename itself durable; not every platform can open a directory for this
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.trace("Could not force the finalize spool directory: {}", e.getMessage());
+        }
+    }
+}
@@ -4,17 +4,21 @@ package com.vuiquiz.quizwebsocket.service.impl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.GameResultProperties;
 import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto;
 import com.vuiquiz.quizwebsocket.dto.SessionGameSlideDto;
 import com.vuiquiz.quizwebsocket.dto.SessionPlayerAnswerDto;
 import com.vuiquiz.quizwebsocket.dto.SessionPlayerDto;
+import com.vuiquiz.quizwebsocket.dto.SessionSlideCheckpointDto;
 import com.vuiquiz.quizwebsocket.exception.ForbiddenAccessException;
 import com.vuiquiz.quizwebsocket.exception.ResourceNotFoundException;
+import com.vuiquiz.quizwebsocket.exception.SessionAlreadyFinalizedException;
 import com.vuiquiz.quizwebsocket.exception.UnauthorizedException;
 import com.vuiquiz.quizwebsocket.model.*;
 import com.vuiquiz.quizwebsocket.repository.*; // Assuming PlayerAnswerRepository is here
 import com.vuiquiz.quizwebsocket.security.services.UserDetailsImpl;
 import com.vuiquiz.quizwebsocket.service.GameResultService;
+import com.vuiquiz.quizwebsocket.service.websocket.QuestionTimer;
 import com.vuiquiz.quizwebsocket.utils.DateTimeUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -26,12 +30,18 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -41,37 +51,73 @@ public class GameResultServiceImpl implements GameResultService {
     private final GameSessionRepository gameSessionRepository;
     private final UserAccountRepository userAccountRepository;
     private final QuizRepository quizRepository;
-    private final PlayerRepository playerRepository;
-    private final GameSlideRepository gameSlideRepository;
-    private final PlayerAnswerRepository playerAnswerRepository; // Added for Phase 4
+    private final GameResultBatchRepository gameResultBatchRepository; // Players, slides and answers, batched
     // private final QuestionRepository questionRepository;
     // private final PowerUpRepository powerUpRepository; // For future validation of usedPowerUpId
     private final ObjectMapper objectMapper;
+    private final QuestionTimer questionTimer;
+    private final GameResultProperties gameResultProperties;
+
+    // Status of a session stored by checkpoints and not finalized yet
+    private static final String CHECKPOINT_STATUS = "RUNNING";
+    // A checkpointed session whose game ended without a finalize; a late finalize still completes it
+    private static final String ABANDONED_STATUS = "ABANDONED";
 
     @Override
-    @Transactional // This transaction now includes updating the Quiz
+    @Transactional
     public String saveSessionFinalization(SessionFinalizationDto sessionData) {
-        log.info("Attempting to save session finalization for gamePin: {}", sessionData.getGamePin());
-
         UUID authenticatedUserId = getAuthenticatedUserId();
         if (authenticatedUserId == null) {
             log.error("User performing finalize operation is not authenticated or user details not found.");
             throw new UnauthorizedException("User must be authenticated to finalize a session.");
         }
+        resolveServerTiming(sessionData);
+        return saveSessionFinalization(sessionData, authenticatedUserId);
+    }
+
+    @Override
+    @Transactional // This transaction now includes updating the Quiz
+    public String saveSessionFinalization(SessionFinalizationDto sessionData, UUID authenticatedUserId) {
+        log.info("Attempting to save session finalization for gamePin: {}", sessionData.getGamePin());
+
+        // A retried finalize returns the session its first attempt stored, and writes nothing.
+        // A session checkpointed during the game is completed instead: only what it lacks is written.
+        String finalizeKey = finalizeKeyOf(sessionData, authenticatedUserId);
+        GameSession checkpointedSession = null;
+        if (finalizeKey != null) {
+            gameResultBatchRepository.lockFinalizeKey(finalizeKey);
+            Optional<GameSession> storedSession = gameSessionRepository.findByFinalizeKey(finalizeKey);
+            if (storedSession.isPresent() && !isCheckpointed(storedSession.get())) {
+                log.info("Session finalization for gamePin: {} was already saved as session ID: {}. Not saving it again.",
+                        sessionData.getGamePin(), storedSession.get().getSessionId());
+                return storedSession.get().getSessionId().toString();
+            }
+            checkpointedSession = storedSession.orElse(null);
+        }
 
         // Phase 1: Save GameSession
-        GameSession gameSessionEntity = mapDtoToGameSession(sessionData);
+        GameSession gameSessionEntity = mapDtoToGameSession(sessionData, checkpointedSession != null ? checkpointedSession : new GameSession());
         UUID actualHostId = determineAndValidateHostId(sessionData.getHostUserId(), authenticatedUserId);
         gameSessionEntity.setHostId(actualHostId);
+        gameSessionEntity.setFinalizeKey(finalizeKey);
 
         UUID quizUuid = validateAndSetQuizId(gameSessionEntity, sessionData.getQuizId()); // Get the validated Quiz UUID
 
-        GameSession savedGameSession = gameSessionRepository.save(gameSessionEntity);
+        // Flushed now: the batched inserts below go straight to JDBC and reference this row
+        GameSession savedGameSession = gameSessionRepository.saveAndFlush(gameSessionEntity);
         log.info("Successfully saved GameSession with ID: {} for gamePin: {}", savedGameSession.getSessionId(), savedGameSession.getGamePin());
 
-        Map<String, Player> playerClientIdToPlayerMap = savePlayers(sessionData.getPlayers(), savedGameSession.getSessionId());
+        long startNanos = System.nanoTime();
+        UUID sessionId = savedGameSession.getSessionId();
+        Map<String, UUID> storedPlayerIds = checkpointedSession != null ? gameResultBatchRepository.findPlayerIdsByClientId(sessionId) : Map.of();
+        Set<Integer> storedSlideIndexes = checkpointedSession != null ? gameResultBatchRepository.findSlideIndexes(sessionId) : Set.of();
+        boolean bulkCopy = useBulkCopy(sessionData, storedPlayerIds, storedSlideIndexes);
+        Map<String, UUID> playerIdsByClientId = savePlayers(sessionData.getPlayers(), sessionId, storedPlayerIds, bulkCopy);
 
-        saveGameSlidesAndAnswers(sessionData.getGameSlides(), savedGameSession.getSessionId(), playerClientIdToPlayerMap);
+        saveGameSlidesAndAnswers(sessionData.getGameSlides(), sessionId, playerIdsByClientId, storedSlideIndexes, bulkCopy);
+        log.info("Wrote players, slides and answers of session ID: {} in {} ms{}{}.", sessionId,
+                (System.nanoTime() - startNanos) / 1_000_000, bulkCopy ? " using COPY" : "",
+                checkpointedSession != null ? " on top of its checkpoints" : "");
 
         // --- TWEAK 1: Update Quiz play_count and status ---
         try {
@@ -95,6 +141,83 @@ public class GameResultServiceImpl implements GameResultService {
         return savedGameSession.getSessionId().toString();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void validateFinalization(SessionFinalizationDto sessionData, UUID authenticatedUserId) {
+        determineAndValidateHostId(sessionData.getHostUserId(), authenticatedUserId);
+        validateQuizId(sessionData.getQuizId(), sessionData.getGamePin());
+    }
+
+    @Override
+    @Transactional
+    public String saveSlideCheckpoint(SessionSlideCheckpointDto checkpoint) {
+        UUID authenticatedUserId = getAuthenticatedUserId();
+        if (authenticatedUserId == null) {
+            log.error("User performing checkpoint operation is not authenticated or user details not found.");
+            throw new UnauthorizedException("User must be authenticated to checkpoint a session.");
+        }
+        String finalizeKey = finalizeKey(authenticatedUserId, checkpoint.getIdempotencyKey(), checkpoint.getGamePin(), checkpoint.getSessionStartTime());
+        if (finalizeKey == null) {
+            throw new IllegalArgumentException("sessionStartTime or idempotencyKey is required to checkpoint a session.");
+        }
+        // Serializes the checkpoints and the finalize of one game
+        gameResultBatchRepository.lockFinalizeKey(finalizeKey);
+        GameSession session = gameSessionRepository.findByFinalizeKey(finalizeKey).orElse(null);
+        Map<String, UUID> storedPlayerIds;
+        Set<Integer> storedSlideIndexes;
+        if (session == null) {
+            session = new GameSession();
+            session.setGamePin(checkpoint.getGamePin());
+            session.setStartedAt(DateTimeUtil.fromMillis(checkpoint.getSessionStartTime()));
+            session.setGameType(checkpoint.getGameType());
+            session.setStatus(CHECKPOINT_STATUS);
+            session.setAllowLateJoin(checkpoint.isAllowLateJoin());
+            session.setPowerUpsEnabled(checkpoint.isPowerUpsEnabled());
+            session.setHostId(determineAndValidateHostId(checkpoint.getHostUserId(), authenticatedUserId));
+            session.setFinalizeKey(finalizeKey);
+            validateAndSetQuizId(session, checkpoint.getQuizId());
+            session = gameSessionRepository.saveAndFlush(session);
+            log.info("Created GameSession with ID: {} for the checkpoints of gamePin: {}", session.getSessionId(), session.getGamePin());
+            storedPlayerIds = Map.of();
+            storedSlideIndexes = Set.of();
+        } else if (!isCheckpointed(session)) {
+            throw new SessionAlreadyFinalizedException("The session of gamePin " + checkpoint.getGamePin() + " is already finalized.");
+        } else {
+            if (ABANDONED_STATUS.equals(session.getStatus())) {
+                log.info("GameSession with ID: {} was marked abandoned but gamePin: {} is still checkpointing. Reopening it.", session.getSessionId(), session.getGamePin());
+                session.setStatus(CHECKPOINT_STATUS);
+                session.setEndedAt(null);
+            }
+            storedPlayerIds = gameResultBatchRepository.findPlayerIdsByClientId(session.getSessionId());
+            storedSlideIndexes = gameResultBatchRepository.findSlideIndexes(session.getSessionId());
+        }
+
+        long startNanos = System.nanoTime();
+        resolveServerTiming(checkpoint.getGamePin(), checkpoint.getSlides());
+        Map<String, UUID> playerIdsByClientId = savePlayers(checkpoint.getPlayers(), session.getSessionId(), storedPlayerIds, false);
+        saveGameSlidesAndAnswers(checkpoint.getSlides(), session.getSessionId(), playerIdsByClientId, storedSlideIndexes, false);
+        session.setPlayerCount(playerIdsByClientId.size());
+        log.info("Checkpointed {} slides of session ID: {} in {} ms.", checkpoint.getSlides().size(), session.getSessionId(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+        return session.getSessionId().toString();
+    }
+
+    @Override
+    @Transactional
+    public int abandonCheckpointedSessions(String gamePin) {
+        return gameSessionRepository.updateStatusByGamePin(gamePin, CHECKPOINT_STATUS, ABANDONED_STATUS, OffsetDateTime.now());
+    }
+
+    @Override
+    @Transactional
+    public int abandonCheckpointedSessionsCreatedBefore(OffsetDateTime cutoff) {
+        return gameSessionRepository.updateStatusByCreatedAtBefore(cutoff, CHECKPOINT_STATUS, ABANDONED_STATUS, OffsetDateTime.now());
+    }
+
+    private static boolean isCheckpointed(GameSession session) {
+        return CHECKPOINT_STATUS.equals(session.getStatus()) || ABANDONED_STATUS.equals(session.getStatus());
+    }
+
     private UUID determineAndValidateHostId(String hostUserIdFromDto, UUID authenticatedUserId) {
         UUID hostIdToSet;
         boolean dtoHostIdValidAndExists = false;
@@ -136,20 +259,25 @@ public class GameResultServiceImpl implements GameResultService {
 
     // Modified to return the UUID for convenience
     private UUID validateAndSetQuizId(GameSession gameSession, String quizIdFromDto) {
+        UUID quizId = validateQuizId(quizIdFromDto, gameSession.getGamePin());
+        gameSession.setQuizId(quizId);
+        return quizId; // Return the validated UUID
+    }
+
+    private UUID validateQuizId(String quizIdFromDto, String gamePin) {
         if (!StringUtils.hasText(quizIdFromDto)) {
-            log.error("quizId is missing in the request payload for gamePin: {}", gameSession.getGamePin());
+            log.error("quizId is missing in the request payload for gamePin: {}", gamePin);
             throw new IllegalArgumentException("quizId cannot be null or empty.");
         }
         try {
             UUID quizId = UUID.fromString(quizIdFromDto);
             if (!quizRepository.existsById(quizId)) {
-                log.error("Quiz with ID {} not found for gamePin: {}", quizId, gameSession.getGamePin());
+                log.error("Quiz with ID {} not found for gamePin: {}", quizId, gamePin);
                 throw new ResourceNotFoundException("Quiz", "id", quizIdFromDto);
             }
-            gameSession.setQuizId(quizId);
-            return quizId; // Return the validated UUID
+            return quizId;
         } catch (IllegalArgumentException e) {
-            log.error("Invalid quizId format: {} for gamePin: {}. Details: {}", quizIdFromDto, gameSession.getGamePin(), e.getMessage());
+            log.error("Invalid quizId format: {} for gamePin: {}. Details: {}", quizIdFromDto, gamePin, e.getMessage());
             throw new IllegalArgumentException("Invalid quizId format: " + quizIdFromDto);
         }
     }
@@ -166,35 +294,84 @@ public class GameResultServiceImpl implements GameResultService {
         return null;
     }
 
-    private Map<String, Player> savePlayers(List<SessionPlayerDto> playerDtos, UUID sessionId) {
+    // Large games stream their player and answer rows with COPY; the threshold counts the rows that will be
+    // inserted, i.e. not the players and slides a checkpoint stored already
+    private boolean useBulkCopy(SessionFinalizationDto sessionData, Map<String, UUID> storedPlayerIds, Set<Integer> storedSlideIndexes) {
+        GameResultProperties.Copy copy = gameResultProperties.getCopy();
+        if (!copy.isEnabled()) {
+            return false;
+        }
+        long rows = 0;
+        if (sessionData.getPlayers() != null) {
+            for (SessionPlayerDto playerDto : sessionData.getPlayers()) {
+                rows += storedPlayerIds.containsKey(playerDto.getClientId()) ? 0 : 1;
+            }
+        }
+        if (sessionData.getGameSlides() != null) {
+            for (SessionGameSlideDto slideDto : sessionData.getGameSlides()) {
+                if (slideDto.getPlayerAnswers() != null && !storedSlideIndexes.contains(slideDto.getSlideIndex())) {
+                    rows += slideDto.getPlayerAnswers().size();
+                }
+            }
+        }
+        return rows >= copy.getMinRows();
+    }
+
+    // Players already stored (by a checkpoint) are updated with their latest totals, the others inserted
+    private Map<String, UUID> savePlayers(List<SessionPlayerDto> playerDtos, UUID sessionId, Map<String, UUID> storedPlayerIds, boolean bulkCopy) {
+        Map<String, UUID> playerIdsByClientId = new HashMap<>(storedPlayerIds);
         if (CollectionUtils.isEmpty(playerDtos)) {
             log.info("No players found in the payload for session ID: {}", sessionId);
-            return Map.of();
+            return playerIdsByClientId;
         }
         List<Player> playersToSave = new ArrayList<>();
+        List<Player> playersToUpdate = new ArrayList<>();
         for (SessionPlayerDto playerDto : playerDtos) {
             Player playerEntity = mapDtoToPlayer(playerDto, sessionId);
-            playersToSave.add(playerEntity);
+            UUID storedPlayerId = storedPlayerIds.get(playerDto.getClientId());
+            if (storedPlayerId != null) {
+                playerEntity.setPlayerId(storedPlayerId);
+                playersToUpdate.add(playerEntity);
+            } else {
+                playersToSave.add(playerEntity);
+            }
+            playerIdsByClientId.put(playerEntity.getClientId(), playerEntity.getPlayerId());
+        }
+        if (playersToSave.isEmpty()) {
+            log.debug("Every player in the payload for session ID: {} is already stored.", sessionId);
+        } else if (bulkCopy) {
+            gameResultBatchRepository.copyPlayers(playersToSave);
+        } else {
+            gameResultBatchRepository.insertPlayers(playersToSave);
+        }
+        if (!playersToUpdate.isEmpty()) {
+            gameResultBatchRepository.updatePlayers(playersToUpdate);
         }
-        List<Player> savedPlayers = playerRepository.saveAll(playersToSave);
-        log.info("Successfully saved {} players for session ID: {}", savedPlayers.size(), sessionId);
-        return savedPlayers.stream().collect(Collectors.toMap(Player::getClientId, Function.identity()));
+        log.info("Successfully saved {} players and updated {} for session ID: {}", playersToSave.size(), playersToUpdate.size(), sessionId);
+        return playerIdsByClientId;
     }
 
-    private void saveGameSlidesAndAnswers(List<SessionGameSlideDto> gameSlideDtos, UUID sessionId, Map<String, Player> playerClientIdToPlayerMap) {
+    // Slides already stored (by a checkpoint) are skipped along with their answers
+    private void saveGameSlidesAndAnswers(List<SessionGameSlideDto> gameSlideDtos, UUID sessionId, Map<String, UUID> playerIdsByClientId,
+                                          Set<Integer> storedSlideIndexes, boolean bulkCopy) {
         if (CollectionUtils.isEmpty(gameSlideDtos)) {
             log.info("No game slides found in the payload for session ID: {}", sessionId);
             return;
         }
+        List<GameSlide> slidesToSave = new ArrayList<>();
         List<PlayerAnswer> allPlayerAnswersToSave = new ArrayList<>();
         for (SessionGameSlideDto slideDto : gameSlideDtos) {
+            if (storedSlideIndexes.contains(slideDto.getSlideIndex())) {
+                log.debug("Slide index {} of session ID: {} is already stored. Skipping it.", slideDto.getSlideIndex(), sessionId);
+                continue;
+            }
             GameSlide slideEntity = mapDtoToGameSlide(slideDto, sessionId);
-            GameSlide savedSlideEntity = gameSlideRepository.save(slideEntity);
+            slidesToSave.add(slideEntity);
             if (!CollectionUtils.isEmpty(slideDto.getPlayerAnswers())) {
                 for (SessionPlayerAnswerDto answerDto : slideDto.getPlayerAnswers()) {
-                    Player currentPlayer = playerClientIdToPlayerMap.get(answerDto.getClientId());
-                    if (currentPlayer != null) {
-                        PlayerAnswer answerEntity = mapDtoToPlayerAnswer(answerDto, savedSlideEntity.getSlideId(), currentPlayer.getPlayerId());
+                    UUID playerId = playerIdsByClientId.get(answerDto.getClientId());
+                    if (playerId != null) {
+                        PlayerAnswer answerEntity = mapDtoToPlayerAnswer(answerDto, slideEntity.getSlideId(), playerId);
                         allPlayerAnswersToSave.add(answerEntity);
                     } else {
                         log.warn("Could not find player with clientId: {} for an answer on slideIndex: {}. Skipping this answer.",
@@ -203,14 +380,22 @@ public class GameResultServiceImpl implements GameResultService {
                 }
             }
         }
+        if (slidesToSave.isEmpty()) {
+            return;
+        }
+        gameResultBatchRepository.insertGameSlides(slidesToSave);
+        log.info("Successfully saved {} game slides for session ID: {}", slidesToSave.size(), sessionId);
         if (!allPlayerAnswersToSave.isEmpty()) {
-            playerAnswerRepository.saveAll(allPlayerAnswersToSave);
+            if (bulkCopy) {
+                gameResultBatchRepository.copyPlayerAnswers(allPlayerAnswersToSave);
+            } else {
+                gameResultBatchRepository.insertPlayerAnswers(allPlayerAnswersToSave);
+            }
             log.info("Successfully saved {} player answers for session ID: {}", allPlayerAnswersToSave.size(), sessionId);
         }
     }
 
-    private GameSession mapDtoToGameSession(SessionFinalizationDto dto) {
-        GameSession session = new GameSession();
+    private GameSession mapDtoToGameSession(SessionFinalizationDto dto, GameSession session) {
         session.setGamePin(dto.getGamePin());
         session.setStartedAt(DateTimeUtil.fromMillis(dto.getSessionStartTime()));
         session.setEndedAt(DateTimeUtil.fromMillis(dto.getSessionEndTime()));
@@ -226,6 +411,7 @@ public class GameResultServiceImpl implements GameResultService {
 
     private Player mapDtoToPlayer(SessionPlayerDto dto, UUID sessionId) {
         Player player = new Player();
+        player.setPlayerId(UUID.randomUUID());
         player.setSessionId(sessionId);
         player.setClientId(dto.getClientId());
         player.setNickname(dto.getNickname());
@@ -280,6 +466,7 @@ public class GameResultServiceImpl implements GameResultService {
 
     private GameSlide mapDtoToGameSlide(SessionGameSlideDto dto, UUID sessionId) {
         GameSlide slide = new GameSlide();
+        slide.setSlideId(UUID.randomUUID()); // Assigned here so answers can reference it before the batch insert
         slide.setSessionId(sessionId);
         slide.setSlideIndex(dto.getSlideIndex());
         slide.setSlideType(dto.getSlideType());
@@ -307,9 +494,60 @@ public class GameResultServiceImpl implements GameResultService {
         return slide;
     }
 
+    @Override
+    public String finalizeKeyOf(SessionFinalizationDto sessionData, UUID authenticatedUserId) {
+        return finalizeKey(authenticatedUserId, sessionData.getIdempotencyKey(), sessionData.getGamePin(), sessionData.getSessionStartTime());
+    }
+
+    private static String finalizeKey(UUID authenticatedUserId, String idempotencyKey, String gamePin, Long sessionStartTime) {
+        String basis;
+        if (StringUtils.hasText(idempotencyKey)) {
+            basis = "key:" + idempotencyKey;
+        } else if (StringUtils.hasText(gamePin) && sessionStartTime != null) {
+            basis = "game:" + gamePin + ":" + sessionStartTime;
+        } else {
+            return null; // Nothing identifies a retry
+        }
+        // Scoped to the host, and hashed so any client-chosen key fits the indexed column
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest((authenticatedUserId + "|" + basis).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // The server's measurement of an answer, if the game ran on this node, wins over the device's clock. Only
+    // questions whose START_QUESTION named their questionIndex are measured, so the index always matches the DTO's.
+    @Override
+    public void resolveServerTiming(SessionFinalizationDto sessionData) {
+        resolveServerTiming(sessionData.getGamePin(), sessionData.getGameSlides());
+    }
+
+    private void resolveServerTiming(String gamePin, List<SessionGameSlideDto> slideDtos) {
+        if (gamePin == null || CollectionUtils.isEmpty(slideDtos)) {
+            return;
+        }
+        for (SessionGameSlideDto slideDto : slideDtos) {
+            if (CollectionUtils.isEmpty(slideDto.getPlayerAnswers())) {
+                continue;
+            }
+            for (SessionPlayerAnswerDto answerDto : slideDto.getPlayerAnswers()) {
+                if (answerDto.getQuestionIndex() == null) {
+                    continue;
+                }
+                QuestionTimer.MeasuredAnswer measured = questionTimer.measuredAnswer(gamePin, answerDto.getQuestionIndex(), answerDto.getClientId());
+                if (measured != null) {
+                    answerDto.setReactionTimeMs(measured.reactionMs());
+                    answerDto.setAnswerTimestamp(measured.answeredAtMs());
+                }
+            }
+        }
+    }
+
     private PlayerAnswer mapDtoToPlayerAnswer(SessionPlayerAnswerDto dto, UUID slideId, UUID playerId) {
         PlayerAnswer answer = new PlayerAnswer();
-        // answer_id is generated by DB
+        answer.setAnswerId(UUID.randomUUID());
         answer.setSlideId(slideId);   // Link to the GameSlide
         answer.setPlayerId(playerId); // Link to the Player
 
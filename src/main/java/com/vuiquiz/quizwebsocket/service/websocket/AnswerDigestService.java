@@ -0,0 +1,272 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side answer aggregation for hosts that opt in.
+ * <p>
+ * Normally every player ANSWER frame is relayed to /topic/host/{pin} on its own. When a host enables the
+ * digest for its game, answers are kept in a per-slide tally instead: counts per choice, answered count and
+ * the fastest answers. The host gets an ANSWER_DIGEST at most every {@code app.websocket.answer-digest.tick-ms}
+ * while the slide is open, and one ANSWER_LIST with every answer frame when the slide closes (TIME_UP or
+ * the next START_QUESTION). Host fan-in therefore grows with ticks instead of with players.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnswerDigestService {
+
+    public static final String ANSWER_DIGEST = "ANSWER_DIGEST";
+    public static final String ANSWER_LIST = "ANSWER_LIST";
+
+    private final GameSessionManager sessionManager;
+    private final GameMessageBroadcaster broadcaster;
+    private final WebSocketProperties properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // <GamePin, tally of the current slide>; present only for games whose host enabled the digest
+    private final Map<String, SlideTally> tallies = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService digestScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "answer-digest");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void startTicker() {
+        long tickMs = properties.getAnswerDigest().getTickMs();
+        digestScheduler.scheduleAtFixedRate(this::pushDigests, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        digestScheduler.shutdownNow();
+    }
+
+    /**
+     * Turns the digest on or off for a game. Turning it off flushes the open slide to the host first.
+     * @return true if the digest is now enabled for the game.
+     */
+    public boolean setEnabled(String gamePin, boolean enabled) {
+        if (enabled && properties.getAnswerDigest().isEnabled()) {
+            tallies.computeIfAbsent(gamePin, pin -> new SlideTally());
+            log.info("Session {}: answer digest enabled.", gamePin);
+            return true;
+        }
+        SlideTally removed = tallies.remove(gamePin);
+        if (removed != null) {
+            closeAndSend(gamePin, removed);
+            log.info("Session {}: answer digest disabled.", gamePin);
+        }
+        return false;
+    }
+
+    public boolean isEnabled(String gamePin) {
+        return tallies.containsKey(gamePin);
+    }
+
+    /**
+     * Observes a host broadcast and opens or closes the slide tally.
+     */
+    public void onHostBroadcast(String gamePin, int messageId) {
+        SlideTally tally = tallies.get(gamePin);
+        if (tally == null) {
+            return;
+        }
+        if (messageId == GameMessageIds.START_QUESTION) {
+            closeAndSend(gamePin, tally);
+            tally.open(System.nanoTime());
+        } else if (messageId == GameMessageIds.TIME_UP || messageId == GameMessageIds.GAME_OVER) {
+            closeAndSend(gamePin, tally);
+        }
+    }
+
+    /**
+     * Records a player's ANSWER frame if the digest is on for the game.
+     * @param frame The relayed frame, with data.cid already set to the player.
+     * @return true if the answer was absorbed into the tally and must not be relayed to the host individually.
+     */
+    public boolean tryRecordAnswer(String gamePin, String playerSessionId, byte[] frame) {
+        SlideTally tally = tallies.get(gamePin);
+        if (tally == null) {
+            return false;
+        }
+        long receivedAt = System.nanoTime();
+        String choiceKey = readChoiceKey(frame);
+        return tally.record(playerSessionId, choiceKey, receivedAt, frame, properties.getAnswerDigest().getFastestCount());
+    }
+
+    private void pushDigests() {
+        for (Map.Entry<String, SlideTally> entry : tallies.entrySet()) {
+            String gamePin = entry.getKey();
+            GameSessionManager.SessionInfo session = sessionManager.getSession(gamePin);
+            if (session == null) {
+                tallies.remove(gamePin);
+                continue;
+            }
+            Map<String, Object> digest = entry.getValue().digestIfChanged(session.getPlayerCount());
+            if (digest != null) {
+                sendToHost(gamePin, digest);
+            }
+        }
+    }
+
+    private void closeAndSend(String gamePin, SlideTally tally) {
+        SlideTally.Closed closed = tally.close(sessionManager.getSession(gamePin));
+        if (closed == null) {
+            return;
+        }
+        if (closed.finalDigest() != null) {
+            sendToHost(gamePin, closed.finalDigest());
+        }
+        // The answers are already serialized; splice them into the array without re-encoding
+        ByteArrayOutputStream out = new ByteArrayOutputStream(closed.totalAnswerBytes() + 64);
+        out.writeBytes(("{\"type\":\"" + ANSWER_LIST + "\",\"slideSeq\":" + closed.slideSeq() + ",\"answers\":[").getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < closed.answerFrames().size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(closed.answerFrames().get(i));
+        }
+        out.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+        broadcaster.send("/topic/host/" + gamePin, out.toByteArray(), OutboundPriority.BULK);
+        log.debug("Session {}: sent answer list with {} answers for slide {}", gamePin, closed.answerFrames().size(), closed.slideSeq());
+    }
+
+    // A digest repeats all counts so far, so a host that is behind only needs the newest one
+    private void sendToHost(String gamePin, Map<String, Object> payload) {
+        String destination = "/topic/host/" + gamePin;
+        try {
+            broadcaster.send(destination, broadcaster.encode(payload), Map.of(), OutboundPriority.NORMAL, SlowConsumerPolicy.ANSWER_DIGEST);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize answer digest for {}: {}", destination, e.getMessage());
+        }
+    }
+
+    // data.content is itself a JSON string, e.g. {"type":"quiz","choice":2,"questionIndex":3}
+    private String readChoiceKey(byte[] frame) {
+        try {
+            JsonNode content = objectMapper.readTree(frame).path("data").path("content");
+            JsonNode contentNode = content.isTextual() ? objectMapper.readTree(content.asText()) : content;
+            JsonNode choice = contentNode.path("choice");
+            if (choice.isMissingNode() || choice.isNull()) {
+                JsonNode text = contentNode.path("text");
+                return text.isMissingNode() ? "none" : text.asText();
+            }
+            return choice.isValueNode() ? choice.asText() : choice.toString();
+        } catch (Exception e) {
+            log.debug("Could not read choice from answer frame: {}", e.getMessage());
+            return "unknown";
+        }
+    }
+
+    private static final class SlideTally {
+        private int slideSeq = 0;
+        private boolean open = false;
+        private long openedAtNanos;
+        private final Map<String, Integer> choiceCounts = new LinkedHashMap<>();
+        private final Set<String> answeredPlayers = new HashSet<>();
+        private final List<byte[]> answerFrames = new ArrayList<>();
+        private final List<FastAnswer> fastest = new ArrayList<>();
+        private int totalAnswerBytes = 0;
+        private boolean dirty = false;
+
+        record FastAnswer(String cid, long reactionMs, String choice) {
+        }
+
+        record Closed(int slideSeq, Map<String, Object> finalDigest, List<byte[]> answerFrames, int totalAnswerBytes) {
+        }
+
+        synchronized void open(long nowNanos) {
+            slideSeq++;
+            open = true;
+            openedAtNanos = nowNanos;
+            choiceCounts.clear();
+            answeredPlayers.clear();
+            answerFrames.clear();
+            fastest.clear();
+            totalAnswerBytes = 0;
+            dirty = true;
+        }
+
+        // Answers outside an open slide are relayed as usual, so nothing is lost if the host never sends START_QUESTION
+        synchronized boolean record(String playerSessionId, String choiceKey, long receivedAtNanos, byte[] frame, int fastestCount) {
+            if (!open) {
+                return false;
+            }
+            if (!answeredPlayers.add(playerSessionId)) {
+                return true; // Only the first answer of a player counts; later ones are dropped
+            }
+            choiceCounts.merge(choiceKey, 1, Integer::sum);
+            answerFrames.add(frame);
+            totalAnswerBytes += frame.length + 1;
+
+            long reactionMs = TimeUnit.NANOSECONDS.toMillis(receivedAtNanos - openedAtNanos);
+            if (fastest.size() < fastestCount || reactionMs < fastest.get(fastest.size() - 1).reactionMs()) {
+                int insertAt = 0;
+                while (insertAt < fastest.size() && fastest.get(insertAt).reactionMs() <= reactionMs) {
+                    insertAt++;
+                }
+                fastest.add(insertAt, new FastAnswer(playerSessionId, reactionMs, choiceKey));
+                if (fastest.size() > fastestCount) {
+                    fastest.remove(fastest.size() - 1);
+                }
+            }
+            dirty = true;
+            return true;
+        }
+
+        synchronized Map<String, Object> digestIfChanged(int playerCount) {
+            if (!open || !dirty) {
+                return null;
+            }
+            dirty = false;
+            return buildDigest(playerCount, false);
+        }
+
+        synchronized Closed close(GameSessionManager.SessionInfo session) {
+            if (!open) {
+                return null;
+            }
+            open = false;
+            Map<String, Object> finalDigest = buildDigest(session != null ? session.getPlayerCount() : 0, true);
+            Closed closed = new Closed(slideSeq, finalDigest, new ArrayList<>(answerFrames), totalAnswerBytes);
+            answerFrames.clear();
+            dirty = false;
+            return closed;
+        }
+
+        private Map<String, Object> buildDigest(int playerCount, boolean closed) {
+            Map<String, Object> digest = new LinkedHashMap<>();
+            digest.put("type", ANSWER_DIGEST);
+            digest.put("slideSeq", slideSeq);
+            digest.put("closed", closed);
+            digest.put("answeredCount", answeredPlayers.size());
+            digest.put("playerCount", playerCount);
+            digest.put("choiceCounts", new LinkedHashMap<>(choiceCounts));
+            digest.put("fastest", new ArrayList<>(fastest));
+            return digest;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.GameResultProperties;
+import com.vuiquiz.quizwebsocket.service.GameResultService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes stored sessions that received slide checkpoints but were never finalized.
+ * <p>
+ * When a game leaves this node (its last participant left, or the reaper evicted it), its RUNNING sessions are
+ * marked ABANDONED with an end time, so reports no longer show them as in progress. Games lost with a node that
+ * stopped are caught by a periodic sweep of sessions older than {@code app.results.checkpoint.abandon-after-ms}.
+ * Neither is final: a late finalization still completes an ABANDONED session, and a late checkpoint reopens it.
+ */
+@Service
+@Slf4j
+public class CheckpointedSessionReaper implements GameSessionManager.SessionChangeListener {
+
+    private final GameSessionManager sessionManager;
+    private final GameResultService gameResultService;
+    private final GameResultProperties.Checkpoint settings;
+    // The database work stays off the lanes and the session reaper that report game removals
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "checkpoint-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CheckpointedSessionReaper(GameSessionManager sessionManager,
+                                     GameResultService gameResultService,
+                                     GameResultProperties properties) {
+        this.sessionManager = sessionManager;
+        this.gameResultService = gameResultService;
+        this.settings = properties.getCheckpoint();
+    }
+
+    @PostConstruct
+    void register() {
+        sessionManager.addChangeListener(this);
+        long interval = settings.getSweepIntervalMs();
+        scheduler.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void participantRemoved(String gamePin, String sessionId) {
+        if (sessionManager.getSession(gamePin) == null) {
+            abandon(gamePin);
+        }
+    }
+
+    @Override
+    public void sessionEvicted(String gamePin, GameSessionManager.EvictionReason reason) {
+        if (reason != GameSessionManager.EvictionReason.PIN_CONFLICT) { // The PIN's game goes on on another node
+            abandon(gamePin);
+        }
+    }
+
+    private void abandon(String gamePin) {
+        try {
+            scheduler.execute(() -> {
+                try {
+                    int abandoned = gameResultService.abandonCheckpointedSessions(gamePin);
+                    if (abandoned > 0) {
+                        log.info("Game {} ended without finalization; marked {} checkpointed session(s) abandoned.", gamePin, abandoned);
+                    }
+                } catch (Exception e) {
+                    log.warn("Could not mark the checkpointed sessions of game {} abandoned: {}", gamePin, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the sweep of the next start catches it
+        }
+    }
+
+    private void sweep() {
+        try {
+            OffsetDateTime cutoff = OffsetDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(settings.getAbandonAfterMs()));
+            int abandoned = gameResultService.abandonCheckpointedSessionsCreatedBefore(cutoff);
+            if (abandoned > 0) {
+                log.info("Marked {} checkpointed session(s) created before {} abandoned.", abandoned, cutoff);
+            }
+        } catch (Exception e) {
+            log.warn("Sweep of checkpointed sessions failed: {}", e.getMessage());
+        }
+    }
+}
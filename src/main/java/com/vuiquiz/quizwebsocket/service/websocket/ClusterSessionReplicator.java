@@ -0,0 +1,309 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.BrokerAvailabilityEvent;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link GameSessionManager} consistent across nodes in relay broker mode.
+ * <p>
+ * With an external broker, the host and the players of one game may be connected to different nodes. Every node
+ * publishes the session changes of its own participants to {@value #SESSION_EVENTS_TOPIC} on the external broker
+ * and applies the changes of the other nodes, received over the relay's system connection. A node that connects
+ * asks the others to announce their participants, and the participants of a node that stops sending heartbeats
+ * are removed as if they had disconnected. When a node evicts a game, the others drop that node's participants
+ * of it.
+ * <p>
+ * PINs are allocated per node, so two nodes may hand out the same PIN before hearing of each other's game. The
+ * node whose ID sorts first keeps the PIN; the other drops its game ({@link GameSessionManager#yieldPin}), and
+ * until then its participants are not merged into the kept game.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.websocket.broker", name = "mode", havingValue = "relay")
+@Slf4j
+public class ClusterSessionReplicator implements GameSessionManager.SessionChangeListener {
+
+    // Clients may neither send nor subscribe to anything under this prefix, see ClusterTopicGuard
+    public static final String CLUSTER_TOPIC_PREFIX = "/topic/cluster.";
+    public static final String SESSION_EVENTS_TOPIC = CLUSTER_TOPIC_PREFIX + "game-sessions";
+
+    private static final long SYNC_REQUEST_DELAY_MS = 1_000;
+
+    enum EventType {
+        SESSION_CREATED,
+        HOST_ASSIGNED,
+        PLAYER_ADDED,
+        PARTICIPANT_REMOVED,
+        SESSION_EVICTED,
+        NODE_HEARTBEAT,
+        SYNC_REQUEST
+    }
+
+    record ClusterEvent(String nodeId, EventType type, String gamePin, String sessionId) {
+    }
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final GameSessionManager sessionManager;
+    private final GameMessageBroadcaster broadcaster;
+    private final RosterUpdateCoalescer rosterUpdateCoalescer;
+    private final AbstractBrokerMessageHandler relayHandler;
+    private final WebSocketProperties.Broker brokerProperties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // <NodeId, participants that node announced>, so they can be dropped if the node goes silent
+    private final Map<String, RemoteNode> remoteNodes = new ConcurrentHashMap<>();
+    // Placeholders created here that may not have any participant yet
+    private final Set<String> locallyCreatedPins = ConcurrentHashMap.newKeySet();
+    private volatile boolean brokerAvailable = false;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-sessions");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ClusterSessionReplicator(GameSessionManager sessionManager,
+                                    GameMessageBroadcaster broadcaster,
+                                    RosterUpdateCoalescer rosterUpdateCoalescer,
+                                    @Qualifier("stompBrokerRelayMessageHandler") AbstractBrokerMessageHandler relayHandler,
+                                    WebSocketProperties properties) {
+        this.sessionManager = sessionManager;
+        this.broadcaster = broadcaster;
+        this.rosterUpdateCoalescer = rosterUpdateCoalescer;
+        this.relayHandler = relayHandler;
+        this.brokerProperties = properties.getBroker();
+    }
+
+    // Runs before the relay is started by the context, so the subscription is made on the first system connection
+    @PostConstruct
+    void register() {
+        if (!(relayHandler instanceof StompBrokerRelayMessageHandler relay)) {
+            throw new IllegalStateException("app.websocket.broker.mode is relay, but no STOMP broker relay is configured");
+        }
+        Map<String, MessageHandler> subscriptions = new HashMap<>();
+        if (relay.getSystemSubscriptions() != null) {
+            subscriptions.putAll(relay.getSystemSubscriptions());
+        }
+        subscriptions.put(SESSION_EVENTS_TOPIC, this::onClusterMessage);
+        relay.setSystemSubscriptions(subscriptions);
+
+        sessionManager.addChangeListener(this);
+        long heartbeatMs = brokerProperties.getNodeHeartbeatMs();
+        scheduler.scheduleAtFixedRate(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        log.info("Replicating game sessions across nodes as node {}", nodeId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @EventListener
+    public void onBrokerAvailability(BrokerAvailabilityEvent event) {
+        brokerAvailable = event.isBrokerAvailable();
+        if (brokerAvailable) {
+            // The relay subscribes to the cluster topic right after announcing availability; give it a moment.
+            // Changes made while disconnected were not published, so announce our own state as well,
+            // and rebuild the view of the other nodes from their answers to the sync request.
+            scheduler.schedule(() -> {
+                forgetRemoteNodes();
+                announceLocalState();
+                publish(EventType.SYNC_REQUEST, null, null);
+            }, SYNC_REQUEST_DELAY_MS, TimeUnit.MILLISECONDS);
+        } else {
+            log.warn("External broker unavailable; game sessions are not replicated until it is back.");
+        }
+    }
+
+    // --- Local changes, published to the other nodes ---
+
+    @Override
+    public void sessionCreated(String gamePin) {
+        locallyCreatedPins.add(gamePin);
+        publish(EventType.SESSION_CREATED, gamePin, null);
+    }
+
+    @Override
+    public void hostAssigned(String gamePin, String hostSessionId) {
+        publish(EventType.HOST_ASSIGNED, gamePin, hostSessionId);
+    }
+
+    @Override
+    public void playerAdded(String gamePin, String playerSessionId) {
+        publish(EventType.PLAYER_ADDED, gamePin, playerSessionId);
+    }
+
+    @Override
+    public void participantRemoved(String gamePin, String sessionId) {
+        publish(EventType.PARTICIPANT_REMOVED, gamePin, sessionId);
+    }
+
+    @Override
+    public void sessionEvicted(String gamePin, GameSessionManager.EvictionReason reason) {
+        locallyCreatedPins.remove(gamePin);
+        publish(EventType.SESSION_EVICTED, gamePin, null);
+    }
+
+    private void publish(EventType type, String gamePin, String sessionId) {
+        if (!brokerAvailable) {
+            log.debug("External broker unavailable, not publishing {} for session {}", type, gamePin);
+            return;
+        }
+        broadcaster.sendJson(new ClusterEvent(nodeId, type, gamePin, sessionId), SESSION_EVENTS_TOPIC);
+    }
+
+    // --- Changes of other nodes ---
+
+    private void onClusterMessage(Message<?> message) {
+        ClusterEvent event;
+        try {
+            event = objectMapper.readValue((byte[]) message.getPayload(), ClusterEvent.class);
+        } catch (Exception e) {
+            log.error("Ignoring malformed cluster session event: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(event.nodeId())) {
+            return; // Our own event, already applied
+        }
+        RemoteNode node = remoteNodes.computeIfAbsent(event.nodeId(), id -> {
+            log.info("Node {} joined the cluster.", id);
+            return new RemoteNode();
+        });
+        node.lastSeenMillis = System.currentTimeMillis();
+
+        switch (event.type()) {
+            case SESSION_CREATED -> {
+                if (!resolvedPinConflict(event, node)) {
+                    sessionManager.applyRemoteSessionCreated(event.gamePin());
+                }
+            }
+            case HOST_ASSIGNED -> {
+                if (!node.rejectedPins.contains(event.gamePin())) {
+                    node.participants.put(event.sessionId(), event.gamePin());
+                    sessionManager.applyRemoteHost(event.gamePin(), event.sessionId());
+                }
+            }
+            case PLAYER_ADDED -> {
+                if (!node.rejectedPins.contains(event.gamePin())) {
+                    node.participants.put(event.sessionId(), event.gamePin());
+                    sessionManager.applyRemotePlayer(event.gamePin(), event.sessionId());
+                }
+            }
+            case PARTICIPANT_REMOVED -> {
+                node.participants.remove(event.sessionId());
+                sessionManager.applyRemoteLeave(event.gamePin(), event.sessionId());
+            }
+            case SESSION_EVICTED -> {
+                node.rejectedPins.remove(event.gamePin());
+                removeParticipants(node, event.gamePin());
+            }
+            case SYNC_REQUEST -> announceLocalState();
+            case NODE_HEARTBEAT -> {
+                // lastSeenMillis is all it carries
+            }
+        }
+    }
+
+    /**
+     * Handles another node announcing a game under a PIN this node created a game under too.
+     * @return true if the announced game must not be applied as is.
+     */
+    private boolean resolvedPinConflict(ClusterEvent event, RemoteNode node) {
+        String gamePin = event.gamePin();
+        if (!locallyCreatedPins.contains(gamePin)) {
+            return false;
+        }
+        if (sessionManager.getSession(gamePin) == null) {
+            locallyCreatedPins.remove(gamePin); // Our game is over, the PIN is free to be reused
+            return false;
+        }
+        if (nodeId.compareTo(event.nodeId()) < 0) {
+            // That node drops its game when it hears of ours, and announces the eviction
+            log.warn("Node {} created a game under PIN {} too; keeping ours.", event.nodeId(), gamePin);
+            node.rejectedPins.add(gamePin);
+            return true;
+        }
+        log.warn("Node {} created a game under PIN {} too; dropping ours, theirs keeps the PIN.", event.nodeId(), gamePin);
+        locallyCreatedPins.remove(gamePin);
+        return sessionManager.yieldPin(gamePin);
+    }
+
+    private void removeParticipants(RemoteNode node, String gamePin) {
+        node.participants.entrySet().removeIf(entry -> {
+            if (!entry.getValue().equals(gamePin)) {
+                return false;
+            }
+            if (sessionManager.applyRemoteLeave(gamePin, entry.getKey())) {
+                rosterUpdateCoalescer.participantLeft(gamePin, entry.getKey());
+            }
+            return true;
+        });
+    }
+
+    private void announceLocalState() {
+        locallyCreatedPins.removeIf(pin -> sessionManager.getSession(pin) == null);
+        locallyCreatedPins.forEach(pin -> publish(EventType.SESSION_CREATED, pin, null));
+        sessionManager.forEachLocalParticipant((sessionId, ref) -> publish(
+                ref.role() == GameSessionManager.ParticipantRole.HOST ? EventType.HOST_ASSIGNED : EventType.PLAYER_ADDED,
+                ref.gamePin(), sessionId));
+    }
+
+    private void heartbeat() {
+        if (!brokerAvailable) {
+            return; // Cut off from the broker we hear nobody, which says nothing about the other nodes
+        }
+        try {
+            publish(EventType.NODE_HEARTBEAT, null, null);
+            long cutoff = System.currentTimeMillis() - brokerProperties.getNodeTimeoutMs();
+            remoteNodes.entrySet().removeIf(entry -> {
+                if (entry.getValue().lastSeenMillis >= cutoff) {
+                    return false;
+                }
+                Map<String, String> participants = entry.getValue().participants;
+                log.warn("Node {} went silent; removing its {} participants.", entry.getKey(), participants.size());
+                participants.forEach((sessionId, gamePin) -> {
+                    if (sessionManager.applyRemoteLeave(gamePin, sessionId)) {
+                        rosterUpdateCoalescer.participantLeft(gamePin, sessionId);
+                    }
+                });
+                return true;
+            });
+        } catch (Exception e) {
+            log.error("Cluster heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    // Leaves are not announced to hosts: these participants may well still be connected
+    private void forgetRemoteNodes() {
+        remoteNodes.values().forEach(node -> node.participants.forEach(
+                (sessionId, gamePin) -> sessionManager.applyRemoteLeave(gamePin, sessionId)));
+        remoteNodes.clear();
+    }
+
+    private static final class RemoteNode {
+        private volatile long lastSeenMillis = System.currentTimeMillis();
+        // <WebSocket session ID, GamePin>
+        private final Map<String, String> participants = new ConcurrentHashMap<>();
+        // PINs this node holds a game under that lost a PIN conflict to ours, until it announces dropping it
+        private final Set<String> rejectedPins = ConcurrentHashMap.newKeySet();
+    }
+}
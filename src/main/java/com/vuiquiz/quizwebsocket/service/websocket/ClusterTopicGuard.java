@@ -0,0 +1,46 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+/**
+ * Keeps clients away from the topics the nodes use among themselves. With the broker relay, client SEND and
+ * SUBSCRIBE frames for /topic destinations go straight to the external broker, so without this a client
+ * could read or forge session replication events. Destinations holding a broker wildcard are refused as well:
+ * a subscription to /topic/# or /topic/*.session would match the cluster topics too.
+ */
+@Slf4j
+public class ClusterTopicGuard implements ChannelInterceptor {
+
+    // Wildcards of RabbitMQ (#, *) and ActiveMQ/Artemis (>, *); the simple broker treats them literally
+    private static final String WILDCARDS = "#*>";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (messageType != SimpMessageType.MESSAGE && messageType != SimpMessageType.SUBSCRIBE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && (destination.startsWith(ClusterSessionReplicator.CLUSTER_TOPIC_PREFIX)
+                || hasWildcard(destination))) {
+            log.warn("Dropping {} to internal or wildcard destination {} from session {}", messageType, destination,
+                    SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            return null;
+        }
+        return message;
+    }
+
+    private static boolean hasWildcard(String destination) {
+        for (int i = 0; i < destination.length(); i++) {
+            if (WILDCARDS.indexOf(destination.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
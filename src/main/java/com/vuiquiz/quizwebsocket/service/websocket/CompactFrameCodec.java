@@ -0,0 +1,228 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional CBOR encoding of game frames, negotiated per connection.
+ * <p>
+ * A client that sends {@code frame-codec: cbor} with CONNECT receives every MESSAGE frame with a JSON payload
+ * as CBOR instead, in a binary WebSocket frame with content-type application/octet-stream and a
+ * {@code frame-codec: cbor} header. Any client may send CBOR on SEND the same way, or with content-type
+ * application/cbor; the payload is turned into JSON before it reaches the controllers, so the relay, digests and
+ * persistence keep working on JSON only and text and binary clients can share a game.
+ * <p>
+ * The broker hands the same payload array to every subscriber of a topic, so outbound conversions are cached
+ * by array identity and a broadcast is transcoded once, not once per binary subscriber.
+ */
+@Component
+@Slf4j
+public class CompactFrameCodec {
+
+    public static final String CODEC_HEADER = "frame-codec";
+    public static final String CBOR = "cbor";
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    private static final int TRANSCODE_CACHE_SIZE = 256;
+
+    private final WebSocketProperties.Codec settings;
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    // Repeated keys within one frame, e.g. in answer lists, are written once and referenced afterwards
+    private final ObjectMapper cborMapper = new CBORMapper(CBORFactory.builder().enable(CBORGenerator.Feature.STRINGREF).build());
+    // WebSocket session IDs that negotiated CBOR
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    // Guarded by itself; the most recently transcoded payloads, by identity
+    private final Map<PayloadKey, byte[]> transcoded = new LinkedHashMap<>(TRANSCODE_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PayloadKey, byte[]> eldest) {
+            return size() > TRANSCODE_CACHE_SIZE;
+        }
+    };
+
+    private final Counter inboundFrames;
+    private final Counter outboundFrames;
+    private final Counter jsonBytes;
+    private final Counter cborBytes;
+    private final Counter failures;
+
+    private final ChannelInterceptor inbound = new ChannelInterceptor() {
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            return decodeInbound(message);
+        }
+    };
+    private final ChannelInterceptor outbound = new ExecutorChannelInterceptor() {
+        @Override
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            return encodeOutbound(message);
+        }
+    };
+
+    public CompactFrameCodec(WebSocketProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getCodec();
+        this.inboundFrames = Counter.builder("websocket.codec.frames")
+                .description("Frames converted between CBOR and JSON")
+                .tag("direction", "inbound")
+                .register(meterRegistry);
+        this.outboundFrames = Counter.builder("websocket.codec.frames")
+                .description("Frames converted between CBOR and JSON")
+                .tag("direction", "outbound")
+                .register(meterRegistry);
+        this.jsonBytes = Counter.builder("websocket.codec.outbound.bytes")
+                .description("Payload bytes of frames sent to CBOR clients, before and after conversion")
+                .baseUnit("bytes")
+                .tag("encoding", "json")
+                .register(meterRegistry);
+        this.cborBytes = Counter.builder("websocket.codec.outbound.bytes")
+                .description("Payload bytes of frames sent to CBOR clients, before and after conversion")
+                .baseUnit("bytes")
+                .tag("encoding", "cbor")
+                .register(meterRegistry);
+        this.failures = Counter.builder("websocket.codec.failures")
+                .description("Frames that could not be converted and were passed on or dropped")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return The interceptor for the clientInboundChannel: negotiation at CONNECT and CBOR -> JSON, on the transport thread.
+     */
+    public ChannelInterceptor inbound() {
+        return inbound;
+    }
+
+    /**
+     * @return The interceptor for the clientOutboundChannel: JSON -> CBOR for sessions that asked for it, on the sender threads.
+     */
+    public ChannelInterceptor outbound() {
+        return outbound;
+    }
+
+    private Message<?> decodeInbound(Message<?> message) {
+        if (!settings.isEnabled()) {
+            return message;
+        }
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (type == SimpMessageType.CONNECT) {
+            StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+            if (accessor != null && sessionId != null && CBOR.equalsIgnoreCase(accessor.getFirstNativeHeader(CODEC_HEADER))) {
+                cborSessions.add(sessionId);
+                log.debug("Session {} negotiated CBOR frames", sessionId);
+            }
+        } else if (type == SimpMessageType.DISCONNECT) {
+            if (sessionId != null) {
+                cborSessions.remove(sessionId);
+            }
+        } else if (type == SimpMessageType.MESSAGE && message.getPayload() instanceof byte[] payload && isCbor(message)) {
+            return toJson(message, payload);
+        }
+        return message;
+    }
+
+    private Message<?> toJson(Message<?> message, byte[] payload) {
+        byte[] json;
+        try {
+            json = jsonMapper.writeValueAsBytes(cborMapper.readTree(payload));
+        } catch (IOException e) {
+            failures.increment();
+            log.warn("Dropping CBOR frame from session {}: {}", SimpMessageHeaderAccessor.getSessionId(message.getHeaders()), e.getMessage());
+            return null;
+        }
+        inboundFrames.increment();
+        SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message) instanceof SimpMessageHeaderAccessor simp
+                ? simp
+                : SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+
+    // Binary WebSocket frames need content-type application/octet-stream, so the codec header marks them as CBOR
+    private static boolean isCbor(Message<?> message) {
+        SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+        if (accessor != null && CBOR.equalsIgnoreCase(accessor.getFirstNativeHeader(CODEC_HEADER))) {
+            return true;
+        }
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        if (contentType instanceof String value) {
+            contentType = MimeTypeUtils.parseMimeType(value);
+        }
+        return contentType instanceof MimeType mimeType && APPLICATION_CBOR.isCompatibleWith(mimeType);
+    }
+
+    private Message<?> encodeOutbound(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null || !cborSessions.contains(sessionId)
+                || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload) || !looksLikeJson(payload)) {
+            return message;
+        }
+        byte[] cbor = toCbor(payload);
+        if (cbor == null) {
+            return message; // Still readable as text
+        }
+        outboundFrames.increment();
+        jsonBytes.increment(payload.length);
+        cborBytes.increment(cbor.length);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        // Octet-stream is what makes the STOMP handler write a binary WebSocket frame
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(CODEC_HEADER, CBOR);
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    private byte[] toCbor(byte[] json) {
+        PayloadKey key = new PayloadKey(json);
+        synchronized (transcoded) {
+            byte[] cached = transcoded.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] cbor;
+        try {
+            cbor = cborMapper.writeValueAsBytes(jsonMapper.readTree(json));
+        } catch (IOException e) {
+            failures.increment();
+            log.debug("Sending frame as JSON, it could not be converted to CBOR: {}", e.getMessage());
+            return null;
+        }
+        synchronized (transcoded) {
+            transcoded.put(key, cbor);
+        }
+        return cbor;
+    }
+
+    private static boolean looksLikeJson(byte[] payload) {
+        return payload.length > 0 && (payload[0] == '{' || payload[0] == '[');
+    }
+
+    // Record equality compares array components by reference, so this is an identity key
+    private record PayloadKey(byte[] payload) {
+    }
+}
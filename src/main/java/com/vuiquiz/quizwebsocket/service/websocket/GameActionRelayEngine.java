@@ -0,0 +1,272 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming relay for frames sent to /app/controller/{gamepin}.
+ * <p>
+ * The payload is a JSON array of {@code {"data":{...}}} messages. Instead of binding every message
+ * to a Map and serializing it again, the engine walks the raw bytes with a {@link JsonParser},
+ * only reads {@code data.id} and {@code data.cid}, and splices the sender's session ID into the
+ * original bytes. Everything else in the message is forwarded byte-for-byte.
+ */
+@Component
+@Slf4j
+public class GameActionRelayEngine {
+
+    private static final String DATA_FIELD = "data";
+    private static final String ID_FIELD = "id";
+    private static final String CID_FIELD = "cid";
+    private static final byte[] CID_PREFIX = "\"cid\":".getBytes(StandardCharsets.UTF_8);
+
+    private final JsonFactory jsonFactory;
+
+    public GameActionRelayEngine(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * A single outbound message produced by the relay.
+     *
+     * @param privateTargetSessionId STOMP session ID of the player for a private host message, or null for a normal relay.
+     * @param messageId              The numeric data.id of the message, or -1 if it has none.
+     * @param payload                The serialized JSON object to send.
+     */
+    public record RelayFrame(String privateTargetSessionId, int messageId, byte[] payload) {
+        public boolean isPrivate() {
+            return privateTargetSessionId != null;
+        }
+    }
+
+    /**
+     * Splits a controller payload into outbound frames.
+     * Host messages with data.id 8 or 13 and a string data.cid are returned untouched as private frames;
+     * every other message gets data.cid set to the sender's session ID. Messages without a data object, or with
+     * more than one data.cid, are skipped.
+     * The whole payload is validated before any frame is returned, so a malformed payload relays nothing.
+     *
+     * @param payload         Raw UTF-8 JSON payload as received from the client.
+     * @param senderSessionId STOMP session ID of the sender.
+     * @param fromHost        Whether the sender is the host of the game.
+     * @return The frames to send, in payload order.
+     * @throws IOException if the payload is not a well-formed JSON array.
+     */
+    public List<RelayFrame> relay(byte[] payload, String senderSessionId, boolean fromHost) throws IOException {
+        List<RelayFrame> frames = new ArrayList<>(2);
+        byte[] quotedSenderId = null;
+
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array of messages");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new JsonParseException(parser, "Unexpected end of message array");
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    log.warn("Skipping non-object message element ({}) from {}", token, senderSessionId);
+                    parser.skipChildren();
+                    continue;
+                }
+                MessageSpan span = scanMessage(parser);
+                if (!span.hasData) {
+                    log.warn("Message from {} is missing 'data' map or has incorrect format. Skipping it.", senderSessionId);
+                    continue;
+                }
+                if (span.duplicateCid) {
+                    // Only one could be replaced, and readers disagree on which of two keys wins
+                    log.warn("Message from {} has more than one 'cid' in its data. Skipping it.", senderSessionId);
+                    continue;
+                }
+
+                if (fromHost && span.cidIsString && GameMessageIds.isPrivateHostMessage(span.msgId)) {
+                    frames.add(new RelayFrame(span.cidText, span.msgId, slice(payload, span.start, span.end)));
+                    continue;
+                }
+
+                if (quotedSenderId == null) {
+                    quotedSenderId = quote(senderSessionId);
+                }
+                frames.add(new RelayFrame(null, span.msgId, spliceCid(payload, span, quotedSenderId)));
+            }
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after the message array");
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Appends fields to data of a single relayed message, e.g. one frame returned by {@link #relay}.
+     *
+     * @param message A serialized {@code {"data":{...}}} object.
+     * @param fields  Serialized fields without surrounding braces, e.g. {@code "a":1,"b":2}.
+     * @return The message with the fields added as the last fields of data.
+     * @throws IOException if the message is not a JSON object with a data object.
+     */
+    public byte[] appendDataFields(byte[] message, String fields) throws IOException {
+        MessageSpan span;
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            span = scanMessage(parser);
+        }
+        if (!span.hasData) {
+            throw new IOException("Message has no data object");
+        }
+        byte[] fieldBytes = fields.getBytes(StandardCharsets.UTF_8);
+        int separatorLen = span.dataEmpty ? 0 : 1;
+        byte[] out = new byte[message.length + separatorLen + fieldBytes.length];
+        System.arraycopy(message, 0, out, 0, span.dataClose);
+        int pos = span.dataClose;
+        if (separatorLen == 1) {
+            out[pos++] = ',';
+        }
+        System.arraycopy(fieldBytes, 0, out, pos, fieldBytes.length);
+        pos += fieldBytes.length;
+        System.arraycopy(message, span.dataClose, out, pos, message.length - span.dataClose);
+        return out;
+    }
+
+    // Parser is positioned on the message's START_OBJECT; leaves it on the matching END_OBJECT.
+    private MessageSpan scanMessage(JsonParser parser) throws IOException {
+        MessageSpan span = new MessageSpan();
+        span.start = (int) parser.currentTokenLocation().getByteOffset();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (DATA_FIELD.equals(field) && value == JsonToken.START_OBJECT) {
+                scanData(parser, span);
+            } else {
+                if (DATA_FIELD.equals(field)) {
+                    span.resetData();
+                }
+                parser.skipChildren();
+            }
+        }
+        span.end = (int) parser.currentLocation().getByteOffset();
+        return span;
+    }
+
+    // Parser is positioned on data's START_OBJECT; leaves it on the matching END_OBJECT.
+    private void scanData(JsonParser parser, MessageSpan span) throws IOException {
+        span.resetData();
+        span.hasData = true;
+        int fieldCount = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            fieldCount++;
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (CID_FIELD.equals(field)) {
+                span.duplicateCid |= span.cidStart >= 0;
+                span.cidStart = (int) parser.currentTokenLocation().getByteOffset();
+                span.cidIsString = value == JsonToken.VALUE_STRING;
+                span.cidText = span.cidIsString ? parser.getText() : null;
+                parser.skipChildren();
+                span.cidEnd = (int) parser.currentLocation().getByteOffset();
+            } else if (ID_FIELD.equals(field) && value.isNumeric()) {
+                span.msgId = parser.getNumberType() == JsonParser.NumberType.INT
+                        ? parser.getIntValue()
+                        : parser.getNumberValue().intValue();
+            } else {
+                if (ID_FIELD.equals(field)) {
+                    span.msgId = -1;
+                }
+                parser.skipChildren();
+            }
+        }
+        span.dataEmpty = fieldCount == 0;
+        span.dataClose = (int) parser.currentTokenLocation().getByteOffset();
+    }
+
+    private static byte[] spliceCid(byte[] payload, MessageSpan span, byte[] quotedSenderId) {
+        if (span.cidStart >= 0) {
+            int headLen = span.cidStart - span.start;
+            int tailLen = span.end - span.cidEnd;
+            byte[] out = new byte[headLen + quotedSenderId.length + tailLen];
+            System.arraycopy(payload, span.start, out, 0, headLen);
+            System.arraycopy(quotedSenderId, 0, out, headLen, quotedSenderId.length);
+            System.arraycopy(payload, span.cidEnd, out, headLen + quotedSenderId.length, tailLen);
+            return out;
+        }
+        // No cid yet: append it as the last field of data, like Map.put would.
+        int headLen = span.dataClose - span.start;
+        int tailLen = span.end - span.dataClose;
+        int separatorLen = span.dataEmpty ? 0 : 1;
+        byte[] out = new byte[headLen + separatorLen + CID_PREFIX.length + quotedSenderId.length + tailLen];
+        int pos = 0;
+        System.arraycopy(payload, span.start, out, pos, headLen);
+        pos += headLen;
+        if (separatorLen == 1) {
+            out[pos++] = ',';
+        }
+        System.arraycopy(CID_PREFIX, 0, out, pos, CID_PREFIX.length);
+        pos += CID_PREFIX.length;
+        System.arraycopy(quotedSenderId, 0, out, pos, quotedSenderId.length);
+        pos += quotedSenderId.length;
+        System.arraycopy(payload, span.dataClose, out, pos, tailLen);
+        return out;
+    }
+
+    private static byte[] slice(byte[] payload, int start, int end) {
+        byte[] out = new byte[end - start];
+        System.arraycopy(payload, start, out, 0, out.length);
+        return out;
+    }
+
+    private static byte[] quote(String value) {
+        byte[] escaped = JsonStringEncoder.getInstance().quoteAsUTF8(value);
+        byte[] out = new byte[escaped.length + 2];
+        out[0] = '"';
+        System.arraycopy(escaped, 0, out, 1, escaped.length);
+        out[out.length - 1] = '"';
+        return out;
+    }
+
+    private static final class MessageSpan {
+        int start;
+        int end;
+        boolean hasData;
+        boolean dataEmpty;
+        int dataClose;
+        int msgId;
+        int cidStart;
+        int cidEnd;
+        boolean cidIsString;
+        String cidText;
+        boolean duplicateCid;
+
+        MessageSpan() {
+            resetData();
+        }
+
+        // A later "data" key replaces an earlier one, matching how Map binding resolves duplicates.
+        void resetData() {
+            hasData = false;
+            dataEmpty = true;
+            dataClose = -1;
+            msgId = -1;
+            cidStart = -1;
+            cidEnd = -1;
+            cidIsString = false;
+            cidText = null;
+            duplicateCid = false;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for STOMP destinations that carry a game PIN, e.g. /app/controller/{pin} or /topic/player/{pin}.
+ */
+public final class GameDestinations {
+
+    private static final Pattern GAME_PIN_PATTERN = Pattern.compile("/(?:player|host|controller|roster|digest|resume)/(\\d{6})(?:/|$)");
+
+    private GameDestinations() {
+    }
+
+    /**
+     * @return The game PIN in the destination, or null if it does not address a game.
+     */
+    public static String gamePinOf(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        Matcher matcher = GAME_PIN_PATTERN.matcher(destination);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
@@ -0,0 +1,127 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Broadcast API on top of {@link SimpMessagingTemplate} for payloads that are already JSON.
+ * <p>
+ * {@code convertAndSend(destination, String)} pushes the payload through the message converter chain and
+ * re-encodes the String on every call. Here a payload is encoded to bytes once, and every send hands a
+ * ready-made {@code Message<byte[]>} with complete headers straight to the broker channel. The same byte
+ * array can be sent to several destinations (e.g. player and host topics) without copying, and the broker
+ * shares it across all subscribers of a topic.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GameMessageBroadcaster {
+
+    // Same content type the StringMessageConverter used, so clients keep receiving text frames
+    public static final MimeType TEXT_UTF8 = new MimeType("text", "plain", StandardCharsets.UTF_8);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Serializes a payload once so it can be sent to any number of destinations.
+     */
+    public byte[] encode(Object payload) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    /**
+     * Sends already-encoded JSON to a broker destination (a topic or a resolved /queue/private-user queue).
+     */
+    public void send(String destination, byte[] payload) {
+        send(destination, payload, Map.of());
+    }
+
+    /**
+     * Sends already-encoded JSON in the given outbound priority class.
+     */
+    public void send(String destination, byte[] payload, OutboundPriority priority) {
+        send(destination, payload, Map.of(), priority);
+    }
+
+    /**
+     * Sends already-encoded JSON with extra STOMP headers, e.g. a sequence number the client can resume from.
+     */
+    public void send(String destination, byte[] payload, Map<String, String> nativeHeaders) {
+        send(destination, payload, nativeHeaders, OutboundPriority.NORMAL);
+    }
+
+    /**
+     * Sends already-encoded JSON with extra STOMP headers in the given outbound priority class.
+     */
+    public void send(String destination, byte[] payload, Map<String, String> nativeHeaders, OutboundPriority priority) {
+        send(destination, payload, nativeHeaders, priority, null);
+    }
+
+    /**
+     * Sends already-encoded JSON that a newer frame with the same conflation key makes obsolete.
+     * A subscriber that is behind only gets the newest of them, see {@link SlowConsumerPolicy}.
+     */
+    public void sendSupersedable(String destination, byte[] payload, String conflationKey) {
+        send(destination, payload, Map.of(), OutboundPriority.BULK, conflationKey);
+    }
+
+    /**
+     * Sends already-encoded JSON with extra STOMP headers, an outbound priority class and an optional
+     * conflation key (null if every frame must be delivered).
+     */
+    public void send(String destination, byte[] payload, Map<String, String> nativeHeaders, OutboundPriority priority,
+                     String conflationKey) {
+        MessageHeaders headers = brokerHeaders(destination, nativeHeaders, priority, conflationKey);
+        messagingTemplate.getMessageChannel().send(MessageBuilder.createMessage(payload, headers));
+    }
+
+    /**
+     * Sends the same encoded payload to several destinations; the byte array is shared, not copied.
+     */
+    public void send(byte[] payload, String... destinations) {
+        for (String destination : destinations) {
+            send(destination, payload);
+        }
+    }
+
+    /**
+     * Encodes a payload and sends it to the given destinations.
+     * @return false if the payload could not be serialized.
+     */
+    public boolean sendJson(Object payload, String... destinations) {
+        try {
+            send(encode(payload), destinations);
+            return true;
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize payload for {}: {}", String.join(", ", destinations), e.getMessage());
+            return false;
+        }
+    }
+
+    private static MessageHeaders brokerHeaders(String destination, Map<String, String> nativeHeaders,
+                                                OutboundPriority priority, String conflationKey) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(TEXT_UTF8);
+        accessor.setHeader(OutboundPriority.HEADER, priority); // Not a native header, so it is not written to the client
+        if (conflationKey != null) {
+            accessor.setHeader(SlowConsumerPolicy.CONFLATION_KEY_HEADER, conflationKey);
+        }
+        nativeHeaders.forEach(accessor::setNativeHeader);
+        return accessor.getMessageHeaders();
+    }
+}
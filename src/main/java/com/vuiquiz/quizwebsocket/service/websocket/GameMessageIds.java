@@ -0,0 +1,31 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+/**
+ * Values of {@code data.id} in frames relayed through /app/controller/{gamepin}.
+ * The server treats the frames as opaque apart from these IDs.
+ */
+public final class GameMessageIds {
+
+    // Host -> players (/topic/player/{pin})
+    public static final int GET_READY = 1;
+    public static final int START_QUESTION = 2;
+    public static final int GAME_OVER = 3;
+    public static final int TIME_UP = 4;
+    public static final int PLAY_AGAIN = 5;
+    public static final int START_QUIZ = 9;
+    public static final int RESET_CONTROLLER = 10;
+
+    // Host -> one player (/queue/private-user{cid})
+    public static final int REVEAL_ANSWER = 8;
+    public static final int REVEAL_RANKING = 13;
+
+    // Player -> host (/topic/host/{pin})
+    public static final int ANSWER = 45;
+
+    private GameMessageIds() {
+    }
+
+    public static boolean isPrivateHostMessage(int messageId) {
+        return messageId == REVEAL_ANSWER || messageId == REVEAL_RANKING;
+    }
+}
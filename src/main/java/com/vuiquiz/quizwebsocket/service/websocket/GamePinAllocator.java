@@ -0,0 +1,128 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.SplittableRandom;
+
+/**
+ * Hands out 6-digit game PINs without retrying on collisions.
+ * <p>
+ * All 900,000 PINs live in one shuffled pool: the free ones occupy the front of the array, in random order, and
+ * {@code positions} remembers where each PIN currently sits. Allocating pops the last free PIN, releasing puts
+ * the PIN back at a random free position, and reserving a specific PIN (one created on another node) swaps it
+ * out of the free region, all in constant time whatever the occupancy. A released PIN is as unlikely to come
+ * back next as any other free PIN, so clients holding a stale PIN rarely land in a new game.
+ * <p>
+ * The two index arrays take about 7 MB. Allocation is rare (one REST call per game), so a monitor is enough.
+ */
+@Component
+@Slf4j
+public class GamePinAllocator {
+
+    public static final int MIN_PIN = 100_000;
+    public static final int PIN_SPACE = 900_000;
+
+    // pool[0, freeCount) holds the free PINs (as offsets from MIN_PIN), pool[freeCount, PIN_SPACE) the allocated ones
+    private final int[] pool = new int[PIN_SPACE];
+    // <PIN offset, index in pool>
+    private final int[] positions = new int[PIN_SPACE];
+    private final SplittableRandom random = new SplittableRandom(); // Guarded by this; PINs are not secrets
+    private int freeCount = PIN_SPACE;
+
+    public GamePinAllocator(MeterRegistry meterRegistry) {
+        for (int i = 0; i < PIN_SPACE; i++) {
+            pool[i] = i;
+        }
+        for (int i = PIN_SPACE - 1; i > 0; i--) {
+            swap(i, random.nextInt(i + 1));
+        }
+        for (int i = 0; i < PIN_SPACE; i++) {
+            positions[pool[i]] = i;
+        }
+
+        Gauge.builder("websocket.pins.allocated", this, GamePinAllocator::allocatedCount)
+                .description("Game PINs currently in use")
+                .register(meterRegistry);
+        Gauge.builder("websocket.pins.occupancy", this, allocator -> (double) allocator.allocatedCount() / PIN_SPACE)
+                .description("Fraction of the 6-digit PIN space in use")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return A free PIN, now allocated.
+     * @throws IllegalStateException if every PIN is in use.
+     */
+    public synchronized String allocate() {
+        if (freeCount == 0) {
+            throw new IllegalStateException("All " + PIN_SPACE + " game PINs are in use");
+        }
+        freeCount--;
+        return format(pool[freeCount]);
+    }
+
+    /**
+     * Marks a PIN allocated elsewhere (e.g. by another node) as in use.
+     * @return false if the PIN is not a 6-digit PIN or was already in use here.
+     */
+    public synchronized boolean reserve(String gamePin) {
+        int offset = offsetOf(gamePin);
+        if (offset < 0 || positions[offset] >= freeCount) {
+            return false;
+        }
+        freeCount--;
+        swap(positions[offset], freeCount);
+        return true;
+    }
+
+    /**
+     * Returns a PIN to the pool. Unknown or already free PINs are ignored.
+     */
+    public synchronized void release(String gamePin) {
+        int offset = offsetOf(gamePin);
+        if (offset < 0 || positions[offset] < freeCount) {
+            log.debug("Ignoring release of PIN {}, it is not allocated.", gamePin);
+            return;
+        }
+        swap(positions[offset], freeCount);
+        freeCount++;
+        // Move it to a random free slot, so it is not the next one handed out
+        swap(freeCount - 1, random.nextInt(freeCount));
+    }
+
+    public synchronized boolean isAllocated(String gamePin) {
+        int offset = offsetOf(gamePin);
+        return offset >= 0 && positions[offset] >= freeCount;
+    }
+
+    public synchronized int allocatedCount() {
+        return PIN_SPACE - freeCount;
+    }
+
+    private void swap(int i, int j) {
+        int a = pool[i];
+        int b = pool[j];
+        pool[i] = b;
+        pool[j] = a;
+        positions[b] = i;
+        positions[a] = j;
+    }
+
+    private static String format(int offset) {
+        return Integer.toString(MIN_PIN + offset);
+    }
+
+    private static int offsetOf(String gamePin) {
+        if (gamePin == null || gamePin.length() != 6) {
+            return -1;
+        }
+        try {
+            int offset = Integer.parseInt(gamePin) - MIN_PIN;
+            return offset >= 0 && offset < PIN_SPACE ? offset : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,15 +1,28 @@
 package com.vuiquiz.quizwebsocket.service.websocket; // Use your actual package name
 
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet; // Thread-safe Set
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 @Service
 @Slf4j
@@ -17,19 +30,133 @@ public class GameSessionManager {
 
     // <GamePin, SessionInfo>
     private final Map<String, SessionInfo> activeSessions = new ConcurrentHashMap<>();
+    // <WebSocket session ID, role + GamePin> so disconnects don't have to scan every game
+    private final Map<String, ParticipantRef> participantIndex = new ConcurrentHashMap<>();
+    // Sessions indexed for a player that resumed on them; the player itself is indexed under its original ID
+    private final Set<String> resumedBindings = ConcurrentHashMap.newKeySet();
+    // Notified of changes made by this node only; changes applied from other nodes are not echoed
+    private final List<SessionChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final GamePinAllocator pinAllocator;
+    private final WebSocketProperties properties;
+    private final Map<EvictionReason, Counter> evictionCounters = new EnumMap<>(EvictionReason.class);
+    private final DistributionSummary retainedBytesPerSession;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "game-session-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GameSessionManager(GamePinAllocator pinAllocator, WebSocketProperties properties, MeterRegistry meterRegistry) {
+        this.pinAllocator = pinAllocator;
+        this.properties = properties;
+        for (EvictionReason reason : EvictionReason.values()) {
+            evictionCounters.put(reason, Counter.builder("websocket.sessions.evicted")
+                    .description("Game sessions removed by the reaper")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("websocket.sessions.active", activeSessions, Map::size)
+                .description("Game sessions held in memory, including placeholders")
+                .register(meterRegistry);
+        Gauge.builder("websocket.games.hosted", this, GameSessionManager::countHostedSessions)
+                .description("Game sessions with a host assigned")
+                .register(meterRegistry);
+        Gauge.builder("websocket.participants.active", this, GameSessionManager::countLocalParticipants)
+                .description("Hosts and players currently in a game on this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.sessions.retained.bytes", this, GameSessionManager::estimateRetainedBytes)
+                .description("Estimated heap retained by all game sessions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.retainedBytesPerSession = DistributionSummary.builder("websocket.session.retained.bytes")
+                .description("Estimated heap retained per game session, sampled on every reaper pass")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        long intervalMs = properties.getReaper().getIntervalMs();
+        scheduler.scheduleWithFixedDelay(this::reapSessions, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public enum ParticipantRole {
+        HOST,
+        PLAYER
+    }
+
+    public enum EvictionReason {
+        PLACEHOLDER_EXPIRED, // Created through the REST API, but no host ever joined
+        HOSTLESS, // The host left and did not come back, only players remain
+        IDLE, // Nobody sent anything to the game for too long; only decided by a node that sees all its participants
+        PIN_CONFLICT // Another node created a game under the same PIN and keeps it, see ClusterSessionReplicator
+    }
+
+    /**
+     * Where a WebSocket session currently participates.
+     * @param gamePin The game pin the session joined.
+     * @param role Whether the session is the host or a player of that game.
+     */
+    public record ParticipantRef(String gamePin, ParticipantRole role) {
+    }
+
+    /**
+     * Observer of session changes caused by participants connected to this node,
+     * e.g. to replicate them to other nodes behind the same external broker.
+     */
+    public interface SessionChangeListener {
+        default void sessionCreated(String gamePin) {
+        }
+
+        default void hostAssigned(String gamePin, String hostSessionId) {
+        }
+
+        default void playerAdded(String gamePin, String playerSessionId) {
+        }
+
+        default void participantRemoved(String gamePin, String sessionId) {
+        }
+
+        /**
+         * The reaper removed a game, or it lost its PIN to a game of another node; its participants may still
+         * be connected.
+         */
+        default void sessionEvicted(String gamePin, EvictionReason reason) {
+        }
+    }
+
+    // Approximate object sizes on a 64-bit JVM with compressed oops, rounded up; see SessionInfo#estimateRetainedBytes
+    private static final long SESSION_BASE_BYTES = 480;
+    private static final long PER_PLAYER_BYTES = 200;
 
     @Getter
     public static class SessionInfo {
         private final String gamePin;
-        @Setter
+        private final long createdAtMillis = System.currentTimeMillis();
+        private volatile long lastActivityMillis = createdAtMillis;
+        // Since when the game has no host, 0 while it has one or never had one
+        private volatile long hostlessSinceMillis = 0;
         private volatile String hostSessionId = null; // WebSocket session ID of the host
         // Store only session IDs
-        private final Set<String> playerSessionIds = new CopyOnWriteArraySet<>();
+        @Getter(AccessLevel.NONE)
+        private final PlayerRoster players = new PlayerRoster();
 
         public SessionInfo(String gamePin) {
             this.gamePin = gamePin;
         }
 
+        public void setHostSessionId(String hostSessionId) {
+            this.hostSessionId = hostSessionId;
+            this.hostlessSinceMillis = hostSessionId == null ? System.currentTimeMillis() : 0;
+            touch();
+        }
+
+        // Marks the game as in use, which postpones its idle eviction
+        public void touch() {
+            lastActivityMillis = System.currentTimeMillis();
+        }
+
         public boolean isHostSet() {
             return hostSessionId != null;
         }
@@ -39,66 +166,89 @@ public class GameSessionManager {
         }
 
         public boolean isPlayer(String sessionId) {
-            return playerSessionIds.contains(sessionId);
+            return players.contains(sessionId);
         }
 
         // Add player ID if they are not the host
         public void addPlayer(String sessionId) {
             if (!isHost(sessionId)) {
-                if(playerSessionIds.add(sessionId)) {
+                if(players.add(sessionId)) {
                     log.info("Session {}: Added player {}", gamePin, sessionId);
+                    touch();
                 }
             }
         }
 
         // Removes participant ID (player or host), returns true if found and removed/cleared
         public boolean removeParticipant(String sessionId) {
-            boolean removedPlayer = playerSessionIds.remove(sessionId);
+            boolean removedPlayer = players.remove(sessionId);
             if (removedPlayer) {
                 log.info("Session {}: Removed player {}", gamePin, sessionId);
+                touch();
                 return true;
             }
             // Check if it was the host being removed
             if (isHost(sessionId)) {
                 log.warn("Session {}: Host {} disconnected.", gamePin, sessionId);
-                this.hostSessionId = null; // Clear host reference
+                setHostSessionId(null); // Clear host reference
                 return true; // Indicate a participant role was cleared
             }
             return false;
         }
 
         public int getPlayerCount() {
-            return playerSessionIds.size();
+            return players.size();
+        }
+
+        /**
+         * Rough heap retained by this game in the session manager: the SessionInfo with its roster, plus per
+         * player the roster entry, its copy in the cached snapshot and the participant index entry, each holding
+         * the session ID string. State kept by other services (replay rings, tallies) is not included.
+         */
+        public long estimateRetainedBytes() {
+            return SESSION_BASE_BYTES + (long) players.size() * PER_PLAYER_BYTES;
         }
 
-        // Get Session IDs of all players
+        // Get Session IDs of all players (immutable, shared until the roster changes)
         public Set<String> getAllPlayerSessionIds() {
-            return new CopyOnWriteArraySet<>(playerSessionIds); // Return a copy
+            return players.snapshot().sessionIds();
+        }
+
+        // Versioned immutable view of the players, for readers that need a consistent roster
+        public PlayerRoster.Snapshot getRosterSnapshot() {
+            return players.snapshot();
         }
 
         // Get all participant IDs (players + host if set) EXCEPT the sender
         public Set<String> getOtherParticipantIds(String senderSessionId) {
-            Set<String> recipients = new CopyOnWriteArraySet<>(playerSessionIds);
-            if (hostSessionId != null && !hostSessionId.equals(senderSessionId)) {
-                recipients.add(hostSessionId);
+            Set<String> playerIds = players.snapshot().sessionIds();
+            String host = hostSessionId;
+            boolean includeHost = host != null && !host.equals(senderSessionId);
+            if (!includeHost && !playerIds.contains(senderSessionId)) {
+                return playerIds; // Nothing to add or remove, share the snapshot
+            }
+            Set<String> recipients = new HashSet<>(playerIds);
+            if (includeHost) {
+                recipients.add(host);
             }
             // Ensure sender isn't in the recipient list (might be host)
             recipients.remove(senderSessionId);
-            return recipients;
+            return Collections.unmodifiableSet(recipients);
         }
     }
 
     // --- Service Methods ---
 
+    /**
+     * Creates a placeholder session under a free PIN. It is reclaimed if no host joins it in time.
+     * @throws IllegalStateException if every PIN is in use.
+     */
     public String createSession() {
-        String gamePin;
-        do {
-            gamePin = String.format("%06d", ThreadLocalRandom.current().nextInt(100000, 1000000));
-        } while (activeSessions.containsKey(gamePin));
-
+        String gamePin = pinAllocator.allocate();
         SessionInfo sessionInfo = new SessionInfo(gamePin);
         activeSessions.put(gamePin, sessionInfo);
         log.info("Created placeholder for game session with PIN: {}", gamePin);
+        changeListeners.forEach(listener -> listener.sessionCreated(sessionInfo.getGamePin()));
         return gamePin;
     }
 
@@ -116,10 +266,11 @@ public class GameSessionManager {
         SessionInfo session = activeSessions.get(gamePin);
         if (session != null && !session.isHostSet()) {
             synchronized (session) {
-                if (!session.isHostSet()) {
+                if (isLive(session) && !session.isHostSet() && indexParticipant(potentialHostSessionId, new ParticipantRef(gamePin, ParticipantRole.HOST))) {
                     session.setHostSessionId(potentialHostSessionId);
-                    // Note: We don't add host to playerSessionIds
+                    // Note: We don't add host to the player roster
                     log.info("Session {}: Host assigned to {}", gamePin, potentialHostSessionId);
+                    changeListeners.forEach(listener -> listener.hostAssigned(gamePin, potentialHostSessionId));
                     return true; // Successfully assigned as host
                 }
             }
@@ -141,8 +292,14 @@ public class GameSessionManager {
     public void addParticipant(String gamePin, String participantSessionId) {
         SessionInfo session = activeSessions.get(gamePin);
         if (session != null) {
-            // AddParticipant will check if it's the host and only add to player list if not
-            session.addPlayer(participantSessionId);
+            synchronized (session) {
+                // AddParticipant will check if it's the host and only add to player list if not
+                if (isLive(session) && !session.isHost(participantSessionId)
+                        && indexParticipant(participantSessionId, new ParticipantRef(gamePin, ParticipantRole.PLAYER))) {
+                    session.addPlayer(participantSessionId);
+                    changeListeners.forEach(listener -> listener.playerAdded(gamePin, participantSessionId));
+                }
+            }
         } else {
             log.warn("Attempt to add participant {} to non-existent session {}", participantSessionId, gamePin);
         }
@@ -155,46 +312,309 @@ public class GameSessionManager {
      * @return The gamePin of the session the participant was removed from, or null.
      */
     public String removeParticipant(String sessionId) {
-        String sessionPinRemovedFrom = null;
-        GameSessionManager.SessionInfo sessionConcerned = null;
-        boolean hostDisconnected = false;
+        ParticipantRef ref = participantIndex.remove(sessionId);
+        if (ref == null) {
+            log.debug("Participant {} not found in any active session upon disconnect.", sessionId);
+            return null;
+        }
 
-        for (Map.Entry<String, SessionInfo> entry : activeSessions.entrySet()) {
-            SessionInfo session = entry.getValue();
-            if (session.isHost(sessionId) || session.isPlayer(sessionId)) {
-                sessionPinRemovedFrom = entry.getKey();
-                sessionConcerned = session;
-                hostDisconnected = session.isHost(sessionId); // Check if it *was* the host before removing
-                session.removeParticipant(sessionId); // Removes from set OR clears hostSessionId
-                break;
-            }
+        String sessionPinRemovedFrom = ref.gamePin();
+        SessionInfo sessionConcerned = activeSessions.get(sessionPinRemovedFrom);
+        if (sessionConcerned == null) {
+            log.debug("Participant {} was indexed for session {}, but that session no longer exists.", sessionId, sessionPinRemovedFrom);
+            return null;
         }
 
-        if (sessionConcerned != null) {
+        synchronized (sessionConcerned) {
+            boolean hostDisconnected = sessionConcerned.isHost(sessionId); // Check if it *was* the host before removing
+            sessionConcerned.removeParticipant(sessionId); // Removes from set OR clears hostSessionId
             log.info("Participant {} removed from session {}", sessionId, sessionPinRemovedFrom);
-            // Check if the session should be removed entirely
-            // Remove if host is now null AND no players remain
-            if (sessionConcerned.getHostSessionId() == null && sessionConcerned.getPlayerCount() == 0) {
-                log.info("Session {} is now empty and hostless, removing.", sessionPinRemovedFrom);
-                activeSessions.remove(sessionPinRemovedFrom);
-                // Return the pin even if session was removed, listener might need it
-            } else if (hostDisconnected) {
+
+            // Return the pin even if session was removed, listener might need it
+            if (!removeIfAbandoned(sessionConcerned) && hostDisconnected) {
                 log.warn("Session {} is now hostless.", sessionPinRemovedFrom);
                 // Session persists but has no host
             }
-        } else {
-            log.debug("Participant {} not found in any active session upon disconnect.", sessionId);
         }
+        changeListeners.forEach(listener -> listener.participantRemoved(sessionPinRemovedFrom, sessionId));
         return sessionPinRemovedFrom;
     }
 
-    public String findGamePinBySessionId(String sessionId) {
-        for (Map.Entry<String, SessionInfo> entry : activeSessions.entrySet()) {
-            SessionInfo session = entry.getValue();
-            if (session.isHost(sessionId) || session.isPlayer(sessionId)) {
-                return entry.getKey();
+    // Remove the session entirely if host is null AND no players remain. Caller holds the session lock.
+    private boolean removeIfAbandoned(SessionInfo session) {
+        if (session.getHostSessionId() == null && session.getPlayerCount() == 0) {
+            log.info("Session {} is now empty and hostless, removing.", session.getGamePin());
+            if (activeSessions.remove(session.getGamePin(), session)) {
+                pinAllocator.release(session.getGamePin());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // A session reference fetched before taking its lock may have been removed in the meantime
+    private boolean isLive(SessionInfo session) {
+        return activeSessions.get(session.getGamePin()) == session;
+    }
+
+    /**
+     * @return Game sessions with a host assigned, i.e. games that are being played rather than placeholders.
+     */
+    public long countHostedSessions() {
+        return activeSessions.values().stream().filter(SessionInfo::isHostSet).count();
+    }
+
+    /**
+     * @return Hosts and players in a game on this node; a resumed player counts once, not once per session.
+     */
+    public int countLocalParticipants() {
+        // A binding is added to the set just before the index, so this may briefly count one less
+        return Math.max(0, participantIndex.size() - resumedBindings.size());
+    }
+
+    // --- Reaper ---
+
+    /**
+     * @return The estimated heap retained by all game sessions, see {@link SessionInfo#estimateRetainedBytes()}.
+     */
+    public long estimateRetainedBytes() {
+        long total = 0;
+        for (SessionInfo session : activeSessions.values()) {
+            total += session.estimateRetainedBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Evicts placeholders no host joined, games whose host is gone for too long and idle games,
+     * and samples the memory retained by the games that stay.
+     */
+    void reapSessions() {
+        try {
+            long now = System.currentTimeMillis();
+            int evicted = 0;
+            for (SessionInfo session : activeSessions.values()) {
+                if (evictionReasonOf(session, now) != null && evict(session, now)) {
+                    evicted++;
+                } else {
+                    retainedBytesPerSession.record(session.estimateRetainedBytes());
+                }
             }
+            if (evicted > 0) {
+                log.info("Reaper evicted {} game sessions; {} remain, about {} KB retained, {} PINs in use.",
+                        evicted, activeSessions.size(), estimateRetainedBytes() / 1024, pinAllocator.allocatedCount());
+            }
+        } catch (Exception e) {
+            log.error("Game session reaper failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private EvictionReason evictionReasonOf(SessionInfo session, long now) {
+        WebSocketProperties.Reaper reaper = properties.getReaper();
+        long hostlessSince = session.getHostlessSinceMillis();
+        if (!session.isHostSet() && hostlessSince == 0 && session.getPlayerCount() == 0
+                && now - session.getCreatedAtMillis() > properties.getPin().getPlaceholderTtlMs()) {
+            return EvictionReason.PLACEHOLDER_EXPIRED;
+        }
+        if (hostlessSince != 0 && now - hostlessSince > reaper.getHostlessTimeoutMs()) {
+            return EvictionReason.HOSTLESS;
+        }
+        // Activity is only seen by the node a participant is connected to; the nodes of the others decide
+        if (now - session.getLastActivityMillis() > reaper.getIdleTimeoutMs() && !hasRemoteParticipants(session)) {
+            return EvictionReason.IDLE;
         }
         return null;
     }
+
+    private boolean hasRemoteParticipants(SessionInfo session) {
+        String host = session.getHostSessionId();
+        if (host != null && !isIndexedIn(host, session.getGamePin())) {
+            return true;
+        }
+        for (String playerId : session.getAllPlayerSessionIds()) {
+            if (!isIndexedIn(playerId, session.getGamePin())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isIndexedIn(String sessionId, String gamePin) {
+        ParticipantRef ref = participantIndex.get(sessionId);
+        return ref != null && ref.gamePin().equals(gamePin);
+    }
+
+    // Removes the game with its index entries and PIN; its sockets stay open and simply stop being participants
+    private boolean evict(SessionInfo session, long now) {
+        String gamePin = session.getGamePin();
+        EvictionReason reason;
+        long retainedBytes;
+        synchronized (session) {
+            reason = evictionReasonOf(session, now);
+            if (reason == null || !activeSessions.remove(gamePin, session)) {
+                return false;
+            }
+            retainedBytes = session.estimateRetainedBytes();
+            unindexParticipants(session);
+            pinAllocator.release(gamePin);
+        }
+        evictionCounters.get(reason).increment();
+        log.info("Session {} evicted ({}), releasing about {} bytes.", gamePin, reason, retainedBytes);
+        changeListeners.forEach(listener -> listener.sessionEvicted(gamePin, reason));
+        return true;
+    }
+
+    private void unindexParticipants(SessionInfo session) {
+        String host = session.getHostSessionId();
+        if (host != null) {
+            unindex(host, session.getGamePin());
+        }
+        session.getAllPlayerSessionIds().forEach(playerId -> unindex(playerId, session.getGamePin()));
+    }
+
+    private void unindex(String sessionId, String gamePin) {
+        participantIndex.computeIfPresent(sessionId, (id, ref) -> ref.gamePin().equals(gamePin) ? null : ref);
+    }
+
+    // --- Changes made on other nodes (relay broker mode) ---
+
+    public void addChangeListener(SessionChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Visits every participant connected to this node, e.g. to announce them to a node that just started.
+     * A resumed player is visited once, under its original player ID.
+     */
+    public void forEachLocalParticipant(BiConsumer<String, ParticipantRef> action) {
+        participantIndex.forEach((sessionId, ref) -> {
+            if (!resumedBindings.contains(sessionId)) {
+                action.accept(sessionId, ref);
+            }
+        });
+    }
+
+    /**
+     * Drops this node's game under a PIN that a game of another node also holds, and puts an empty replica of
+     * that game in its place. The PIN stays allocated, now for the other game. Like an eviction, the sockets of
+     * the dropped game stay open and simply stop being participants.
+     * @return false if this node has no game under the PIN.
+     */
+    public boolean yieldPin(String gamePin) {
+        SessionInfo session = activeSessions.get(gamePin);
+        if (session == null) {
+            return false;
+        }
+        synchronized (session) {
+            if (!activeSessions.replace(gamePin, session, new SessionInfo(gamePin))) {
+                return false;
+            }
+            unindexParticipants(session);
+        }
+        evictionCounters.get(EvictionReason.PIN_CONFLICT).increment();
+        log.warn("Session {} dropped: another node holds a game under the same PIN.", gamePin);
+        changeListeners.forEach(listener -> listener.sessionEvicted(gamePin, EvictionReason.PIN_CONFLICT));
+        return true;
+    }
+
+    public void applyRemoteSessionCreated(String gamePin) {
+        activeSessions.computeIfAbsent(gamePin, this::newRemoteSession);
+    }
+
+    // PINs are allocated per node, so also take the ones other nodes hand out
+    private SessionInfo newRemoteSession(String gamePin) {
+        if (!pinAllocator.reserve(gamePin)) {
+            log.warn("PIN {} of a session created on another node is already allocated on this node.", gamePin);
+        }
+        log.debug("Session {} created on another node.", gamePin);
+        return new SessionInfo(gamePin);
+    }
+
+    /**
+     * Records the host of a game that is connected to another node. The first host wins, as for local hosts.
+     */
+    public void applyRemoteHost(String gamePin, String hostSessionId) {
+        SessionInfo session = activeSessions.computeIfAbsent(gamePin, this::newRemoteSession);
+        synchronized (session) {
+            if (!session.isHostSet()) {
+                session.setHostSessionId(hostSessionId);
+                log.info("Session {}: Host assigned to {} on another node", gamePin, hostSessionId);
+            } else if (!session.isHost(hostSessionId)) {
+                log.warn("Session {}: Ignoring host {} from another node, host is already {}", gamePin, hostSessionId, session.getHostSessionId());
+            }
+        }
+    }
+
+    public void applyRemotePlayer(String gamePin, String playerSessionId) {
+        SessionInfo session = activeSessions.computeIfAbsent(gamePin, this::newRemoteSession);
+        synchronized (session) {
+            session.addPlayer(playerSessionId);
+        }
+    }
+
+    /**
+     * Removes a participant connected to another node.
+     * @return true if the participant was part of the game.
+     */
+    public boolean applyRemoteLeave(String gamePin, String sessionId) {
+        SessionInfo session = activeSessions.get(gamePin);
+        if (session == null) {
+            return false;
+        }
+        synchronized (session) {
+            boolean removed = session.removeParticipant(sessionId);
+            removeIfAbandoned(session);
+            return removed;
+        }
+    }
+
+    public String findGamePinBySessionId(String sessionId) {
+        ParticipantRef ref = participantIndex.get(sessionId);
+        return ref != null ? ref.gamePin() : null;
+    }
+
+    /**
+     * Looks up the game and role of a WebSocket session in constant time.
+     * @param sessionId The WebSocket session ID.
+     * @return The participant reference, or null if the session is not in any game.
+     */
+    public ParticipantRef findParticipant(String sessionId) {
+        return participantIndex.get(sessionId);
+    }
+
+    /**
+     * Lets a new WebSocket session act for a player that resumed its place in a game.
+     * The roster keeps the original player ID; only the index learns about the new session.
+     * @return false if the player is no longer part of a game.
+     */
+    public boolean bindResumedSession(String newSessionId, String playerId) {
+        ParticipantRef ref = participantIndex.get(playerId);
+        if (ref == null || ref.role() != ParticipantRole.PLAYER) {
+            return false;
+        }
+        resumedBindings.add(newSessionId); // Before the index, so the binding is never visited as a participant
+        participantIndex.put(newSessionId, ref);
+        return true;
+    }
+
+    public void unbindResumedSession(String sessionId) {
+        participantIndex.remove(sessionId);
+        resumedBindings.remove(sessionId);
+    }
+
+    // Returns false if the session already belongs to another game; a session only ever participates in one.
+    private boolean indexParticipant(String sessionId, ParticipantRef ref) {
+        ParticipantRef existing = participantIndex.putIfAbsent(sessionId, ref);
+        if (existing == null) {
+            return true;
+        }
+        if (!existing.gamePin().equals(ref.gamePin())) {
+            log.warn("Session {} is already part of game {}; ignoring its join to game {}.", sessionId, existing.gamePin(), ref.gamePin());
+            return false;
+        }
+        if (existing.role() != ref.role() && ref.role() == ParticipantRole.HOST) {
+            participantIndex.put(sessionId, ref); // Player promoted to host of the same game
+        }
+        return true;
+    }
 }
\ No newline at end of file
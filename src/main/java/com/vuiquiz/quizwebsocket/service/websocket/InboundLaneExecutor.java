@@ -0,0 +1,124 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for the clientInboundChannel that stripes messages by game PIN.
+ * <p>
+ * Every lane is a single thread with its own queue, so all messages of one game are handled one after
+ * another in arrival order, while different games run in parallel on different lanes. A host flooding
+ * its game only fills its own lane. Messages without a PIN in the destination (CONNECT, DISCONNECT,
+ * heartbeats) go to the lane of the game their session belongs to, or are striped by session ID.
+ * <p>
+ * A {@link TaskExecutor} rather than a plain Executor: WebSocketMessageBrokerStats injects the
+ * clientInboundChannelExecutor bean by that type.
+ */
+@Component
+@Slf4j
+public class InboundLaneExecutor implements TaskExecutor {
+
+    private final GameSessionManager sessionManager;
+    private final ThreadPoolExecutor[] lanes;
+    private final Counter rejectedCounter;
+
+    public InboundLaneExecutor(GameSessionManager sessionManager, WebSocketProperties properties, MeterRegistry meterRegistry) {
+        this.sessionManager = sessionManager;
+        WebSocketProperties.Inbound inbound = properties.getInbound();
+        int laneCount = inbound.getLanes() > 0 ? inbound.getLanes() : Runtime.getRuntime().availableProcessors();
+
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String threadName = "ws-inbound-lane-" + i;
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(inbound.getLaneQueueCapacity()),
+                    r -> new Thread(r, threadName));
+            lanes[i] = lane;
+            Gauge.builder("websocket.inbound.lane.queue.depth", lane, l -> l.getQueue().size())
+                    .description("Inbound STOMP messages waiting in a game lane")
+                    .tag("lane", Integer.toString(i))
+                    .register(meterRegistry);
+        }
+        this.rejectedCounter = Counter.builder("websocket.inbound.lane.rejected")
+                .description("Inbound STOMP messages dropped because their lane queue was full")
+                .register(meterRegistry);
+        log.info("Inbound STOMP channel uses {} ordered game lanes (queue capacity {} each)", laneCount, inbound.getLaneQueueCapacity());
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        ThreadPoolExecutor lane = lanes[laneIndex(task)];
+        try {
+            lane.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a task on the lane of a game, in order with the game's inbound messages.
+     */
+    public void executeForGame(String gamePin, Runnable task) {
+        ThreadPoolExecutor lane = lanes[Math.floorMod(gamePin.hashCode(), lanes.length)];
+        try {
+            lane.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Messages waiting in all lanes together.
+     */
+    public int queuedTasks() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+
+    private int laneIndex(Runnable task) {
+        if (!(task instanceof MessageHandlingRunnable handlingRunnable)) {
+            return 0;
+        }
+        String stripeKey = resolveStripeKey(handlingRunnable.getMessage());
+        return stripeKey != null ? Math.floorMod(stripeKey.hashCode(), lanes.length) : 0;
+    }
+
+    private String resolveStripeKey(Message<?> message) {
+        String gamePin = GameDestinations.gamePinOf(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        if (gamePin != null) {
+            return gamePin;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return null;
+        }
+        GameSessionManager.ParticipantRef participant = sessionManager.findParticipant(sessionId);
+        return participant != null ? participant.gamePin() : sessionId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
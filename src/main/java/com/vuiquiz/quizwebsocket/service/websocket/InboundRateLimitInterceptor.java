@@ -0,0 +1,154 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits client frames on the clientInboundChannel with token buckets per STOMP session and per game PIN.
+ * <p>
+ * It runs in {@code preSend} on the transport thread, before the frame is queued to a game lane, so excess
+ * frames are dropped (or answered with a STOMP ERROR) before any JSON parsing or logging happens. SEND and
+ * SUBSCRIBE count against the session bucket; SEND to a game destination also counts against the game bucket,
+ * so one abusive tab cannot starve other games on the node. A game's host sends some frames once per player
+ * (e.g. REVEAL_ANSWER, REVEAL_RANKING), so the session bucket of a host has the game's rate and burst.
+ */
+@Component
+@Slf4j
+public class InboundRateLimitInterceptor implements ChannelInterceptor {
+
+    private static final long SWEEP_INTERVAL_SECONDS = 30;
+
+    private final WebSocketProperties.RateLimit limits;
+    private final GameSessionManager sessionManager;
+
+    // Buckets are created on first use and swept once fully refilled
+    private final Map<String, TokenBucket> sessionBuckets = new ConcurrentHashMap<>();
+    // Separate from the player buckets: a session only becomes host after its first counted SUBSCRIBE
+    private final Map<String, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> gameBuckets = new ConcurrentHashMap<>();
+
+    private final Counter droppedSessionFrames;
+    private final Counter droppedGameFrames;
+    private final Counter throttledSessions;
+    private final Counter throttledGames;
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rate-limit-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InboundRateLimitInterceptor(WebSocketProperties properties, GameSessionManager sessionManager, MeterRegistry meterRegistry) {
+        this.limits = properties.getRateLimit();
+        this.sessionManager = sessionManager;
+        this.droppedSessionFrames = Counter.builder("websocket.inbound.throttled.frames")
+                .description("Inbound STOMP frames rejected by the rate limiter")
+                .tag("scope", "session")
+                .register(meterRegistry);
+        this.droppedGameFrames = Counter.builder("websocket.inbound.throttled.frames")
+                .description("Inbound STOMP frames rejected by the rate limiter")
+                .tag("scope", "game")
+                .register(meterRegistry);
+        this.throttledSessions = Counter.builder("websocket.inbound.throttled")
+                .description("Times a STOMP session or game went over its rate limit")
+                .tag("scope", "session")
+                .register(meterRegistry);
+        this.throttledGames = Counter.builder("websocket.inbound.throttled")
+                .description("Times a STOMP session or game went over its rate limit")
+                .tag("scope", "game")
+                .register(meterRegistry);
+        sweeper.scheduleWithFixedDelay(this::sweepFullBuckets, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!limits.isEnabled()) {
+            return message;
+        }
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        if (messageType == SimpMessageType.DISCONNECT) {
+            sessionBuckets.remove(sessionId);
+            hostBuckets.remove(sessionId);
+            return message;
+        }
+        boolean isSend = messageType == SimpMessageType.MESSAGE;
+        if (!isSend && messageType != SimpMessageType.SUBSCRIBE) {
+            return message; // CONNECT, UNSUBSCRIBE and heartbeats are never throttled
+        }
+
+        long now = System.nanoTime();
+        TokenBucket sessionBucket = isHost(sessionId)
+                ? hostBuckets.computeIfAbsent(sessionId, id -> new TokenBucket(limits.getGameRatePerSecond(), limits.getGameBurst(), now))
+                : sessionBuckets.computeIfAbsent(sessionId, id -> new TokenBucket(limits.getSessionRatePerSecond(), limits.getSessionBurst(), now));
+        if (!sessionBucket.tryAcquire(now)) {
+            droppedSessionFrames.increment();
+            if (sessionBucket.markThrottled()) {
+                throttledSessions.increment();
+                log.warn("STOMP session {} exceeded {} frames/s; dropping its frames until it slows down.",
+                        sessionId, limits.getSessionRatePerSecond());
+            }
+            return reject(message, "session " + sessionId);
+        }
+
+        String gamePin = isSend ? GameDestinations.gamePinOf(SimpMessageHeaderAccessor.getDestination(message.getHeaders())) : null;
+        if (gamePin != null) {
+            TokenBucket gameBucket = gameBuckets.computeIfAbsent(gamePin,
+                    pin -> new TokenBucket(limits.getGameRatePerSecond(), limits.getGameBurst(), now));
+            if (!gameBucket.tryAcquire(now)) {
+                droppedGameFrames.increment();
+                if (gameBucket.markThrottled()) {
+                    throttledGames.increment();
+                    log.warn("Game {} exceeded {} frames/s; dropping its frames until it slows down.",
+                            gamePin, limits.getGameRatePerSecond());
+                }
+                return reject(message, "game " + gamePin);
+            }
+        }
+        return message;
+    }
+
+    private boolean isHost(String sessionId) {
+        GameSessionManager.ParticipantRef participant = sessionManager.findParticipant(sessionId);
+        return participant != null && participant.role() == GameSessionManager.ParticipantRole.HOST;
+    }
+
+    private Message<?> reject(Message<?> message, String scope) {
+        if (limits.isRejectWithError()) {
+            // StompSubProtocolHandler turns this into a STOMP ERROR frame for the client
+            throw new MessageDeliveryException(message, "Rate limit exceeded for " + scope);
+        }
+        return null; // Returning null from preSend drops the frame
+    }
+
+    private void sweepFullBuckets() {
+        long now = System.nanoTime();
+        sessionBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        hostBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        gameBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
@@ -0,0 +1,35 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import org.springframework.messaging.Message;
+
+/**
+ * Priority classes of frames on the clientOutboundChannel, lowest ordinal first.
+ * <p>
+ * The class travels as a (non-STOMP) message header from {@link GameMessageBroadcaster} through the simple
+ * broker, which copies it onto the message for every subscriber. Frames without it, e.g. those coming back
+ * from an external relay broker, are {@link #NORMAL}.
+ */
+public enum OutboundPriority {
+
+    URGENT, // Game flow players wait on: countdown start, time up, game over
+    NORMAL, // Everything not classified otherwise, e.g. reveals and confirmations
+    BULK; // High-volume frames that may wait a little: relayed answers, roster deltas, answer lists
+
+    public static final String HEADER = "outboundPriority";
+
+    /**
+     * Classifies a relayed frame by its {@code data.id}.
+     */
+    public static OutboundPriority of(int messageId) {
+        return switch (messageId) {
+            case GameMessageIds.GET_READY, GameMessageIds.START_QUESTION, GameMessageIds.TIME_UP,
+                 GameMessageIds.GAME_OVER, GameMessageIds.START_QUIZ, GameMessageIds.RESET_CONTROLLER -> URGENT;
+            case GameMessageIds.ANSWER -> BULK;
+            default -> NORMAL;
+        };
+    }
+
+    public static OutboundPriority of(Message<?> message) {
+        return message.getHeaders().get(HEADER) instanceof OutboundPriority priority ? priority : NORMAL;
+    }
+}
@@ -0,0 +1,225 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor for the clientOutboundChannel that serves WebSocket sessions by {@link OutboundPriority}.
+ * <p>
+ * Frames of one session are sent one at a time. Frames for the same destination keep the order they were
+ * published in, so a TIME_UP never overtakes the answers relayed to the same topic before it; across the
+ * session's destinations the most urgent waiting frame goes first, e.g. a START_QUESTION on the game topic ahead
+ * of a backlog on a private queue. Urgent frames therefore only jump bulk frames of other destinations and other
+ * sessions, never those published before them on their own destination. A free thread serves the session
+ * holding the most urgent sendable frame, oldest first. With the default executor a START_QUESTION for an idle
+ * player waits behind every roster delta and relayed answer queued for other sessions; here it goes first, and
+ * sessions busy with bulk traffic absorb the delay. Each class records the time from being queued to being
+ * handed to the WebSocket session as {@code websocket.outbound.send.latency}.
+ * <p>
+ * A {@link TaskExecutor}, like {@link InboundLaneExecutor}, because WebSocketMessageBrokerStats injects the
+ * clientOutboundChannelExecutor bean by that type.
+ */
+@Component
+@Slf4j
+public class OutboundPriorityExecutor implements TaskExecutor {
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong sequence = new AtomicLong();
+    // <WebSocket session ID, frames waiting for it>; a queue is dropped once it runs empty
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+    private final Map<OutboundPriority, Timer> sendLatency = new EnumMap<>(OutboundPriority.class);
+    private final Map<OutboundPriority, AtomicInteger> queued = new EnumMap<>(OutboundPriority.class);
+
+    public OutboundPriorityExecutor(WebSocketProperties properties, MeterRegistry meterRegistry) {
+        int threads = properties.getOutbound().getThreads() > 0
+                ? properties.getOutbound().getThreads()
+                : Runtime.getRuntime().availableProcessors() * 2; // Spring's default for this channel
+        AtomicInteger threadCount = new AtomicInteger();
+        // Holds turns of sessions, not frames; unbounded like Spring's default
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                r -> new Thread(r, "ws-outbound-" + threadCount.getAndIncrement()));
+
+        for (OutboundPriority priority : OutboundPriority.values()) {
+            String tag = priority.name().toLowerCase();
+            sendLatency.put(priority, Timer.builder("websocket.outbound.send.latency")
+                    .description("Time from queueing an outbound frame to handing it to the WebSocket session")
+                    .tag("priority", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            AtomicInteger depth = new AtomicInteger();
+            queued.put(priority, depth);
+            Gauge.builder("websocket.outbound.queue.depth", depth, AtomicInteger::get)
+                    .description("Outbound frames waiting for a thread, per priority class")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+        log.info("Outbound STOMP channel uses {} threads with priority classes {}", threads, OutboundPriority.values());
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        OutboundPriority priority = OutboundPriority.NORMAL;
+        String sessionId = null;
+        String destination = null;
+        if (task instanceof MessageHandlingRunnable handlingRunnable) {
+            priority = OutboundPriority.of(handlingRunnable.getMessage());
+            sessionId = SimpMessageHeaderAccessor.getSessionId(handlingRunnable.getMessage().getHeaders());
+            destination = SimpMessageHeaderAccessor.getDestination(handlingRunnable.getMessage().getHeaders());
+        }
+        queued.get(priority).incrementAndGet();
+        Frame frame = new Frame(task, priority, destination, System.nanoTime(), sequence.getAndIncrement());
+        if (sessionId == null) {
+            new SessionQueue(null).add(frame); // Nothing to keep in order with
+            return;
+        }
+        while (!sessions.computeIfAbsent(sessionId, SessionQueue::new).add(frame)) {
+            // Raced with the queue being dropped; the next one takes over
+        }
+    }
+
+    /**
+     * @return Frames waiting for a thread, all classes together.
+     */
+    public int queuedTasks() {
+        int total = 0;
+        for (AtomicInteger depth : queued.values()) {
+            total += depth.get();
+        }
+        return total;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private record Frame(Runnable delegate, OutboundPriority priority, String destination, long queuedAtNanos,
+                         long sequence) {
+
+        boolean sendsBefore(Frame other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority < 0 : sequence < other.sequence;
+        }
+    }
+
+    /**
+     * The frames of one session, in one FIFO lane per destination. At most one thread sends from it at a time;
+     * while it has frames and no thread, a {@link Turn} for it waits in the pool, ranked by its most urgent lane
+     * head. Control frames without a destination (CONNECTED, RECEIPT, ERROR) share a lane.
+     */
+    private final class SessionQueue {
+        private final String sessionId;
+        // <destination, frames for it>; a lane is dropped once it runs empty
+        private final Map<String, ArrayDeque<Frame>> lanes = new HashMap<>();
+        private boolean sending;
+        private boolean dropped;
+        // Class of the newest turn waiting in the pool, null if none; an urgent frame adds a turn ahead of it
+        private OutboundPriority waitingTurn;
+
+        SessionQueue(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        boolean add(Frame frame) {
+            OutboundPriority turn;
+            synchronized (this) {
+                if (dropped) {
+                    return false;
+                }
+                ArrayDeque<Frame> lane = lanes.computeIfAbsent(frame.destination(), destination -> new ArrayDeque<>());
+                lane.add(frame);
+                // Only a new lane head can be sent sooner than what is waiting already
+                if (sending || lane.size() > 1
+                        || (waitingTurn != null && waitingTurn.compareTo(frame.priority()) <= 0)) {
+                    return true;
+                }
+                turn = frame.priority();
+                waitingTurn = turn;
+            }
+            pool.execute(new Turn(this, turn, sequence.getAndIncrement()));
+            return true;
+        }
+
+        void sendNext() {
+            Frame frame;
+            synchronized (this) {
+                if (sending || lanes.isEmpty()) {
+                    return; // A turn superseded by a more urgent one
+                }
+                sending = true;
+                waitingTurn = null;
+                frame = next();
+                ArrayDeque<Frame> lane = lanes.get(frame.destination());
+                lane.poll();
+                if (lane.isEmpty()) {
+                    lanes.remove(frame.destination());
+                }
+            }
+            queued.get(frame.priority()).decrementAndGet();
+            try {
+                frame.delegate().run();
+            } finally {
+                sendLatency.get(frame.priority()).record(System.nanoTime() - frame.queuedAtNanos(), TimeUnit.NANOSECONDS);
+                OutboundPriority turn = null;
+                synchronized (this) {
+                    sending = false;
+                    if (!lanes.isEmpty()) {
+                        turn = next().priority();
+                        waitingTurn = turn;
+                    } else if (sessionId != null) {
+                        dropped = true;
+                        sessions.remove(sessionId, this);
+                    }
+                }
+                if (turn != null) {
+                    pool.execute(new Turn(this, turn, sequence.getAndIncrement()));
+                }
+            }
+        }
+
+        // The most urgent lane head, oldest first; a session has few destinations
+        private Frame next() {
+            Frame next = null;
+            for (ArrayDeque<Frame> lane : lanes.values()) {
+                Frame head = lane.peek();
+                if (next == null || head.sendsBefore(next)) {
+                    next = head;
+                }
+            }
+            return next;
+        }
+    }
+
+    private record Turn(SessionQueue session, OutboundPriority priority, long sequence) implements Runnable, Comparable<Turn> {
+
+        @Override
+        public void run() {
+            session.sendNext();
+        }
+
+        @Override
+        public int compareTo(Turn other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
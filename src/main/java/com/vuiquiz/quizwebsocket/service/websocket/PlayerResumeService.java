@@ -0,0 +1,314 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets players survive a dropped socket without becoming a new participant.
+ * <p>
+ * Every player gets a resume token in its PLAYER_ASSIGNED confirmation. When its socket drops, the player keeps
+ * its place for {@code app.websocket.resume.grace-ms}. A client that reconnects with a {@code resume-token} header
+ * on its STOMP CONNECT frame acts as the original player ID from then on, and can ask /app/resume/{gamepin} for
+ * the frames it missed.
+ * <p>
+ * Frames to players carry a per-game {@code seq} STOMP header. Host broadcasts are kept in one ring per game,
+ * since they are identical for every player, and private frames in a ring per player; a replay merges both.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlayerResumeService {
+
+    public static final String RESUME_TOKEN_HEADER = "resume-token";
+    public static final String SEQ_HEADER = "seq";
+
+    public enum DisconnectOutcome {
+        NOT_RESUMABLE, // Not a player with a resume token; remove it as usual
+        DEFERRED, // Removal is scheduled after the grace period
+        SUPERSEDED // An older socket of a player that already resumed on a new one; nothing to do
+    }
+
+    /**
+     * Frames missed since {@code lastSeq}, in sequence order.
+     * @param complete false if some missed frames were already evicted and the client must resync from the host.
+     */
+    public record Replay(String playerId, long currentSeq, boolean complete, List<ReplayFrame> frames) {
+    }
+
+    public record ReplayFrame(long seq, byte[] payload) {
+    }
+
+    private final GameSessionManager sessionManager;
+    private final RosterUpdateCoalescer rosterUpdateCoalescer;
+    private final WebSocketProperties properties;
+
+    private final SecureRandom tokenRandom = new SecureRandom();
+    // <Resume token, slot> and <player ID, slot>; the player ID is the session ID the player first joined with
+    private final Map<String, PlayerSlot> slotsByToken = new ConcurrentHashMap<>();
+    private final Map<String, PlayerSlot> slotsByPlayer = new ConcurrentHashMap<>();
+    // <Resumed session ID, player ID>
+    private final Map<String, String> resumedSessions = new ConcurrentHashMap<>();
+    // <GamePin, sequence counter and recent host broadcasts>
+    private final Map<String, GameReplay> games = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "player-resume");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void startSweeper() {
+        long intervalMs = Math.max(1_000, properties.getResume().getGraceMs());
+        scheduler.scheduleWithFixedDelay(this::sweepEndedGames, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Creates the resume slot of a player that just joined.
+     * @return The resume token, or null if resuming is disabled.
+     */
+    public String issueToken(String gamePin, String playerId) {
+        if (!properties.getResume().isEnabled()) {
+            return null;
+        }
+        byte[] bytes = new byte[16];
+        tokenRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        PlayerSlot slot = new PlayerSlot(playerId, gamePin, token, properties.getResume().getPlayerReplayCapacity());
+        slotsByToken.put(token, slot);
+        slotsByPlayer.put(playerId, slot);
+        return token;
+    }
+
+    /**
+     * @return The participant ID a WebSocket session acts as: the original player ID for resumed sessions,
+     * the session ID itself otherwise.
+     */
+    public String participantIdOf(String sessionId) {
+        return resumedSessions.getOrDefault(sessionId, sessionId);
+    }
+
+    /**
+     * @return The session a player is currently connected with, or null while it is disconnected.
+     */
+    public String currentSessionOf(String playerId) {
+        PlayerSlot slot = slotsByPlayer.get(playerId);
+        return slot != null ? slot.currentSessionId : playerId;
+    }
+
+    /**
+     * Binds a new STOMP session to the player owning the token. Called on CONNECT, before any other frame
+     * of the session, so its later frames are already routed as the player's.
+     * @return The player ID the session now acts as, or null if the token is unknown or expired.
+     */
+    public String bindOnConnect(String newSessionId, String token) {
+        PlayerSlot slot = slotsByToken.get(token);
+        if (slot == null) {
+            return null;
+        }
+        synchronized (slot) {
+            if (slot.expired || !sessionManager.bindResumedSession(newSessionId, slot.playerId)) {
+                return null;
+            }
+            if (slot.pendingRemoval != null) {
+                slot.pendingRemoval.cancel(false);
+                slot.pendingRemoval = null;
+            }
+            String previousSessionId = slot.currentSessionId;
+            slot.currentSessionId = newSessionId;
+            resumedSessions.put(newSessionId, slot.playerId);
+            log.info("Session {}: player {} resumed on session {} (previous socket: {}).",
+                    slot.gamePin, slot.playerId, newSessionId, previousSessionId != null ? previousSessionId : "closed");
+        }
+        return slot.playerId;
+    }
+
+    /**
+     * Handles a closed socket of a player.
+     */
+    public DisconnectOutcome onDisconnect(String sessionId) {
+        String playerId = resumedSessions.remove(sessionId);
+        if (playerId != null) {
+            sessionManager.unbindResumedSession(sessionId);
+        } else {
+            playerId = sessionId;
+        }
+        PlayerSlot slot = slotsByPlayer.get(playerId);
+        if (slot == null) {
+            return DisconnectOutcome.NOT_RESUMABLE;
+        }
+        synchronized (slot) {
+            if (!sessionId.equals(slot.currentSessionId)) {
+                return DisconnectOutcome.SUPERSEDED;
+            }
+            slot.currentSessionId = null;
+            slot.pendingRemoval = scheduler.schedule(() -> expire(slot), properties.getResume().getGraceMs(), TimeUnit.MILLISECONDS);
+        }
+        log.info("Session {}: player {} disconnected; keeping its place for {} ms.", slot.gamePin, playerId, properties.getResume().getGraceMs());
+        return DisconnectOutcome.DEFERRED;
+    }
+
+    /**
+     * Assigns the next sequence number of a game to a host broadcast and keeps the frame for replay.
+     * @return The STOMP headers to send the frame with.
+     */
+    public Map<String, String> recordBroadcast(String gamePin, byte[] frame) {
+        if (!properties.getResume().isEnabled()) {
+            return Map.of();
+        }
+        GameReplay game = games.computeIfAbsent(gamePin, pin -> new GameReplay(properties.getResume().getGameReplayCapacity()));
+        long seq = game.nextSeq.incrementAndGet();
+        game.broadcasts.add(seq, frame);
+        return Map.of(SEQ_HEADER, Long.toString(seq));
+    }
+
+    /**
+     * Same as {@link #recordBroadcast} for a frame to one player.
+     */
+    public Map<String, String> recordPrivate(String gamePin, String playerId, byte[] frame) {
+        PlayerSlot slot = slotsByPlayer.get(playerId);
+        if (slot == null) {
+            return Map.of();
+        }
+        GameReplay game = games.computeIfAbsent(gamePin, pin -> new GameReplay(properties.getResume().getGameReplayCapacity()));
+        long seq = game.nextSeq.incrementAndGet();
+        slot.privateFrames.add(seq, frame);
+        return Map.of(SEQ_HEADER, Long.toString(seq));
+    }
+
+    /**
+     * Collects what a resumed session missed after {@code lastSeq}.
+     * @return null if the session did not resume a player of this game.
+     */
+    public Replay replay(String gamePin, String sessionId, long lastSeq) {
+        String playerId = resumedSessions.get(sessionId);
+        PlayerSlot slot = playerId != null ? slotsByPlayer.get(playerId) : null;
+        if (slot == null || !slot.gamePin.equals(gamePin)) {
+            return null;
+        }
+        GameReplay game = games.get(gamePin);
+        List<ReplayFrame> frames = new ArrayList<>();
+        boolean complete = slot.privateFrames.collectSince(lastSeq, frames);
+        long currentSeq = lastSeq;
+        if (game != null) {
+            complete &= game.broadcasts.collectSince(lastSeq, frames);
+            currentSeq = game.nextSeq.get();
+        }
+        frames.sort(Comparator.comparingLong(ReplayFrame::seq));
+        return new Replay(playerId, currentSeq, complete, frames);
+    }
+
+    private void expire(PlayerSlot slot) {
+        synchronized (slot) {
+            if (slot.currentSessionId != null) {
+                return; // Resumed in the meantime
+            }
+            slot.expired = true;
+        }
+        slotsByToken.remove(slot.token);
+        slotsByPlayer.remove(slot.playerId, slot);
+        String gamePin = sessionManager.removeParticipant(slot.playerId);
+        if (gamePin != null) {
+            rosterUpdateCoalescer.participantLeft(gamePin, slot.playerId);
+        }
+        log.info("Session {}: player {} did not come back within the grace period and was removed.", slot.gamePin, slot.playerId);
+    }
+
+    private void sweepEndedGames() {
+        games.keySet().removeIf(pin -> sessionManager.getSession(pin) == null);
+        slotsByPlayer.values().removeIf(slot -> {
+            if (sessionManager.getSession(slot.gamePin) != null) {
+                return false;
+            }
+            slotsByToken.remove(slot.token);
+            return true;
+        });
+    }
+
+    private static final class PlayerSlot {
+        private final String playerId;
+        private final String gamePin;
+        private final String token;
+        private final FrameRing privateFrames;
+        // Guarded by the slot
+        private String currentSessionId;
+        private ScheduledFuture<?> pendingRemoval;
+        private boolean expired;
+
+        PlayerSlot(String playerId, String gamePin, String token, int capacity) {
+            this.playerId = playerId;
+            this.gamePin = gamePin;
+            this.token = token;
+            this.privateFrames = new FrameRing(capacity);
+            this.currentSessionId = playerId;
+        }
+    }
+
+    private static final class GameReplay {
+        private final AtomicLong nextSeq = new AtomicLong();
+        private final FrameRing broadcasts;
+
+        GameReplay(int capacity) {
+            this.broadcasts = new FrameRing(capacity);
+        }
+    }
+
+    // Fixed-size ring of frames; frames are shared references, not copies
+    private static final class FrameRing {
+        private final long[] seqs;
+        private final byte[][] frames;
+        private int next = 0;
+        private int size = 0;
+        private long evictedUpTo = 0;
+
+        FrameRing(int capacity) {
+            this.seqs = new long[Math.max(1, capacity)];
+            this.frames = new byte[seqs.length][];
+        }
+
+        synchronized void add(long seq, byte[] frame) {
+            if (size == seqs.length) {
+                evictedUpTo = seqs[next];
+            } else {
+                size++;
+            }
+            seqs[next] = seq;
+            frames[next] = frame;
+            next = (next + 1) % seqs.length;
+        }
+
+        // Returns false if frames after lastSeq were already evicted
+        synchronized boolean collectSince(long lastSeq, List<ReplayFrame> out) {
+            int start = (next - size + seqs.length) % seqs.length;
+            for (int i = 0; i < size; i++) {
+                int index = (start + i) % seqs.length;
+                if (seqs[index] > lastSeq) {
+                    out.add(new ReplayFrame(seqs[index], frames[index]));
+                }
+            }
+            return evictedUpTo <= lastSeq;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent set of player session IDs for one game.
+ * <p>
+ * Joins and leaves are O(1) on a concurrent hash set, so a lobby filling up does not copy the whole
+ * roster on every join the way a CopyOnWriteArraySet does. Every change bumps a version number.
+ * Readers get an immutable {@link Snapshot} that is built at most once per version and shared
+ * until the roster changes again.
+ */
+public class PlayerRoster {
+
+    /**
+     * Immutable view of the roster.
+     * @param version The roster version this snapshot was taken at.
+     * @param sessionIds The player session IDs; never modified after creation.
+     */
+    public record Snapshot(long version, Set<String> sessionIds) {
+        public int size() {
+            return sessionIds.size();
+        }
+
+        public boolean contains(String sessionId) {
+            return sessionIds.contains(sessionId);
+        }
+    }
+
+    private final Set<String> members = ConcurrentHashMap.newKeySet();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot cachedSnapshot = new Snapshot(0L, Set.of());
+
+    /**
+     * @return true if the session was not in the roster yet.
+     */
+    public boolean add(String sessionId) {
+        if (members.add(sessionId)) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the session was in the roster.
+     */
+    public boolean remove(String sessionId) {
+        if (members.remove(sessionId)) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean contains(String sessionId) {
+        return members.contains(sessionId);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Returns an immutable snapshot of the roster, reusing the cached one if nothing changed since it was taken.
+     * A snapshot may include changes made while it was being built; its version is then older than its contents,
+     * so the next call simply builds a fresh one.
+     */
+    public Snapshot snapshot() {
+        Snapshot current = cachedSnapshot;
+        long currentVersion = version.get();
+        if (current.version() == currentVersion) {
+            return current;
+        }
+        Snapshot fresh = new Snapshot(currentVersion, Set.copyOf(members));
+        cachedSnapshot = fresh;
+        return fresh;
+    }
+}
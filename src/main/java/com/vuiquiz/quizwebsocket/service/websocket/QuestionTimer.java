@@ -0,0 +1,333 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-owned question timeline.
+ * <p>
+ * When the host broadcasts START_QUESTION, the game's answer window opens at a monotonic server time. Every
+ * player ANSWER relayed while it is open gets {@code serverReactionMs} and {@code serverAnsweredAt} added to
+ * its data, measured here rather than on the player's device. The measurement is kept for the session's
+ * finalization only if the START_QUESTION named its {@code questionIndex}: finalization looks answers up by the
+ * slide's index, and a count kept here could drift from it after skipped or repeated questions. If the question's time limit is known ({@code time}, {@code timeLimit} or {@code timeAvailable}
+ * in data.content, in ms), the server closes the window itself after the limit plus {@code close-grace-ms} and
+ * broadcasts TIME_UP to players and host, so the host no longer has to stream ticks to keep devices in step.
+ * A host TIME_UP or GAME_OVER closes the window early; a host TIME_UP for a window the server already closed
+ * is not relayed again.
+ * <p>
+ * Window changes and answers are handled on the game's inbound lane, so a close and an answer are never
+ * reordered; the timer only hands the close to the lane.
+ */
+@Service
+@Slf4j
+public class QuestionTimer implements GameSessionManager.SessionChangeListener {
+
+    public static final String SERVER_REACTION_FIELD = "serverReactionMs";
+    public static final String SERVER_ANSWERED_AT_FIELD = "serverAnsweredAt";
+
+    private final GameSessionManager sessionManager;
+    private final GameActionRelayEngine relayEngine;
+    private final GameMessageBroadcaster broadcaster;
+    private final PlayerResumeService playerResumeService;
+    private final TopicLastValueCache lastValueCache;
+    private final AnswerDigestService answerDigestService;
+    private final InboundLaneExecutor inboundLaneExecutor;
+    private final WebSocketProperties.QuestionTimer settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // <GamePin, timeline>
+    private final Map<String, Timeline> timelines = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService closeScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "question-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Timer reactionTimer;
+    private final Counter lateAnswers;
+    private final Counter serverCloses;
+    private final Counter hostCloses;
+
+    public QuestionTimer(GameSessionManager sessionManager,
+                         GameActionRelayEngine relayEngine,
+                         GameMessageBroadcaster broadcaster,
+                         PlayerResumeService playerResumeService,
+                         TopicLastValueCache lastValueCache,
+                         AnswerDigestService answerDigestService,
+                         InboundLaneExecutor inboundLaneExecutor,
+                         WebSocketProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.sessionManager = sessionManager;
+        this.relayEngine = relayEngine;
+        this.broadcaster = broadcaster;
+        this.playerResumeService = playerResumeService;
+        this.lastValueCache = lastValueCache;
+        this.answerDigestService = answerDigestService;
+        this.inboundLaneExecutor = inboundLaneExecutor;
+        this.settings = properties.getQuestionTimer();
+        this.reactionTimer = Timer.builder("websocket.question.reaction")
+                .description("Server-measured time from START_QUESTION to a player's answer")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.lateAnswers = Counter.builder("websocket.question.late.answers")
+                .description("Player answers that arrived after the answer window closed")
+                .register(meterRegistry);
+        this.serverCloses = closedCounter(meterRegistry, "server");
+        this.hostCloses = closedCounter(meterRegistry, "host");
+    }
+
+    private static Counter closedCounter(MeterRegistry meterRegistry, String by) {
+        return Counter.builder("websocket.question.closed")
+                .description("Answer windows closed, by the server's timer or by the host")
+                .tag("by", by)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void register() {
+        sessionManager.addChangeListener(this);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        closeScheduler.shutdownNow();
+    }
+
+    /**
+     * A server measurement of one answer.
+     * @param reactionMs   Time from the question's start to the answer reaching the server.
+     * @param answeredAtMs Wall-clock time of the answer, derived from the question's start and reactionMs.
+     */
+    public record MeasuredAnswer(int reactionMs, long answeredAtMs) {
+    }
+
+    /**
+     * Observes a host broadcast on the game's lane and moves the timeline.
+     * @return false if the frame must not be relayed: a TIME_UP for a window the server already closed.
+     */
+    public boolean onHostBroadcast(String gamePin, int messageId, byte[] frame) {
+        if (!settings.isEnabled()) {
+            return true;
+        }
+        switch (messageId) {
+            case GameMessageIds.START_QUESTION -> open(gamePin, frame);
+            case GameMessageIds.TIME_UP -> {
+                Timeline timeline = timelines.get(gamePin);
+                if (timeline != null && timeline.closedByServer && timeline.window == null) {
+                    timeline.closedByServer = false; // Suppress once; a later TIME_UP is the host's own again
+                    return false;
+                }
+                closeByHost(timeline);
+            }
+            case GameMessageIds.GAME_OVER -> closeByHost(timelines.get(gamePin));
+            case GameMessageIds.PLAY_AGAIN, GameMessageIds.START_QUIZ -> {
+                Timeline timeline = timelines.get(gamePin);
+                if (timeline != null) {
+                    closeByHost(timeline);
+                    timeline.answers.clear(); // A new round; the previous one was finalized already
+                }
+            }
+            default -> {
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stamps a player's ANSWER frame with the server-measured reaction time.
+     * @param playerId The player's stable ID, as spliced into data.cid.
+     * @return The frame to relay, unchanged if no window was ever opened, or null if the window is closed and
+     * late answers are rejected.
+     */
+    public byte[] stampAnswer(String gamePin, String playerId, byte[] frame) {
+        if (!settings.isEnabled()) {
+            return frame;
+        }
+        Timeline timeline = timelines.get(gamePin);
+        if (timeline == null) {
+            return frame; // The host never started a question through the relay; nothing to measure against
+        }
+        long nowNanos = System.nanoTime();
+        Window window = timeline.window;
+        if (window == null) {
+            lateAnswers.increment();
+            return settings.isRejectLateAnswers() ? null : frame;
+        }
+        long reactionNanos = nowNanos - window.openedAtNanos;
+        MeasuredAnswer measured = new MeasuredAnswer((int) TimeUnit.NANOSECONDS.toMillis(reactionNanos),
+                window.openedAtEpochMs + TimeUnit.NANOSECONDS.toMillis(reactionNanos));
+        if (window.questionIndex == null
+                || timeline.answers.computeIfAbsent(window.questionIndex, index -> new ConcurrentHashMap<>()).putIfAbsent(playerId, measured) == null) {
+            reactionTimer.record(reactionNanos, TimeUnit.NANOSECONDS);
+        }
+        try {
+            return relayEngine.appendDataFields(frame, "\"" + SERVER_REACTION_FIELD + "\":" + measured.reactionMs()
+                    + ",\"" + SERVER_ANSWERED_AT_FIELD + "\":" + measured.answeredAtMs());
+        } catch (IOException e) {
+            log.debug("Could not stamp answer from {} in session {}: {}", playerId, gamePin, e.getMessage());
+            return frame;
+        }
+    }
+
+    /**
+     * @return The server's measurement of a player's answer to a question, or null if there is none.
+     */
+    public MeasuredAnswer measuredAnswer(String gamePin, int questionIndex, String playerId) {
+        Timeline timeline = timelines.get(gamePin);
+        if (timeline == null) {
+            return null;
+        }
+        Map<String, MeasuredAnswer> answers = timeline.answers.get(questionIndex);
+        return answers != null ? answers.get(playerId) : null;
+    }
+
+    private void open(String gamePin, byte[] frame) {
+        Timeline timeline = timelines.computeIfAbsent(gamePin, pin -> new Timeline());
+        closeByHost(timeline);
+        JsonNode content = readContent(frame);
+        // Without an index the answers are still stamped, but not kept for finalization
+        Integer questionIndex = content.path("questionIndex").canConvertToInt() ? content.path("questionIndex").asInt() : null;
+        long timeLimitMs = readTimeLimitMs(content);
+        Window window = new Window(questionIndex, System.nanoTime(), System.currentTimeMillis());
+        timeline.window = window;
+        timeline.closedByServer = false;
+        if (timeLimitMs > 0) {
+            window.closeTask = closeScheduler.schedule(() -> {
+                try {
+                    inboundLaneExecutor.executeForGame(gamePin, () -> closeByServer(gamePin, window));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Session {}: could not queue the close of question {}.", gamePin, questionIndex);
+                }
+            }, timeLimitMs + settings.getCloseGraceMs(), TimeUnit.MILLISECONDS);
+        }
+        log.debug("Session {}: answer window for question {} opened ({} ms).", gamePin, questionIndex, timeLimitMs > 0 ? timeLimitMs : "no limit");
+    }
+
+    private void closeByHost(Timeline timeline) {
+        if (timeline == null || timeline.window == null) {
+            return;
+        }
+        Window window = timeline.window;
+        timeline.window = null;
+        if (window.closeTask != null) {
+            window.closeTask.cancel(false);
+        }
+        hostCloses.increment();
+    }
+
+    // Runs on the game's lane
+    private void closeByServer(String gamePin, Window window) {
+        Timeline timeline = timelines.get(gamePin);
+        if (timeline == null || timeline.window != window || sessionManager.getSession(gamePin) == null) {
+            return; // Closed by the host or replaced by the next question meanwhile
+        }
+        timeline.window = null;
+        timeline.closedByServer = true;
+        serverCloses.increment();
+
+        Map<String, Object> content = new LinkedHashMap<>();
+        if (window.questionIndex != null) {
+            content.put("questionIndex", window.questionIndex);
+        }
+        content.put("closedBy", "server");
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", GameMessageIds.TIME_UP);
+        data.put("type", "message");
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("channel", "/service/player");
+        message.put("data", data);
+        try {
+            data.put("content", objectMapper.writeValueAsString(content));
+            byte[] frame = broadcaster.encode(message);
+            // The same path a host TIME_UP takes, so resume, late joiners and the answer digest see it too
+            Map<String, String> seqHeaders = playerResumeService.recordBroadcast(gamePin, frame);
+            broadcaster.send("/topic/player/" + gamePin, frame, seqHeaders, OutboundPriority.URGENT);
+            // NORMAL like the host's other game-flow frames; it is sent after the answers already queued for the host either way
+            broadcaster.send("/topic/host/" + gamePin, frame, OutboundPriority.NORMAL);
+            lastValueCache.record(gamePin, GameMessageIds.TIME_UP, frame, seqHeaders);
+            answerDigestService.onHostBroadcast(gamePin, GameMessageIds.TIME_UP);
+            log.debug("Session {}: answer window for question {} closed by the server.", gamePin, window.questionIndex);
+        } catch (IOException e) {
+            log.error("Session {}: failed to send TIME_UP for question {}: {}", gamePin, window.questionIndex, e.getMessage());
+        }
+    }
+
+    // data.content is itself a JSON string, e.g. {"questionIndex":3,"time":20000,...}
+    private JsonNode readContent(byte[] frame) {
+        try {
+            JsonNode content = objectMapper.readTree(frame).path("data").path("content");
+            return content.isTextual() ? objectMapper.readTree(content.asText()) : content;
+        } catch (IOException e) {
+            return objectMapper.missingNode();
+        }
+    }
+
+    private static long readTimeLimitMs(JsonNode content) {
+        for (String field : new String[]{"time", "timeLimit", "timeAvailable"}) {
+            JsonNode value = content.path(field);
+            if (value.isNumber() && value.asLong() > 0) {
+                return value.asLong();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void participantRemoved(String gamePin, String sessionId) {
+        if (sessionManager.getSession(gamePin) == null) {
+            evict(gamePin);
+        }
+    }
+
+    @Override
+    public void sessionEvicted(String gamePin, GameSessionManager.EvictionReason reason) {
+        evict(gamePin);
+    }
+
+    private void evict(String gamePin) {
+        Timeline timeline = timelines.remove(gamePin);
+        if (timeline != null && timeline.window != null && timeline.window.closeTask != null) {
+            timeline.window.closeTask.cancel(false);
+        }
+    }
+
+    // Written on the game's lane only; read by finalization through the concurrent answer maps
+    private static final class Timeline {
+        private volatile Window window;
+        private volatile boolean closedByServer;
+        // <question index, <player ID, measurement>>
+        private final Map<Integer, Map<String, MeasuredAnswer>> answers = new ConcurrentHashMap<>();
+    }
+
+    private static final class Window {
+        private final Integer questionIndex; // Null if START_QUESTION did not name it
+        private final long openedAtNanos;
+        private final long openedAtEpochMs;
+        private volatile ScheduledFuture<?> closeTask;
+
+        Window(Integer questionIndex, long openedAtNanos, long openedAtEpochMs) {
+            this.questionIndex = questionIndex;
+            this.openedAtNanos = openedAtNanos;
+            this.openedAtEpochMs = openedAtEpochMs;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the real-time path, exposed under /actuator/metrics.
+ * <p>
+ * Per route: frames relayed and their payload sizes. Per sender role: inbound payload sizes and the time
+ * relayGameAction spends on a message. Plus open WebSocket connections and the queue depth of the inbound,
+ * outbound and broker channels. All meters are registered up front, so recording is a map lookup at most.
+ */
+@Component
+public class RelayMetrics {
+
+    public enum Route {
+        HOST_BROADCAST, // Host -> /topic/player/{pin}
+        PLAYER_TO_HOST, // Player -> /topic/host/{pin}
+        ANSWER_DIGEST, // Player answer absorbed into the host's answer digest
+        REVEAL_ANSWER, // Host -> one player, msgId 8
+        REVEAL_RANKING; // Host -> one player, msgId 13
+
+        public static Route ofPrivate(int messageId) {
+            return messageId == GameMessageIds.REVEAL_RANKING ? REVEAL_RANKING : REVEAL_ANSWER;
+        }
+
+        private String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final Map<Route, Counter> frameCounters = new EnumMap<>(Route.class);
+    private final Map<Route, DistributionSummary> frameSizes = new EnumMap<>(Route.class);
+    private final DistributionSummary hostInboundSize;
+    private final DistributionSummary playerInboundSize;
+    private final Timer hostRelayTimer;
+    private final Timer playerRelayTimer;
+    private final Counter relayFailures;
+    private final Counter hostsJoined;
+    private final Counter playersJoined;
+    // WebSocket session IDs with a STOMP connection; a set, so a repeated disconnect event is not counted twice
+    private final Set<String> openConnections = ConcurrentHashMap.newKeySet();
+
+    public RelayMetrics(MeterRegistry meterRegistry,
+                        InboundLaneExecutor inboundLaneExecutor,
+                        OutboundPriorityExecutor outboundPriorityExecutor,
+                        @Qualifier("brokerChannelExecutor") Executor brokerExecutor) {
+        for (Route route : Route.values()) {
+            frameCounters.put(route, Counter.builder("websocket.relay.frames")
+                    .description("Frames relayed by /app/controller/{gamepin}")
+                    .tag("route", route.tag())
+                    .register(meterRegistry));
+            frameSizes.put(route, DistributionSummary.builder("websocket.relay.frame.size")
+                    .description("Payload size of relayed frames")
+                    .baseUnit("bytes")
+                    .tag("route", route.tag())
+                    .publishPercentiles(PERCENTILES)
+                    .register(meterRegistry));
+        }
+        this.hostInboundSize = inboundSize(meterRegistry, "host");
+        this.playerInboundSize = inboundSize(meterRegistry, "player");
+        this.hostRelayTimer = relayTimer(meterRegistry, "host");
+        this.playerRelayTimer = relayTimer(meterRegistry, "player");
+        this.relayFailures = Counter.builder("websocket.relay.failures")
+                .description("Inbound controller messages that could not be parsed or relayed")
+                .register(meterRegistry);
+        this.hostsJoined = joinedCounter(meterRegistry, "host");
+        this.playersJoined = joinedCounter(meterRegistry, "player");
+
+        Gauge.builder("websocket.connections.active", openConnections, Set::size)
+                .description("Open STOMP connections on this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.channel.queue.depth", inboundLaneExecutor, InboundLaneExecutor::queuedTasks)
+                .description("Messages waiting for a thread of a message channel")
+                .tag("channel", "inbound")
+                .register(meterRegistry);
+        Gauge.builder("websocket.channel.queue.depth", outboundPriorityExecutor, OutboundPriorityExecutor::queuedTasks)
+                .description("Messages waiting for a thread of a message channel")
+                .tag("channel", "outbound")
+                .register(meterRegistry);
+        Gauge.builder("websocket.channel.queue.depth", brokerExecutor, RelayMetrics::queueDepth)
+                .description("Messages waiting for a thread of a message channel")
+                .tag("channel", "broker")
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary inboundSize(MeterRegistry meterRegistry, String sender) {
+        return DistributionSummary.builder("websocket.relay.inbound.size")
+                .description("Payload size of messages received on /app/controller/{gamepin}")
+                .baseUnit("bytes")
+                .tag("sender", sender)
+                .publishPercentiles(PERCENTILES)
+                .register(meterRegistry);
+    }
+
+    private static Timer relayTimer(MeterRegistry meterRegistry, String sender) {
+        return Timer.builder("websocket.relay.processing")
+                .description("Time from receiving a controller message to handing its last frame to the broker")
+                .tag("sender", sender)
+                .publishPercentiles(PERCENTILES)
+                .register(meterRegistry);
+    }
+
+    private static Counter joinedCounter(MeterRegistry meterRegistry, String role) {
+        return Counter.builder("websocket.participants.joined")
+                .description("Sessions that joined a game by subscribing to its topic")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    // The broker channel has no executor unless one is configured; it then sends on the caller's thread
+    private static double queueDepth(Executor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor taskExecutor) {
+            return taskExecutor.getQueueSize();
+        }
+        if (executor instanceof ThreadPoolExecutor threadPoolExecutor) {
+            return threadPoolExecutor.getQueue().size();
+        }
+        return 0;
+    }
+
+    public void recordInbound(boolean fromHost, int payloadBytes) {
+        (fromHost ? hostInboundSize : playerInboundSize).record(payloadBytes);
+    }
+
+    public void recordFrame(Route route, int payloadBytes) {
+        frameCounters.get(route).increment();
+        frameSizes.get(route).record(payloadBytes);
+    }
+
+    public void recordRelay(boolean fromHost, long startNanos) {
+        (fromHost ? hostRelayTimer : playerRelayTimer).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailure() {
+        relayFailures.increment();
+    }
+
+    public void participantJoined(boolean host) {
+        (host ? hostsJoined : playersJoined).increment();
+    }
+
+    public void connectionOpened(String sessionId) {
+        openConnections.add(sessionId);
+    }
+
+    public void connectionClosed(String sessionId) {
+        openConnections.remove(sessionId);
+    }
+}
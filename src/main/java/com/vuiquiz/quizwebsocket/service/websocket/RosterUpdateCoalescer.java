@@ -0,0 +1,213 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces roster changes per game.
+ * <p>
+ * Instead of one PARTICIPANT_JOINED/PARTICIPANT_LEFT frame per subscribe or disconnect, changes of a game
+ * are collected for {@code app.websocket.roster.debounce-ms} and sent as one ROSTER_DELTA frame listing
+ * the joined and left player session IDs, the roster {@code version} after it and the {@code fromVersion} the
+ * previous delta of the game ended at. The version also moves on changes that cancel out within a window and
+ * send nothing, so a client holding version {@code v} can apply any delta with {@code fromVersion <= v}; a
+ * higher fromVersion means it missed a delta. Hosts that lost track can ask for a full ROSTER_SNAPSHOT at any
+ * time. The host is not a roster member: its join only updates {@code hostId}. For a subscriber that is behind, {@link SlowConsumerPolicy} merges parked deltas
+ * with {@link #mergeDeltas} rather than dropping all but the newest.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RosterUpdateCoalescer implements GameSessionManager.SessionChangeListener {
+
+    public static final String ROSTER_DELTA = "ROSTER_DELTA";
+    public static final String ROSTER_SNAPSHOT = "ROSTER_SNAPSHOT";
+
+    private final GameSessionManager sessionManager;
+    private final GameMessageBroadcaster broadcaster;
+    private final WebSocketProperties properties;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // <GamePin, changes not flushed yet>
+    private final Map<String, PendingDelta> pendingDeltas = new ConcurrentHashMap<>();
+    // <GamePin, roster version the last sent delta ended at>; written by the flush thread only
+    private final Map<String, Long> sentVersions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "roster-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void register() {
+        slowConsumerPolicy.addMerger(SlowConsumerPolicy.ROSTER, this::mergeDeltas);
+        sessionManager.addChangeListener(this);
+    }
+
+    public void participantJoined(String gamePin, String sessionId) {
+        GameSessionManager.SessionInfo session = sessionManager.getSession(gamePin);
+        if (session != null && session.isHost(sessionId)) {
+            pendingDeltas.compute(gamePin, (pin, delta) -> {
+                delta = delta != null ? delta : schedule(pin);
+                delta.hostChanged = true;
+                return delta;
+            });
+            return;
+        }
+        record(gamePin, sessionId, true);
+    }
+
+    public void participantLeft(String gamePin, String sessionId) {
+        record(gamePin, sessionId, false);
+    }
+
+    /**
+     * Builds the full roster of a game, for hosts that want to resynchronise.
+     * @param gamePin The game pin.
+     * @return The encoded ROSTER_SNAPSHOT frame, or null if the game does not exist.
+     */
+    public byte[] buildSnapshot(String gamePin) throws JsonProcessingException {
+        GameSessionManager.SessionInfo session = sessionManager.getSession(gamePin);
+        if (session == null) {
+            return null;
+        }
+        PlayerRoster.Snapshot roster = session.getRosterSnapshot();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", ROSTER_SNAPSHOT);
+        payload.put("version", roster.version());
+        payload.put("playerCount", roster.size());
+        payload.put("hostId", Objects.toString(session.getHostSessionId(), ""));
+        payload.put("playerIds", roster.sessionIds());
+        return broadcaster.encode(payload);
+    }
+
+    /**
+     * Combines two ROSTER_DELTA frames into one with the effect of both: the older one's fromVersion, the newer
+     * one's version and counts, and joins and leaves of the same session across them cancelled out.
+     */
+    byte[] mergeDeltas(byte[] older, byte[] newer) throws IOException {
+        JsonNode olderDelta = objectMapper.readTree(older);
+        ObjectNode merged = (ObjectNode) objectMapper.readTree(newer);
+        if (olderDelta.has("fromVersion")) {
+            merged.set("fromVersion", olderDelta.get("fromVersion"));
+        }
+        PendingDelta delta = new PendingDelta();
+        olderDelta.path("joined").forEach(id -> delta.record(id.asText(), true));
+        olderDelta.path("left").forEach(id -> delta.record(id.asText(), false));
+        merged.path("joined").forEach(id -> delta.record(id.asText(), true));
+        merged.path("left").forEach(id -> delta.record(id.asText(), false));
+        merged.set("joined", objectMapper.valueToTree(delta.joined));
+        merged.set("left", objectMapper.valueToTree(delta.left));
+        return objectMapper.writeValueAsBytes(merged);
+    }
+
+    private void record(String gamePin, String sessionId, boolean joined) {
+        pendingDeltas.compute(gamePin, (pin, delta) -> {
+            delta = delta != null ? delta : schedule(pin);
+            delta.record(sessionId, joined);
+            return delta;
+        });
+    }
+
+    // Called inside pendingDeltas.compute(...) for a game without pending changes
+    private PendingDelta schedule(String gamePin) {
+        flushScheduler.schedule(() -> flush(gamePin), properties.getRoster().getDebounceMs(), TimeUnit.MILLISECONDS);
+        return new PendingDelta();
+    }
+
+    @Override
+    public void sessionEvicted(String gamePin, GameSessionManager.EvictionReason reason) {
+        flushScheduler.execute(() -> sentVersions.remove(gamePin));
+    }
+
+    private void flush(String gamePin) {
+        PendingDelta delta = pendingDeltas.remove(gamePin);
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        GameSessionManager.SessionInfo session = sessionManager.getSession(gamePin);
+        if (session == null) {
+            log.debug("Dropping roster delta for already removed session {}", gamePin);
+            sentVersions.remove(gamePin);
+            return;
+        }
+
+        long version = session.getRosterSnapshot().version();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", ROSTER_DELTA);
+        payload.put("fromVersion", sentVersions.getOrDefault(gamePin, 0L));
+        payload.put("version", version);
+        payload.put("playerCount", session.getPlayerCount());
+        payload.put("hostId", Objects.toString(session.getHostSessionId(), ""));
+        payload.put("joined", delta.joined);
+        payload.put("left", delta.left);
+
+        try {
+            // Encoded once and shared by the player and host topics
+            byte[] jsonPayload = broadcaster.encode(payload);
+
+            String playerTopic = "/topic/player/" + gamePin;
+            log.debug("Sending roster delta on {} ({} bytes)", playerTopic, jsonPayload.length);
+            broadcaster.sendSupersedable(playerTopic, jsonPayload, SlowConsumerPolicy.ROSTER);
+
+            if (session.getHostSessionId() != null) {
+                String hostTopic = "/topic/host/" + gamePin;
+                broadcaster.sendSupersedable(hostTopic, jsonPayload, SlowConsumerPolicy.ROSTER);
+            }
+            sentVersions.put(gamePin, version);
+            log.info("Session {}: roster delta sent ({} joined, {} left, {} players).",
+                    gamePin, delta.joined.size(), delta.left.size(), session.getPlayerCount());
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize roster delta for session {}: {}", gamePin, e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to send roster delta for session {}: {}", gamePin, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdownNow();
+    }
+
+    // Only touched inside pendingDeltas.compute(...) or after being removed from the map, so no extra locking.
+    private static final class PendingDelta {
+        private final Set<String> joined = new LinkedHashSet<>();
+        private final Set<String> left = new LinkedHashSet<>();
+        private boolean hostChanged;
+
+        // A join and a leave of the same session within one window cancel out
+        void record(String sessionId, boolean isJoin) {
+            if (isJoin) {
+                if (!left.remove(sessionId)) {
+                    joined.add(sessionId);
+                }
+            } else if (!joined.remove(sessionId)) {
+                left.add(sessionId);
+            }
+        }
+
+        boolean isEmpty() {
+            return joined.isEmpty() && left.isEmpty() && !hostChanged;
+        }
+    }
+}
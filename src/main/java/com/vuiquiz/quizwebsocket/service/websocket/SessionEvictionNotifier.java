@@ -0,0 +1,45 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tells whoever is still subscribed to a game that the reaper removed it, so clients stop waiting for frames
+ * that will never come and can return to the lobby.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SessionEvictionNotifier implements GameSessionManager.SessionChangeListener {
+
+    public static final String SESSION_CLOSED = "SESSION_CLOSED";
+
+    private final GameSessionManager sessionManager;
+    private final GameMessageBroadcaster broadcaster;
+
+    @PostConstruct
+    void register() {
+        sessionManager.addChangeListener(this);
+    }
+
+    @Override
+    public void sessionEvicted(String gamePin, GameSessionManager.EvictionReason reason) {
+        if (reason == GameSessionManager.EvictionReason.PLACEHOLDER_EXPIRED) {
+            return; // Nobody ever subscribed
+        }
+        if (reason == GameSessionManager.EvictionReason.PIN_CONFLICT) {
+            return; // The game topics now belong to the other node's game
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", SESSION_CLOSED);
+        payload.put("gamePin", gamePin);
+        payload.put("reason", reason.name());
+        broadcaster.sendJson(payload, "/topic/player/" + gamePin, "/topic/host/" + gamePin);
+        log.debug("Sent {} ({}) to the remaining subscribers of session {}", SESSION_CLOSED, reason, gamePin);
+    }
+}
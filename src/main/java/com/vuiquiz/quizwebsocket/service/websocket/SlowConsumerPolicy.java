@@ -0,0 +1,273 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one slow connection from piling up frames on the server.
+ * <p>
+ * For every WebSocket session it counts MESSAGE frames handed to the session on the clientOutboundChannel and
+ * frames actually written to the socket; the difference is the session's backlog, i.e. what sits in Spring's
+ * per-session send buffer. Once the backlog reaches {@code conflate-after-frames}, supersedable frames (those
+ * sent with a {@link #CONFLATION_KEY_HEADER}, e.g. roster deltas, answer digests, rankings) are parked instead,
+ * keeping only the newest per key, and sent when the backlog has drained. Keys whose frames are increments
+ * rather than full states, such as roster deltas, register a {@link FrameMerger}: their parked frames are
+ * combined with each newer one instead of being replaced by it. A session whose backlog reaches
+ * {@code max-backlog-frames} is closed with SESSION_NOT_RELIABLE; a player can then resume on a new socket.
+ * <p>
+ * Registered as an interceptor of the clientOutboundChannel and as a decorator of the WebSocket handler, see
+ * WebSocketConfig, which also applies Spring's own send time and buffer size limits.
+ */
+@Component
+@Slf4j
+public class SlowConsumerPolicy implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    public static final String CONFLATION_KEY_HEADER = "conflationKey";
+
+    public static final String ROSTER = "roster";
+    public static final String ANSWER_DIGEST = "answer-digest";
+    public static final String RANKING = "ranking";
+
+    private final WebSocketProperties.SlowConsumer settings;
+    // <WebSocket session ID, backlog state>
+    private final Map<String, SessionBacklog> sessions = new ConcurrentHashMap<>();
+    // <Conflation key, merger>; parked frames of other keys are replaced by the newest one
+    private final Map<String, FrameMerger> mergers = new ConcurrentHashMap<>();
+
+    private final Counter parkedFrames;
+    private final Counter conflatedFrames;
+    private final Counter backlogCutoffs;
+    private final Counter transportCutoffs;
+
+    public SlowConsumerPolicy(WebSocketProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getSlowConsumer();
+        this.parkedFrames = Counter.builder("websocket.outbound.slow.parked")
+                .description("Supersedable frames held back because their session was behind")
+                .register(meterRegistry);
+        this.conflatedFrames = Counter.builder("websocket.outbound.slow.conflated")
+                .description("Held-back frames dropped because a newer frame with the same key replaced them")
+                .register(meterRegistry);
+        this.backlogCutoffs = Counter.builder("websocket.outbound.slow.cutoff")
+                .description("Sessions closed for falling too far behind")
+                .tag("reason", "backlog")
+                .register(meterRegistry);
+        this.transportCutoffs = Counter.builder("websocket.outbound.slow.cutoff")
+                .description("Sessions closed for falling too far behind")
+                .tag("reason", "send-limit")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.slow.sessions", this, SlowConsumerPolicy::countSlowSessions)
+                .description("Sessions whose backlog is at or above the conflation threshold")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Combines the payloads of two frames with the same conflation key into one that has the effect of both.
+     */
+    @FunctionalInterface
+    public interface FrameMerger {
+        /**
+         * @param older The payload of the parked frame.
+         * @param newer The payload of the frame sent after it.
+         * @return The payload to park in their place; it is sent with the headers of the newer frame.
+         */
+        byte[] merge(byte[] older, byte[] newer) throws IOException;
+    }
+
+    /**
+     * Makes parked frames of a conflation key accumulate instead of being replaced by the newest one.
+     */
+    public void addMerger(String conflationKey, FrameMerger merger) {
+        mergers.put(conflationKey, merger);
+    }
+
+    /**
+     * @return The conflation key of a relayed frame, or null if every such frame must be delivered.
+     */
+    public static String conflationKeyOf(int messageId) {
+        return messageId == GameMessageIds.REVEAL_RANKING ? RANKING : null;
+    }
+
+    // --- WebSocket handler decorator: sees the sessions and every frame written ---
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (!settings.isEnabled()) {
+                    super.afterConnectionEstablished(session);
+                    return;
+                }
+                SessionBacklog backlog = new SessionBacklog(session);
+                sessions.put(session.getId(), backlog);
+                super.afterConnectionEstablished(new CountingSession(session, backlog));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SessionBacklog backlog = sessions.remove(session.getId());
+                if (backlog != null && !backlog.cutOff && CloseStatus.SESSION_NOT_RELIABLE.equals(closeStatus)) {
+                    transportCutoffs.increment(); // Spring's send time or buffer size limit was hit
+                    log.info("Session {} was closed by the send limits with a backlog of {} frames.", session.getId(), backlog.backlog());
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    // --- clientOutboundChannel interceptor: decides per frame before it reaches the session ---
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionBacklog backlog = sessionId != null ? sessions.get(sessionId) : null;
+        if (backlog == null || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        long pending = backlog.backlog();
+        if (pending >= settings.getMaxBacklogFrames()) {
+            cutOff(backlog, pending);
+            return null;
+        }
+        Object key = message.getHeaders().get(CONFLATION_KEY_HEADER);
+        if (key != null && pending >= settings.getConflateAfterFrames()) {
+            synchronized (backlog) {
+                backlog.channel = channel;
+                Message<?> parked = backlog.parked.get(key.toString());
+                if (parked != null) {
+                    conflatedFrames.increment();
+                    message = merge(key.toString(), parked, message);
+                } else {
+                    parkedFrames.increment();
+                }
+                backlog.parked.put(key.toString(), message);
+            }
+            return null;
+        }
+        backlog.handed.incrementAndGet();
+        return message;
+    }
+
+    private Message<?> merge(String key, Message<?> older, Message<?> newer) {
+        FrameMerger merger = mergers.get(key);
+        if (merger == null || !(older.getPayload() instanceof byte[] olderPayload) || !(newer.getPayload() instanceof byte[] newerPayload)) {
+            return newer;
+        }
+        try {
+            return MessageBuilder.createMessage(merger.merge(olderPayload, newerPayload), newer.getHeaders());
+        } catch (IOException e) {
+            log.error("Failed to merge parked {} frames; keeping only the newest: {}", key, e.getMessage());
+            return newer;
+        }
+    }
+
+    private void cutOff(SessionBacklog backlog, long pending) {
+        synchronized (backlog) {
+            if (backlog.cutOff) {
+                return;
+            }
+            backlog.cutOff = true;
+        }
+        backlogCutoffs.increment();
+        log.warn("Closing session {}: {} frames behind (limit {}).", backlog.session.getId(), pending, settings.getMaxBacklogFrames());
+        try {
+            backlog.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("Failed to close slow session {}: {}", backlog.session.getId(), e.getMessage());
+        }
+    }
+
+    // Sends the parked frame of each key once the session has caught up
+    private void releaseParked(SessionBacklog backlog) {
+        List<Message<?>> released;
+        MessageChannel channel;
+        synchronized (backlog) {
+            if (backlog.parked.isEmpty() || backlog.backlog() >= settings.getConflateAfterFrames()) {
+                return;
+            }
+            released = new ArrayList<>(backlog.parked.values());
+            backlog.parked.clear();
+            channel = backlog.channel;
+        }
+        released.forEach(channel::send);
+    }
+
+    private long countSlowSessions() {
+        return sessions.values().stream().filter(backlog -> backlog.backlog() >= settings.getConflateAfterFrames()).count();
+    }
+
+    private static boolean isMessageFrame(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return text.getPayload().startsWith("MESSAGE");
+        }
+        if (message instanceof BinaryMessage binary) {
+            return binary.getPayloadLength() > 0 && binary.getPayload().get(0) == 'M';
+        }
+        return false;
+    }
+
+    private static final class SessionBacklog {
+        private final WebSocketSession session;
+        private final AtomicLong handed = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+        // Guarded by the backlog
+        private final Map<String, Message<?>> parked = new LinkedHashMap<>();
+        private MessageChannel channel;
+        private boolean cutOff;
+
+        SessionBacklog(WebSocketSession session) {
+            this.session = session;
+        }
+
+        long backlog() {
+            return Math.max(0, handed.get() - written.get());
+        }
+    }
+
+    // Below Spring's ConcurrentWebSocketSessionDecorator, so it sees frames when they reach the socket
+    private final class CountingSession extends WebSocketSessionDecorator {
+        private final SessionBacklog backlog;
+
+        CountingSession(WebSocketSession delegate, SessionBacklog backlog) {
+            super(delegate);
+            this.backlog = backlog;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            super.sendMessage(message);
+            if (isMessageFrame(message)) {
+                backlog.written.incrementAndGet();
+                releaseParked(backlog);
+            }
+        }
+    }
+}
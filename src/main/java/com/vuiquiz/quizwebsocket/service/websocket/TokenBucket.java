@@ -0,0 +1,50 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: the whole state is one "theoretical arrival time" moved forward by a
+ * single CAS per accepted frame. Accepts {@code burst} frames at once and {@code ratePerSecond} frames on average.
+ */
+final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalNanos;
+    private final AtomicBoolean throttled = new AtomicBoolean(false);
+
+    TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        this.emissionIntervalNanos = Math.max(1L, (long) (1_000_000_000L / ratePerSecond));
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, burst - 1);
+        this.theoreticalArrivalNanos = new AtomicLong(nowNanos);
+    }
+
+    boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrivalNanos.get();
+            long base = Math.max(arrival, nowNanos);
+            if (base - nowNanos > burstToleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(arrival, base + emissionIntervalNanos)) {
+                if (throttled.get()) {
+                    throttled.set(false);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true only for the first rejection since the bucket last accepted a frame.
+     */
+    boolean markThrottled() {
+        return !throttled.getAndSet(true);
+    }
+
+    // A fully refilled bucket carries no state and can be dropped; a new one behaves the same
+    boolean isFull(long nowNanos) {
+        return theoreticalArrivalNanos.get() <= nowNanos;
+    }
+}
@@ -0,0 +1,156 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last-value cache for /topic/player/{pin}: the latest host broadcast per {@code data.id} of every game.
+ * <p>
+ * A player that subscribes after the game started (late join, or a reconnect without a resume token) gets the
+ * cached frames right away, oldest first, so it ends up in the state the others are in instead of waiting for
+ * the host's next broadcast. The frames go straight to the subscriber's connection on the clientOutboundChannel,
+ * tagged with its subscription ID and a {@code last-value} header; other subscribers see nothing.
+ * <p>
+ * Memory is bounded per game by {@code max-types-per-game} frames of at most {@code max-frame-bytes} each.
+ * PLAY_AGAIN and RESET_CONTROLLER start over, and a game's entry is dropped when the game is removed.
+ */
+@Component
+@Slf4j
+public class TopicLastValueCache implements GameSessionManager.SessionChangeListener {
+
+    public static final String LAST_VALUE_HEADER = "last-value";
+
+    private final GameSessionManager sessionManager;
+    private final WebSocketProperties.LastValue settings;
+    private final MessageChannel clientOutboundChannel;
+    // <GamePin, latest frame per message ID>
+    private final Map<String, GameFrames> games = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    public TopicLastValueCache(GameSessionManager sessionManager,
+                               WebSocketProperties properties,
+                               @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                               MeterRegistry meterRegistry) {
+        this.sessionManager = sessionManager;
+        this.settings = properties.getLastValue();
+        this.clientOutboundChannel = clientOutboundChannel;
+        Gauge.builder("websocket.lastvalue.bytes", cachedBytes, AtomicLong::get)
+                .description("Payload bytes held by the last-value cache of the player topics")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void register() {
+        sessionManager.addChangeListener(this);
+    }
+
+    /**
+     * Keeps a host broadcast as the latest frame of its message ID.
+     * @param seqHeaders The headers it was sent with, see {@link PlayerResumeService#recordBroadcast}.
+     */
+    public void record(String gamePin, int messageId, byte[] payload, Map<String, String> seqHeaders) {
+        if (!settings.isEnabled() || payload.length > settings.getMaxFrameBytes()) {
+            return;
+        }
+        if (sessionManager.getSession(gamePin) == null) {
+            return; // Removed meanwhile; don't resurrect its entry
+        }
+        GameFrames frames = games.computeIfAbsent(gamePin, pin -> new GameFrames());
+        synchronized (frames) {
+            if (messageId == GameMessageIds.PLAY_AGAIN || messageId == GameMessageIds.RESET_CONTROLLER) {
+                frames.clear(cachedBytes);
+            }
+            CachedFrame previous = frames.byMessageId.get(messageId);
+            if (previous == null && frames.byMessageId.size() >= settings.getMaxTypesPerGame()) {
+                return; // Unknown IDs beyond the bound are not worth evicting known ones
+            }
+            frames.byMessageId.put(messageId, new CachedFrame(frames.nextOrder++, payload, seqHeaders));
+            cachedBytes.addAndGet(payload.length - (previous != null ? previous.payload.length : 0));
+        }
+    }
+
+    /**
+     * Sends the cached frames of a game to one new subscription of its player topic, oldest first.
+     * @return The number of frames sent.
+     */
+    public int replayTo(String gamePin, String sessionId, String subscriptionId) {
+        GameFrames frames = games.get(gamePin);
+        if (frames == null || subscriptionId == null) {
+            return 0;
+        }
+        List<CachedFrame> snapshot;
+        synchronized (frames) {
+            snapshot = new ArrayList<>(frames.byMessageId.values());
+        }
+        snapshot.sort(Comparator.comparingLong(CachedFrame::order));
+        String destination = "/topic/player/" + gamePin;
+        for (CachedFrame frame : snapshot) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(sessionId);
+            accessor.setSubscriptionId(subscriptionId);
+            accessor.setDestination(destination);
+            accessor.setContentType(GameMessageBroadcaster.TEXT_UTF8);
+            accessor.setHeader(OutboundPriority.HEADER, OutboundPriority.URGENT); // The player is behind already
+            frame.seqHeaders.forEach(accessor::setNativeHeader);
+            accessor.setNativeHeader(LAST_VALUE_HEADER, "true");
+            clientOutboundChannel.send(MessageBuilder.createMessage(frame.payload, accessor.getMessageHeaders()));
+        }
+        return snapshot.size();
+    }
+
+    @Override
+    public void participantRemoved(String gamePin, String sessionId) {
+        if (sessionManager.getSession(gamePin) == null) {
+            evict(gamePin);
+        }
+    }
+
+    @Override
+    public void sessionEvicted(String gamePin, GameSessionManager.EvictionReason reason) {
+        evict(gamePin);
+    }
+
+    private void evict(String gamePin) {
+        GameFrames frames = games.remove(gamePin);
+        if (frames != null) {
+            synchronized (frames) {
+                frames.clear(cachedBytes);
+            }
+            log.debug("Session {}: last-value cache dropped.", gamePin);
+        }
+    }
+
+    private record CachedFrame(long order, byte[] payload, Map<String, String> seqHeaders) {
+    }
+
+    // Guarded by itself
+    private static final class GameFrames {
+        private final Map<Integer, CachedFrame> byMessageId = new HashMap<>();
+        private long nextOrder;
+
+        void clear(AtomicLong cachedBytes) {
+            for (CachedFrame frame : byMessageId.values()) {
+                cachedBytes.addAndGet(-frame.payload.length);
+            }
+            byMessageId.clear();
+        }
+    }
+}
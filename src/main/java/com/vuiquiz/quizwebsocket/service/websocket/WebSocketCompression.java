@@ -0,0 +1,284 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.server.HandshakeFailureException;
+import org.springframework.web.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.socket.server.standard.TomcatRequestUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * permessage-deflate for /ws-quiz: whether it is negotiated, and what it would save and cost per game.
+ * <p>
+ * Tomcat accepts permessage-deflate whenever a client offers it, which every browser does, and then deflates
+ * every frame of the connection. The handshake handler rewrites the client's offer before Tomcat sees it: it
+ * is dropped unless {@code enabled}, and with {@code server-no-context-takeover} the server resets its
+ * compressor per frame, so an idle player costs no deflate window between questions.
+ * <p>
+ * With {@code measure} every outgoing STOMP frame is also deflated here, without context takeover, and the
+ * raw and deflated bytes and the time taken are recorded per game; frames below {@code min-frame-bytes} are
+ * counted separately, as they would be sent uncompressed by a per-frame threshold. The totals are logged when
+ * a game ends and exported as websocket.compression.* meters. Measuring works whether or not compression is
+ * negotiated, so the trade-off can be judged before it is switched on.
+ */
+@Component
+@Slf4j
+public class WebSocketCompression implements WebSocketHandlerDecoratorFactory, GameSessionManager.SessionChangeListener {
+
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    private final WebSocketProperties.Compression settings;
+    private final GameSessionManager sessionManager;
+    // <GamePin, measured totals>
+    private final Map<String, GameStats> games = new ConcurrentHashMap<>();
+    // Same level Tomcat uses; Deflater holds native memory, so one per sender thread instead of one per session
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final Counter rawBytes;
+    private final Counter deflatedBytes;
+    private final Counter smallFrames;
+    private final Timer deflateTime;
+
+    public WebSocketCompression(WebSocketProperties properties, GameSessionManager sessionManager, MeterRegistry meterRegistry) {
+        this.settings = properties.getCompression();
+        this.sessionManager = sessionManager;
+        this.rawBytes = Counter.builder("websocket.compression.measured.bytes")
+                .description("Outgoing frame bytes at or above the size threshold, before and after a trial deflate")
+                .baseUnit("bytes")
+                .tag("stage", "raw")
+                .register(meterRegistry);
+        this.deflatedBytes = Counter.builder("websocket.compression.measured.bytes")
+                .description("Outgoing frame bytes at or above the size threshold, before and after a trial deflate")
+                .baseUnit("bytes")
+                .tag("stage", "deflated")
+                .register(meterRegistry);
+        this.smallFrames = Counter.builder("websocket.compression.measured.small.frames")
+                .description("Outgoing frames below the size threshold, not worth deflating")
+                .register(meterRegistry);
+        this.deflateTime = Timer.builder("websocket.compression.measured.time")
+                .description("Time spent on the trial deflate of one outgoing frame")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void register() {
+        sessionManager.addChangeListener(this);
+    }
+
+    // --- Handshake: decides what Tomcat negotiates ---
+
+    /**
+     * @return The handshake handler for /ws-quiz, applying the compression settings to the client's offer.
+     */
+    public DefaultHandshakeHandler handshakeHandler() {
+        RequestUpgradeStrategy tomcat = new TomcatRequestUpgradeStrategy();
+        return new DefaultHandshakeHandler(new RequestUpgradeStrategy() {
+            @Override
+            public String[] getSupportedVersions() {
+                return tomcat.getSupportedVersions();
+            }
+
+            @Override
+            public List<WebSocketExtension> getSupportedExtensions(ServerHttpRequest request) {
+                return tomcat.getSupportedExtensions(request);
+            }
+
+            @Override
+            public void upgrade(ServerHttpRequest request, ServerHttpResponse response, String selectedProtocol,
+                                List<WebSocketExtension> selectedExtensions, Principal user, WebSocketHandler wsHandler,
+                                Map<String, Object> attributes) throws HandshakeFailureException {
+                if (request instanceof ServletServerHttpRequest servletRequest) {
+                    // Tomcat negotiates from the servlet request's header, not from Spring's selection
+                    request = new ServletServerHttpRequest(new ExtensionOfferRequest(servletRequest.getServletRequest()));
+                }
+                tomcat.upgrade(request, response, selectedProtocol, selectedExtensions, user, wsHandler, attributes);
+            }
+        });
+    }
+
+    // Rewrites one Sec-WebSocket-Extensions header value; null if nothing is left of it
+    private String rewriteOffer(String header) {
+        List<String> offers = new ArrayList<>();
+        for (String offer : header.split(",")) {
+            String trimmed = offer.trim();
+            if (!trimmed.regionMatches(true, 0, PERMESSAGE_DEFLATE, 0, PERMESSAGE_DEFLATE.length())) {
+                offers.add(trimmed);
+            } else if (settings.isEnabled()) {
+                boolean hasParam = trimmed.toLowerCase().contains(SERVER_NO_CONTEXT_TAKEOVER);
+                offers.add(settings.isServerNoContextTakeover() && !hasParam ? trimmed + "; " + SERVER_NO_CONTEXT_TAKEOVER : trimmed);
+            }
+        }
+        return offers.isEmpty() ? null : String.join(", ", offers);
+    }
+
+    private final class ExtensionOfferRequest extends HttpServletRequestWrapper {
+        ExtensionOfferRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            Enumeration<String> values = getHeaders(name);
+            return values.hasMoreElements() ? values.nextElement() : null;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            Enumeration<String> values = super.getHeaders(name);
+            if (!WebSocketHttpHeaders.SEC_WEBSOCKET_EXTENSIONS.equalsIgnoreCase(name) || values == null) {
+                return values;
+            }
+            List<String> rewritten = new ArrayList<>();
+            for (String value : Collections.list(values)) {
+                String offer = rewriteOffer(value);
+                if (offer != null) {
+                    rewritten.add(offer);
+                }
+            }
+            return Collections.enumeration(rewritten);
+        }
+    }
+
+    // --- Measurement: a trial deflate of every frame written ---
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(settings.isMeasure() ? new MeasuringSession(session) : session);
+            }
+        };
+    }
+
+    private void measure(String sessionId, WebSocketMessage<?> message) {
+        byte[] payload;
+        if (message instanceof TextMessage text) {
+            payload = text.getPayload().getBytes(StandardCharsets.UTF_8);
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer buffer = binary.getPayload().duplicate();
+            payload = new byte[buffer.remaining()];
+            buffer.get(payload);
+        } else {
+            return; // Ping and pong frames are never compressed
+        }
+        String gamePin = sessionManager.findGamePinBySessionId(sessionId);
+        GameStats stats = gamePin != null ? games.computeIfAbsent(gamePin, pin -> new GameStats()) : null;
+        if (payload.length < settings.getMinFrameBytes()) {
+            smallFrames.increment();
+            if (stats != null) {
+                stats.smallFrames.increment();
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        int deflated = deflatedLength(payload);
+        long nanos = System.nanoTime() - start;
+        rawBytes.increment(payload.length);
+        deflatedBytes.increment(deflated);
+        deflateTime.record(nanos, TimeUnit.NANOSECONDS);
+        if (stats != null) {
+            stats.frames.increment();
+            stats.rawBytes.add(payload.length);
+            stats.deflatedBytes.add(deflated);
+            stats.nanos.add(nanos);
+        }
+    }
+
+    private int deflatedLength(byte[] payload) {
+        Deflater deflater = deflaters.get();
+        byte[] buffer = scratch.get();
+        deflater.reset();
+        deflater.setInput(payload);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            length += deflater.deflate(buffer);
+        }
+        return length;
+    }
+
+    private final class MeasuringSession extends WebSocketSessionDecorator {
+        MeasuringSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            measure(getId(), message);
+            super.sendMessage(message);
+        }
+    }
+
+    // --- Per-game report ---
+
+    @Override
+    public void participantRemoved(String gamePin, String sessionId) {
+        if (sessionManager.getSession(gamePin) == null) {
+            report(gamePin);
+        }
+    }
+
+    @Override
+    public void sessionEvicted(String gamePin, GameSessionManager.EvictionReason reason) {
+        report(gamePin);
+    }
+
+    private void report(String gamePin) {
+        GameStats stats = games.remove(gamePin);
+        if (stats == null) {
+            return;
+        }
+        long raw = stats.rawBytes.sum();
+        long deflated = stats.deflatedBytes.sum();
+        log.info("Session {}: compression trial over {} frames >= {} bytes: {} -> {} bytes (ratio {}), {} ms deflating; {} smaller frames skipped.",
+                gamePin, stats.frames.sum(), settings.getMinFrameBytes(), raw, deflated,
+                raw > 0 ? String.format("%.2f", (double) deflated / raw) : "n/a",
+                String.format("%.1f", stats.nanos.sum() / 1e6), stats.smallFrames.sum());
+    }
+
+    private static final class GameStats {
+        private final LongAdder frames = new LongAdder();
+        private final LongAdder smallFrames = new LongAdder();
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder deflatedBytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
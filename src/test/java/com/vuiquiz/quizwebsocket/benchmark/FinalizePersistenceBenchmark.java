@@ -0,0 +1,298 @@
+package com.vuiquiz.quizwebsocket.benchmark;
+
+import com.vuiquiz.quizwebsocket.model.GameSlide;
+import com.vuiquiz.quizwebsocket.model.Player;
+import com.vuiquiz.quizwebsocket.model.PlayerAnswer;
+import com.vuiquiz.quizwebsocket.repository.GameResultBatchRepository;
+import com.vuiquiz.quizwebsocket.repository.GameSlideRepository;
+import com.vuiquiz.quizwebsocket.repository.PlayerAnswerRepository;
+import com.vuiquiz.quizwebsocket.repository.PlayerRepository;
+import com.vuiquiz.quizwebsocket.utils.DateTimeUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the players, slides and answers of one finished game, as session finalization does, against a real
+ * PostgreSQL database. {@code perRow} is the previous path (JPA save per slide, saveAll for players and answers,
+ * without JDBC batching), {@code batched} and {@code copy} are the INSERT batch and COPY paths of
+ * {@link GameResultBatchRepository}. Every invocation runs in a transaction that is rolled back, so the database
+ * is left as it was.
+ * <p>
+ * Before measuring, the same game is written through each path and read back through JPA; the trial fails
+ * unless all three stored identical rows.
+ * <p>
+ * Needs the application's schema (e.g. a database the dev profile has started against). Run with:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.vuiquiz.quizwebsocket.benchmark.FinalizePersistenceBenchmark
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/vui_quiz_db?reWriteBatchedInserts=true
+ * -Dspring.datasource.username=postgres -Dspring.datasource.password=password}
+ * or straight from the IDE via {@link #main(String[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-DlogLevel=info")
+@State(Scope.Benchmark)
+public class FinalizePersistenceBenchmark {
+
+    private static final String[] DATASOURCE_PROPERTIES = {
+            "spring.datasource.url", "spring.datasource.username", "spring.datasource.password"};
+
+    @Param({"50", "500"})
+    public int players;
+
+    @Param({"10", "40"})
+    public int slides;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+    private PlayerRepository playerRepository;
+    private GameSlideRepository gameSlideRepository;
+    private PlayerAnswerRepository playerAnswerRepository;
+    private GameResultBatchRepository batchRepository;
+    private EntityManager entityManager;
+
+    private List<Player> playerRows;
+    private List<GameSlide> slideRows;
+    private List<PlayerAnswer> answerRows;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(PersistenceOnly.class)
+                .web(WebApplicationType.NONE)
+                .profiles("dev")
+                .properties("spring.jpa.hibernate.ddl-auto=none")
+                .run();
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        playerRepository = context.getBean(PlayerRepository.class);
+        gameSlideRepository = context.getBean(GameSlideRepository.class);
+        playerAnswerRepository = context.getBean(PlayerAnswerRepository.class);
+        batchRepository = context.getBean(GameResultBatchRepository.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        verifyEquivalence();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    // Fresh entities every time: both paths assign IDs to what they are given
+    @Setup(Level.Invocation)
+    public void buildGame() {
+        UUID sessionId = UUID.randomUUID();
+        OffsetDateTime now = DateTimeUtil.fromMillis(System.currentTimeMillis()); // Millisecond precision survives every path
+        playerRows = new ArrayList<>(players);
+        for (int p = 0; p < players; p++) {
+            Player player = new Player();
+            player.setSessionId(sessionId);
+            player.setClientId("client-" + p);
+            player.setNickname(p % 5 == 0 ? "Ng\u1ecdc \"Nina\", #" + p : "Player " + p); // Quotes, commas and non-ASCII must survive COPY
+            player.setAvatarId(p % 3 == 0 ? UUID.nameUUIDFromBytes(new byte[]{(byte) p}) : null);
+            player.setStatus("FINISHED");
+            player.setJoinedAt(now);
+            player.setLastActivityAt(now);
+            player.setRank(p + 1);
+            player.setTotalScore(1000 * slides - p);
+            player.setAnswerCount(slides);
+            player.setTotalTime(4_000L * slides);
+            player.setAverageTime(4_000);
+            player.setDeviceInfoJson("{\"device\":\"benchmark\"}");
+            playerRows.add(player);
+        }
+        slideRows = new ArrayList<>(slides);
+        for (int s = 0; s < slides; s++) {
+            GameSlide slide = new GameSlide();
+            slide.setSessionId(sessionId);
+            slide.setSlideIndex(s);
+            slide.setSlideType("QUESTION_SLIDE");
+            slide.setStatus("ENDED");
+            slide.setStartedAt(now);
+            slide.setEndedAt(now);
+            slide.setQuestionDistributionJson("[{\"choice\":0,\"count\":" + players / 2 + "},{\"choice\":1,\"count\":" + players / 2 + "}]");
+            slideRows.add(slide);
+        }
+        answerRows = new ArrayList<>(players * slides);
+        for (int s = 0; s < slides; s++) {
+            for (int p = 0; p < players; p++) {
+                PlayerAnswer answer = new PlayerAnswer();
+                answer.setChoice(p % 9 == 0 ? null : p % 2 == 0 ? Integer.toString(p % 4) : "[0," + p % 4 + "]");
+                answer.setText(p % 6 == 0 ? "line one\nline, \"two\"" : p % 6 == 1 ? "" : null);
+                answer.setUsedPowerUpContextJson(p % 4 == 0 ? "{\"multiplier\":2}" : null);
+                answer.setReactionTimeMs(1_000 + p);
+                answer.setAnswerTimestamp(now);
+                answer.setStatus(p % 2 == 0 ? "CORRECT" : "WRONG");
+                answer.setBasePoints(1000);
+                answer.setFinalPoints(p % 2 == 0 ? 900 : 0);
+                answerRows.add(answer);
+            }
+        }
+    }
+
+    @Benchmark
+    public void perRow() {
+        transactionTemplate.executeWithoutResult(status -> {
+            writePerRow();
+            status.setRollbackOnly();
+        });
+    }
+
+    @Benchmark
+    public void batched() {
+        transactionTemplate.executeWithoutResult(status -> {
+            writeBatched();
+            status.setRollbackOnly();
+        });
+    }
+
+    @Benchmark
+    public void copy() {
+        transactionTemplate.executeWithoutResult(status -> {
+            writeCopy();
+            status.setRollbackOnly();
+        });
+    }
+
+    private void writePerRow() {
+        List<Player> saved = playerRepository.saveAll(playerRows);
+        for (GameSlide slide : slideRows) {
+            gameSlideRepository.save(slide);
+        }
+        linkAnswers(saved);
+        playerAnswerRepository.saveAll(answerRows);
+        playerAnswerRepository.flush();
+    }
+
+    private void writeBatched() {
+        batchRepository.insertPlayers(playerRows);
+        batchRepository.insertGameSlides(slideRows);
+        linkAnswers(playerRows);
+        batchRepository.insertPlayerAnswers(answerRows);
+    }
+
+    private void writeCopy() {
+        batchRepository.copyPlayers(playerRows);
+        batchRepository.insertGameSlides(slideRows);
+        linkAnswers(playerRows);
+        batchRepository.copyPlayerAnswers(answerRows);
+    }
+
+    private void verifyEquivalence() {
+        List<String> perRow = storedRows(this::writePerRow);
+        List<String> batched = storedRows(this::writeBatched);
+        List<String> copy = storedRows(this::writeCopy);
+        for (int i = 0; i < Math.max(perRow.size(), Math.max(batched.size(), copy.size())); i++) {
+            String expected = i < perRow.size() ? perRow.get(i) : null;
+            String viaBatch = i < batched.size() ? batched.get(i) : null;
+            String viaCopy = i < copy.size() ? copy.get(i) : null;
+            if (!Objects.equals(expected, viaBatch) || !Objects.equals(expected, viaCopy)) {
+                throw new IllegalStateException("Stored rows differ at " + i + ":\n  JPA:   " + expected
+                        + "\n  batch: " + viaBatch + "\n  COPY:  " + viaCopy);
+            }
+        }
+    }
+
+    // Writes a fresh game, reads it back through JPA and describes every row without its generated IDs
+    private List<String> storedRows(Runnable write) {
+        buildGame();
+        UUID sessionId = slideRows.get(0).getSessionId();
+        return transactionTemplate.execute(status -> {
+            write.run();
+            entityManager.flush();
+            entityManager.clear();
+            List<Player> storedPlayers = playerRepository.findBySessionId(sessionId);
+            List<GameSlide> storedSlides = gameSlideRepository.findBySessionIdOrderBySlideIndexAsc(sessionId);
+            List<PlayerAnswer> storedAnswers = playerAnswerRepository.findBySlideIdIn(storedSlides.stream().map(GameSlide::getSlideId).toList());
+            entityManager.clear(); // Detached, so blanking the IDs below is never flushed
+            status.setRollbackOnly();
+
+            Map<UUID, String> clientIds = storedPlayers.stream().collect(Collectors.toMap(Player::getPlayerId, Player::getClientId));
+            Map<UUID, Integer> slideIndexes = storedSlides.stream().collect(Collectors.toMap(GameSlide::getSlideId, GameSlide::getSlideIndex));
+            List<String> rows = new ArrayList<>();
+            for (Player player : storedPlayers) {
+                player.setPlayerId(null);
+                player.setSessionId(null);
+                rows.add(player.toString());
+            }
+            for (GameSlide slide : storedSlides) {
+                slide.setSlideId(null);
+                slide.setSessionId(null);
+                rows.add(slide.toString());
+            }
+            for (PlayerAnswer answer : storedAnswers) {
+                String key = slideIndexes.get(answer.getSlideId()) + "/" + clientIds.get(answer.getPlayerId());
+                answer.setAnswerId(null);
+                answer.setSlideId(null);
+                answer.setPlayerId(null);
+                rows.add(key + " " + answer);
+            }
+            rows.sort(String::compareTo);
+            return rows;
+        });
+    }
+
+    private void linkAnswers(List<Player> savedPlayers) {
+        for (int s = 0; s < slides; s++) {
+            for (int p = 0; p < players; p++) {
+                PlayerAnswer answer = answerRows.get(s * players + p);
+                answer.setSlideId(slideRows.get(s).getSlideId());
+                answer.setPlayerId(savedPlayers.get(p).getPlayerId());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(FinalizePersistenceBenchmark.class.getSimpleName());
+        // The forked JVM does not inherit system properties, so hand the connection settings on
+        List<String> jvmArgs = new ArrayList<>();
+        for (String property : DATASOURCE_PROPERTIES) {
+            String value = System.getProperty(property);
+            if (value != null) {
+                jvmArgs.add("-D" + property + "=" + value);
+            }
+        }
+        new Runner(options.jvmArgsPrepend(jvmArgs.toArray(String[]::new)).build()).run();
+    }
+
+    /**
+     * JPA and the result repositories only: no web server, security or STOMP broker.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @EnableAutoConfiguration(exclude = {
+            SecurityAutoConfiguration.class,
+            UserDetailsServiceAutoConfiguration.class
+    })
+    @EntityScan(basePackageClasses = Player.class)
+    @EnableJpaRepositories(basePackageClasses = PlayerRepository.class)
+    @Import(GameResultBatchRepository.class)
+    static class PersistenceOnly {
+    }
+}
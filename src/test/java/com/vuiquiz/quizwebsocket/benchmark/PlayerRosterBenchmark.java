@@ -0,0 +1,95 @@
+package com.vuiquiz.quizwebsocket.benchmark;
+
+import com.vuiquiz.quizwebsocket.service.websocket.PlayerRoster;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Simulates a lobby join storm: {@code players} sessions join one game from several threads at once.
+ * After every join the roster size is read (what the roster notification does), and every
+ * {@value #SNAPSHOT_EVERY} joins a reader takes a full copy/snapshot of the roster.
+ * <p>
+ * Compares the previous CopyOnWriteArraySet roster with {@link PlayerRoster}.
+ * Run from the IDE via {@link #main(String[])}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlayerRosterBenchmark {
+
+    private static final int JOIN_THREADS = 8;
+    private static final int SNAPSHOT_EVERY = 50;
+
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    private String[] sessionIds;
+    private ExecutorService joinPool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionIds = IntStream.range(0, players).mapToObj(i -> "sess-" + Integer.toHexString(i)).toArray(String[]::new);
+        joinPool = Executors.newFixedThreadPool(JOIN_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        joinPool.shutdownNow();
+    }
+
+    @Benchmark
+    public void copyOnWriteArraySet(Blackhole bh) throws Exception {
+        Set<String> roster = new CopyOnWriteArraySet<>();
+        runStorm(id -> {
+            roster.add(id);
+            bh.consume(roster.size());
+        }, () -> bh.consume(new CopyOnWriteArraySet<>(roster)));
+    }
+
+    @Benchmark
+    public void playerRoster(Blackhole bh) throws Exception {
+        PlayerRoster roster = new PlayerRoster();
+        runStorm(id -> {
+            roster.add(id);
+            bh.consume(roster.size());
+        }, () -> bh.consume(roster.snapshot()));
+    }
+
+    private void runStorm(Consumer<String> join, Runnable snapshotReader) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        var futures = IntStream.range(0, JOIN_THREADS).mapToObj(t -> joinPool.submit(() -> {
+            int i;
+            while ((i = next.getAndIncrement()) < sessionIds.length) {
+                join.accept(sessionIds[i]);
+                if (i % SNAPSHOT_EVERY == 0) {
+                    snapshotReader.run();
+                }
+            }
+        })).toList();
+        for (var future : futures) {
+            future.get();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PlayerRosterBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
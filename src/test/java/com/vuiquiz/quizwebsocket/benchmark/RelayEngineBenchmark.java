@@ -0,0 +1,91 @@
+package com.vuiquiz.quizwebsocket.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.service.websocket.GameActionRelayEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming relay engine against the previous Map-based relay path
+ * (readValue into List&lt;Map&gt;, put data.cid, writeValueAsString per message).
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.vuiquiz.quizwebsocket.benchmark.RelayEngineBenchmark}
+ * or straight from the IDE via {@link #main(String[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RelayEngineBenchmark {
+
+    private static final TypeReference<List<Map<String, Object>>> MESSAGE_LIST_TYPE_REF = new TypeReference<>() {};
+    private static final String SENDER = "k3j4h5g6";
+
+    // A player answer (small) and a host question broadcast (larger, nested content)
+    private static final String PLAYER_ANSWER = "[{\"channel\":\"/controller/123456\",\"data\":{\"gameid\":\"123456\",\"type\":\"message\","
+            + "\"host\":\"vuiquiz.local\",\"id\":45,\"content\":\"{\\\"type\\\":\\\"quiz\\\",\\\"choice\\\":2,\\\"questionIndex\\\":3}\"},"
+            + "\"ext\":{},\"clientId\":\"a1b2c3\"}]";
+
+    private static final String HOST_QUESTION = "[{\"channel\":\"/controller/123456\",\"data\":{\"gameid\":\"123456\",\"type\":\"message\","
+            + "\"host\":\"vuiquiz.local\",\"id\":2,\"cid\":\"host-sid\",\"content\":{\"questionIndex\":3,\"timeLimit\":20000,"
+            + "\"title\":\"Which planet in our solar system has the most confirmed moons as of the latest survey?\","
+            + "\"choices\":[{\"answer\":\"Jupiter\"},{\"answer\":\"Saturn\"},{\"answer\":\"Uranus\"},{\"answer\":\"Neptune\"}],"
+            + "\"image\":\"https://cdn.vuiquiz.local/images/planets/saturn-rings-hires.png\",\"pointsMultiplier\":1,"
+            + "\"gameBlockIndex\":3,\"totalGameBlockCount\":20}},\"ext\":{\"timetrack\":1746977279627}}]";
+
+    @Param({"playerAnswer", "hostQuestion"})
+    public String messageKind;
+
+    private ObjectMapper objectMapper;
+    private GameActionRelayEngine engine;
+    private byte[] payloadBytes;
+    private String payloadString;
+    private boolean fromHost;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        engine = new GameActionRelayEngine(objectMapper);
+        payloadString = "playerAnswer".equals(messageKind) ? PLAYER_ANSWER : HOST_QUESTION;
+        payloadBytes = payloadString.getBytes(StandardCharsets.UTF_8);
+        fromHost = !"playerAnswer".equals(messageKind);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void mapBased(Blackhole bh) throws Exception {
+        // Mirrors the original relayGameAction: the payload arrives as a String and each message is re-serialized
+        List<Map<String, Object>> messageList = objectMapper.readValue(payloadString, MESSAGE_LIST_TYPE_REF);
+        for (Map<String, Object> message : messageList) {
+            Map<String, Object> dataMap = (Map<String, Object>) message.get("data");
+            dataMap.put("cid", SENDER);
+            bh.consume(objectMapper.writeValueAsString(message));
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) throws Exception {
+        for (GameActionRelayEngine.RelayFrame frame : engine.relay(payloadBytes, SENDER, fromHost)) {
+            bh.consume(frame.payload());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RelayEngineBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,146 @@
+package com.vuiquiz.quizwebsocket.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.service.websocket.GameMessageBroadcaster;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One broadcast to a /topic/player/{pin} topic with 1,000 subscribers, through a real SimpleBroker.
+ * <p>
+ * {@code convertAndSend} is the previous path (serialize to String, then the converter chain),
+ * {@code preEncoded} goes through {@link GameMessageBroadcaster}. Each delivered message is STOMP-encoded
+ * on the outbound channel, as StompSubProtocolHandler would do per session, so the per-recipient cost is
+ * part of the measurement.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.vuiquiz.quizwebsocket.benchmark.TopicBroadcastBenchmark}
+ * or straight from the IDE via {@link #main(String[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// The broker logs every broadcast at DEBUG, which is the fallback level of logback.xml outside Spring
+@Fork(value = 1, jvmArgsAppend = "-DlogLevel=info")
+@State(Scope.Benchmark)
+public class TopicBroadcastBenchmark {
+
+    private static final String TOPIC = "/topic/player/123456";
+
+    @Param({"1000"})
+    public int subscribers;
+
+    // Size of the ROSTER_DELTA: a quiet window vs. a join storm
+    @Param({"20", "500"})
+    public int joinedInWindow;
+
+    private SimpleBrokerMessageHandler broker;
+    private SimpMessagingTemplate messagingTemplate;
+    private GameMessageBroadcaster broadcaster;
+    private ObjectMapper objectMapper;
+    private Map<String, Object> rosterDelta;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole bh) {
+        this.blackhole = bh;
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+
+        StompEncoder encoder = new StompEncoder();
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+                return; // CONNECT_ACK during setup
+            }
+            SimpMessageHeaderAccessor simp = SimpMessageHeaderAccessor.wrap(message);
+            StompHeaderAccessor stomp = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            stomp.setSubscriptionId(simp.getSubscriptionId());
+            stomp.setDestination(simp.getDestination());
+            stomp.setMessageId(simp.getSessionId() + "-0");
+            stomp.setContentType(simp.getContentType());
+            blackhole.consume(encoder.encode(stomp.getMessageHeaders(), (byte[]) message.getPayload()));
+        });
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic", "/queue"));
+        broker.start();
+        for (int i = 0; i < subscribers; i++) {
+            // SimpleBroker only delivers to sessions it has seen CONNECT for
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId("session-" + i);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId("session-" + i);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination(TOPIC);
+            Message<byte[]> message = MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders());
+            broker.handleMessage(message);
+        }
+
+        // Same converters Spring registers for the brokerMessagingTemplate
+        messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        messagingTemplate.setMessageConverter(new CompositeMessageConverter(List.of(
+                new StringMessageConverter(), new ByteArrayMessageConverter(), new MappingJackson2MessageConverter())));
+        broadcaster = new GameMessageBroadcaster(messagingTemplate);
+        objectMapper = new ObjectMapper();
+
+        List<String> joined = new ArrayList<>();
+        for (int i = 0; i < joinedInWindow; i++) {
+            joined.add("session-" + Integer.toHexString(i * 7919 + 100_000));
+        }
+        rosterDelta = new LinkedHashMap<>();
+        rosterDelta.put("type", "ROSTER_DELTA");
+        rosterDelta.put("version", 42L);
+        rosterDelta.put("playerCount", subscribers);
+        rosterDelta.put("hostId", "host-session");
+        rosterDelta.put("joined", joined);
+        rosterDelta.put("left", List.of());
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public void convertAndSend() throws Exception {
+        messagingTemplate.convertAndSend(TOPIC, objectMapper.writeValueAsString(rosterDelta));
+    }
+
+    @Benchmark
+    public void preEncoded() throws Exception {
+        broadcaster.send(TOPIC, broadcaster.encode(rosterDelta));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TopicBroadcastBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
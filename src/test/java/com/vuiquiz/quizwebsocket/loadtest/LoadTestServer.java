@@ -0,0 +1,42 @@
+package com.vuiquiz.quizwebsocket.loadtest;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketConfig;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import com.vuiquiz.quizwebsocket.controller.GameSessionController;
+import com.vuiquiz.quizwebsocket.controller.WebSocketController;
+import com.vuiquiz.quizwebsocket.listener.WebSocketEventListener;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.ManagementWebSecurityAutoConfiguration;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Just the real-time half of the application: the STOMP endpoint, the game session REST API and everything in
+ * service.websocket, without the database, JPA and security. Used by {@link StompLoadHarness} so a load test
+ * needs nothing but a JDK.
+ * <p>
+ * A {@link TestConfiguration} so that the application's own component scan in @SpringBootTest skips it.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+@EnableAutoConfiguration(exclude = {
+        DataSourceAutoConfiguration.class,
+        SecurityAutoConfiguration.class,
+        SecurityFilterAutoConfiguration.class,
+        UserDetailsServiceAutoConfiguration.class,
+        ManagementWebSecurityAutoConfiguration.class
+})
+@ComponentScan(basePackages = "com.vuiquiz.quizwebsocket.service.websocket")
+@Import({
+        WebSocketProperties.class,
+        WebSocketConfig.class,
+        WebSocketController.class,
+        WebSocketEventListener.class,
+        GameSessionController.class
+})
+public class LoadTestServer {
+}
@@ -0,0 +1,408 @@
+package com.vuiquiz.quizwebsocket.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.service.websocket.GameMessageIds;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator that plays whole quiz games against an in-process server over real WebSockets.
+ * <p>
+ * For every game it creates a PIN through /api/session/create, connects a host and N players to /ws-quiz with
+ * {@link WebSocketStompClient}, then plays Q questions the way the web client does: the host broadcasts
+ * START_QUESTION, every player answers after a random think time, the host sends TIME_UP and one frame with a
+ * private REVEAL_ANSWER per player, and finally GAME_OVER. Each frame carries the send time, so the receiver
+ * records the end-to-end relay latency (client send, server relay, broker, client receive) per message kind.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.vuiquiz.quizwebsocket.loadtest.StompLoadHarness -Dgames=200 -DplayersPerGame=25}
+ * or straight from the IDE via {@link #main(String[])}. Knobs (system properties): games, playersPerGame,
+ * questions, thinkTimeMs, connectConcurrency, subscribeSettleMs.
+ */
+public class StompLoadHarness {
+
+    private static final String ENDPOINT = "/ws-quiz";
+    private static final long ASSIGN_RETRY_MS = 5_000;
+
+    private final int games = Integer.getInteger("games", 50);
+    private final int playersPerGame = Integer.getInteger("playersPerGame", 20);
+    private final int questions = Integer.getInteger("questions", 5);
+    private final int thinkTimeMs = Integer.getInteger("thinkTimeMs", 1_000);
+    private final int connectConcurrency = Integer.getInteger("connectConcurrency", 64);
+    private final int subscribeSettleMs = Integer.getInteger("subscribeSettleMs", 100);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyRecorder broadcastLatency = new LatencyRecorder();
+    private final LatencyRecorder answerLatency = new LatencyRecorder();
+    private final LatencyRecorder privateLatency = new LatencyRecorder();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong connectErrors = new AtomicLong();
+    private final AtomicLong stompErrors = new AtomicLong();
+    private final AtomicLong transportErrors = new AtomicLong();
+    private final AtomicLong answerTimeouts = new AtomicLong();
+    private final ScheduledExecutorService thinkTimer = Executors.newScheduledThreadPool(2);
+
+    private WebSocketStompClient stompClient;
+    private String wsUrl;
+
+    public static void main(String[] args) throws Exception {
+        // System properties, because builder properties lose against application.yml (which traces messaging)
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.setProperty("server.port", "0");
+        for (String logger : new String[]{"root", "org.springframework.messaging", "org.springframework.web.socket",
+                "org.apache.tomcat.websocket", "com.vuiquiz"}) {
+            System.setProperty("logging.level." + logger, System.getProperty("logLevel", "WARN"));
+        }
+        ConfigurableApplicationContext server = new SpringApplicationBuilder(LoadTestServer.class).run(args);
+        try {
+            int port = Integer.parseInt(server.getEnvironment().getProperty("local.server.port", "8080"));
+            new StompLoadHarness().run("http://localhost:" + port);
+            reportServerMeters(server.getBean(MeterRegistry.class));
+        } finally {
+            server.close();
+        }
+    }
+
+    void run(String baseUrl) throws Exception {
+        wsUrl = baseUrl.replaceFirst("^http", "ws") + ENDPOINT;
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new StringMessageConverter());
+        stompClient.setInboundMessageSizeLimit(1024 * 1024);
+
+        System.out.printf("Load test: %d games x (1 host + %d players), %d questions, think time up to %d ms%n",
+                games, playersPerGame, questions, thinkTimeMs);
+
+        RestTemplate rest = new RestTemplate();
+        List<Game> allGames = new ArrayList<>();
+        for (int i = 0; i < games; i++) {
+            Map<?, ?> created = rest.postForObject(baseUrl + "/api/session/create", null, Map.class);
+            allGames.add(new Game((String) created.get("gamePin")));
+        }
+
+        long connectStart = System.nanoTime();
+        Semaphore inFlight = new Semaphore(connectConcurrency);
+        List<CompletableFuture<?>> connects = new ArrayList<>();
+        for (Game game : allGames) {
+            connects.add(game.connectHost(inFlight));
+        }
+        CompletableFuture.allOf(connects.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        connects.clear();
+        for (Game game : allGames) {
+            for (int p = 0; p < playersPerGame; p++) {
+                connects.add(game.connectPlayer(inFlight));
+            }
+        }
+        CompletableFuture.allOf(connects.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        long connectMillis = (System.nanoTime() - connectStart) / 1_000_000;
+        int connected = allGames.stream().mapToInt(game -> game.players.size() + (game.host != null ? 1 : 0)).sum();
+        System.out.printf("Connected %d of %d sessions in %d ms%n", connected, games * (playersPerGame + 1), connectMillis);
+
+        long playStart = System.nanoTime();
+        // Hosts block while waiting for answers, so every game gets its own thread
+        ExecutorService hostThreads = Executors.newCachedThreadPool();
+        List<CompletableFuture<?>> plays = new ArrayList<>();
+        for (Game game : allGames) {
+            if (game.host != null) {
+                plays.add(CompletableFuture.runAsync(game::play, hostThreads));
+            }
+        }
+        CompletableFuture.allOf(plays.toArray(CompletableFuture[]::new)).join();
+        hostThreads.shutdown();
+        double playSeconds = (System.nanoTime() - playStart) / 1e9;
+        Thread.sleep(500); // Let the last reveals arrive
+
+        for (Game game : allGames) {
+            game.disconnect();
+        }
+        thinkTimer.shutdownNow();
+        stompClient.stop();
+        report(playSeconds);
+    }
+
+    private void report(double playSeconds) {
+        System.out.println();
+        System.out.println("Relay latency, client send to client receive (ms):");
+        broadcastLatency.print("  START_QUESTION host -> all players");
+        answerLatency.print("  ANSWER         player -> host");
+        privateLatency.print("  REVEAL_ANSWER  host -> one player");
+        System.out.printf("Throughput over %.1f s: %.0f frames/s sent, %.0f frames/s delivered%n",
+                playSeconds, framesSent.get() / playSeconds, framesReceived.get() / playSeconds);
+        System.out.printf("Errors: connect=%d stomp=%d transport=%d unanswered=%d%n",
+                connectErrors.get(), stompErrors.get(), transportErrors.get(), answerTimeouts.get());
+    }
+
+    // What the server saw itself, from the same meters /actuator/metrics exposes
+    private static void reportServerMeters(MeterRegistry registry) {
+        System.out.println("Server side (ms):");
+        printTimers(registry, "websocket.relay.processing", "sender", "  relay processing, %s messages");
+        printTimers(registry, "websocket.outbound.send.latency", "priority", "  outbound queue to socket, %s frames");
+        for (Counter counter : registry.find("websocket.relay.frames").counters()) {
+            System.out.printf("  frames %s: %.0f%n", counter.getId().getTag("route"), counter.count());
+        }
+        System.out.printf("  relay failures: %.0f%n", registry.get("websocket.relay.failures").counter().count());
+        System.out.printf("  slow consumers: %.0f frames parked, %.0f conflated, %.0f sessions cut off%n",
+                registry.get("websocket.outbound.slow.parked").counter().count(),
+                registry.get("websocket.outbound.slow.conflated").counter().count(),
+                registry.find("websocket.outbound.slow.cutoff").counters().stream().mapToDouble(Counter::count).sum());
+    }
+
+    private static void printTimers(MeterRegistry registry, String name, String tag, String labelFormat) {
+        for (Timer timer : registry.find(name).timers()) {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            StringBuilder percentiles = new StringBuilder();
+            for (ValueAtPercentile value : snapshot.percentileValues()) {
+                percentiles.append(String.format(" p%.0f=%.3f", value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+            }
+            System.out.printf(labelFormat + ": n=%d%s max=%.3f%n", timer.getId().getTag(tag),
+                    snapshot.count(), percentiles, snapshot.max(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private String message(int id, String cid, long sentNanos, int question) {
+        String cidField = cid != null ? ",\"cid\":\"" + cid + "\"" : "";
+        return "{\"channel\":\"/service/player\",\"data\":{\"id\":" + id + ",\"type\":\"message\",\"question\":" + question
+                + ",\"sentNanos\":" + sentNanos + cidField + "}}";
+    }
+
+    private final class Game {
+        private final String pin;
+        private final List<Player> players = new ArrayList<>();
+        private StompSession host;
+        private volatile CountDownLatch answersPending;
+
+        Game(String pin) {
+            this.pin = pin;
+        }
+
+        CompletableFuture<?> connectHost(Semaphore inFlight) {
+            return connect(inFlight, new Handler(this, null), "/topic/host/" + pin).thenAccept(session -> host = session);
+        }
+
+        CompletableFuture<?> connectPlayer(Semaphore inFlight) {
+            Player player = new Player();
+            return connect(inFlight, new Handler(this, player), "/topic/player/" + pin).thenAccept(session -> {
+                player.session = session;
+                synchronized (players) {
+                    players.add(player);
+                }
+            });
+        }
+
+        // The private queue first, so the HOST_ASSIGNED/PLAYER_ASSIGNED confirmation is not missed. The server
+        // confirms from the game-topic SUBSCRIBE event before the private SUBSCRIBE has left its inbound lane,
+        // and the simple broker sends no receipts, so give the private subscription a moment to register.
+        private CompletableFuture<StompSession> connect(Semaphore inFlight, Handler handler, String gameTopic) {
+            inFlight.acquireUninterruptibly();
+            return stompClient.connectAsync(wsUrl, handler)
+                    .thenCompose(session -> {
+                        session.subscribe("/user/queue/private", handler);
+                        return CompletableFuture.supplyAsync(() -> session.subscribe(gameTopic, handler),
+                                CompletableFuture.delayedExecutor(subscribeSettleMs, TimeUnit.MILLISECONDS, thinkTimer));
+                    })
+                    .thenCompose(subscription -> {
+                        if (handler.player != null) {
+                            retryUnconfirmed(subscription, handler, gameTopic);
+                        }
+                        return handler.assigned;
+                    })
+                    .orTimeout(30, TimeUnit.SECONDS)
+                    .whenComplete((session, error) -> {
+                        inFlight.release();
+                        if (error != null) {
+                            connectErrors.incrementAndGet();
+                        }
+                    });
+        }
+
+        // Every game-topic SUBSCRIBE of a player is confirmed again, so one lost PLAYER_ASSIGNED costs one retry
+        private void retryUnconfirmed(StompSession.Subscription subscription, Handler handler, String gameTopic) {
+            thinkTimer.schedule(() -> {
+                if (!handler.assigned.isDone()) {
+                    subscription.unsubscribe();
+                    handler.session.subscribe(gameTopic, handler);
+                }
+            }, ASSIGN_RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+
+        void play() {
+            try {
+                for (int q = 0; q < questions; q++) {
+                    answersPending = new CountDownLatch(players.size());
+                    send(host, message(GameMessageIds.START_QUESTION, null, System.nanoTime(), q));
+                    if (!answersPending.await(thinkTimeMs + 10_000L, TimeUnit.MILLISECONDS)) {
+                        answerTimeouts.addAndGet(answersPending.getCount());
+                    }
+                    send(host, message(GameMessageIds.TIME_UP, null, System.nanoTime(), q));
+
+                    // One SEND with every player's reveal, as the host client batches them
+                    StringBuilder reveals = new StringBuilder("[");
+                    long now = System.nanoTime();
+                    for (Player player : players) {
+                        if (reveals.length() > 1) {
+                            reveals.append(',');
+                        }
+                        reveals.append(message(GameMessageIds.REVEAL_ANSWER, player.clientId, now, q));
+                    }
+                    host.send("/app/controller/" + pin, reveals.append(']').toString());
+                    framesSent.addAndGet(players.size());
+                }
+                send(host, message(GameMessageIds.GAME_OVER, null, System.nanoTime(), questions));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                transportErrors.incrementAndGet();
+            }
+        }
+
+        void send(StompSession session, String message) {
+            session.send("/app/controller/" + pin, "[" + message + "]");
+            framesSent.incrementAndGet();
+        }
+
+        void disconnect() {
+            players.forEach(player -> player.session.disconnect());
+            if (host != null) {
+                host.disconnect();
+            }
+        }
+    }
+
+    private static final class Player {
+        private volatile StompSession session;
+        private volatile String clientId;
+    }
+
+    private final class Handler extends StompSessionHandlerAdapter implements StompFrameHandler {
+        private final Game game;
+        private final Player player; // null for the host
+        private final CompletableFuture<StompSession> assigned = new CompletableFuture<>();
+        private StompSession session;
+
+        Handler(Game game, Player player) {
+            this.game = game;
+            this.player = player;
+        }
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            this.session = session;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return String.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long receivedNanos = System.nanoTime();
+            framesReceived.incrementAndGet();
+            JsonNode node;
+            try {
+                node = objectMapper.readTree((String) payload);
+            } catch (Exception e) {
+                return;
+            }
+            String type = node.path("type").asText();
+            if ("HOST_ASSIGNED".equals(type) || "PLAYER_ASSIGNED".equals(type)) {
+                if (player != null) {
+                    player.clientId = node.path("clientId").asText();
+                }
+                assigned.complete(session);
+                return;
+            }
+            JsonNode data = node.path("data");
+            if (!data.has("sentNanos")) {
+                return; // Roster frames and the like
+            }
+            long latency = receivedNanos - data.path("sentNanos").asLong();
+            int id = data.path("id").asInt();
+            if (player == null && id == GameMessageIds.ANSWER) {
+                answerLatency.record(latency);
+                CountDownLatch pending = game.answersPending;
+                if (pending != null) {
+                    pending.countDown();
+                }
+            } else if (player != null && id == GameMessageIds.START_QUESTION) {
+                broadcastLatency.record(latency);
+                int question = data.path("question").asInt();
+                thinkTimer.schedule(() -> game.send(session, message(GameMessageIds.ANSWER, null, System.nanoTime(), question)),
+                        ThreadLocalRandom.current().nextInt(thinkTimeMs + 1), TimeUnit.MILLISECONDS);
+            } else if (player != null && id == GameMessageIds.REVEAL_ANSWER) {
+                privateLatency.record(latency);
+            }
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload, Throwable exception) {
+            stompErrors.incrementAndGet();
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            transportErrors.incrementAndGet();
+            assigned.completeExceptionally(exception);
+        }
+    }
+
+    // Keeps every sample; fine for the few million a run produces
+    private static final class LatencyRecorder {
+        private long[] samples = new long[1024];
+        private int count;
+
+        synchronized void record(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+        }
+
+        synchronized void print(String label) {
+            if (count == 0) {
+                System.out.printf("%s: no samples%n", label);
+                return;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            System.out.printf("%s: n=%d p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", label, count,
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9),
+                    sorted[count - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+}
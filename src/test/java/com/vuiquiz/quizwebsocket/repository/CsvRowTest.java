@@ -0,0 +1,66 @@
+package com.vuiquiz.quizwebsocket.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvRowTest {
+
+    @Test
+    void doublesQuotesInsideQuotedText() {
+        assertThat(render(row -> row.add("say \"hi\""))).isEqualTo("\"say \"\"hi\"\"\"\n");
+    }
+
+    @Test
+    void keepsCommasAndLineBreaksInsideQuotedText() {
+        assertThat(render(row -> row.add("a,b").add("line1\nline2\r\nline3")))
+                .isEqualTo("\"a,b\",\"line1\nline2\r\nline3\"\n");
+    }
+
+    @Test
+    void writesNullAsAnUnquotedEmptyColumnAndEmptyTextQuoted() {
+        // COPY csv reads an unquoted empty column as NULL and "" as an empty string
+        assertThat(render(row -> row.add(null).add("").add(null))).isEqualTo(",\"\",\n");
+    }
+
+    @Test
+    void writesNumbersUuidsAndTimestampsUnquoted() {
+        UUID id = UUID.fromString("6b14fbae-7e64-4a38-a7ee-5c56c1224825");
+        OffsetDateTime at = OffsetDateTime.of(2025, 5, 11, 15, 27, 12, 795_000_000, ZoneOffset.UTC);
+        assertThat(render(row -> row.add(id).add(42).add(1234L).add(at)))
+                .isEqualTo("6b14fbae-7e64-4a38-a7ee-5c56c1224825,42,1234,2025-05-11T15:27:12.795Z\n");
+    }
+
+    @Test
+    void startsEachRowWithoutASeparator() {
+        assertThat(render(row -> {
+            row.add(1).add("x");
+            row.end();
+            row.add(2).add(null);
+        })).isEqualTo("1,\"x\"\n2,\n");
+    }
+
+    @Test
+    void drainsUtf8AndStartsOver() {
+        GameResultBatchRepository.CsvRow row = new GameResultBatchRepository.CsvRow();
+        row.add("Đức 🎉").end();
+        assertThat(new String(row.drain(), StandardCharsets.UTF_8)).isEqualTo("\"Đức 🎉\"\n");
+        assertThat(row.length()).isZero();
+
+        row.add(7).end();
+        assertThat(new String(row.drain(), StandardCharsets.UTF_8)).isEqualTo("7\n");
+    }
+
+    private static String render(Consumer<GameResultBatchRepository.CsvRow> columns) {
+        GameResultBatchRepository.CsvRow row = new GameResultBatchRepository.CsvRow();
+        columns.accept(row);
+        row.end();
+        return new String(row.drain(), StandardCharsets.UTF_8);
+    }
+}
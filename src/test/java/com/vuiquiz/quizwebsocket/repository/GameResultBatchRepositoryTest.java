@@ -0,0 +1,194 @@
+package com.vuiquiz.quizwebsocket.repository;
+
+import com.vuiquiz.quizwebsocket.model.GameSlide;
+import com.vuiquiz.quizwebsocket.model.Player;
+import com.vuiquiz.quizwebsocket.model.PlayerAnswer;
+import com.vuiquiz.quizwebsocket.utils.DateTimeUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Writes the same game through the INSERT batch and COPY paths and compares the stored columns. Needs a
+ * PostgreSQL database with the application's schema, like {@code FinalizePersistenceBenchmark}; skipped unless
+ * one is named, e.g. {@code mvn test -Dtest=GameResultBatchRepositoryTest
+ * -Dspring.datasource.url=jdbc:postgresql://localhost:5432/vui_quiz_db?reWriteBatchedInserts=true
+ * -Dspring.datasource.username=postgres -Dspring.datasource.password=password}. Nothing is committed.
+ */
+@EnabledIfSystemProperty(named = "spring.datasource.url", matches = "jdbc:postgresql:.*")
+class GameResultBatchRepositoryTest {
+
+    private static final int PLAYERS = 12;
+    private static final int SLIDES = 3;
+
+    // Generated IDs are left out; answers are keyed by slide index and client ID instead
+    private static final String SELECT_PLAYERS = "SELECT client_id, nickname, status, joined_at, join_slide_index, "
+            + "waiting_since, rank, total_score, correct_answers, streak_count, answer_count, unanswered_count, avatar_id, "
+            + "total_time, average_time, device_info_json::text, last_activity_at, user_id FROM player "
+            + "WHERE session_id = ? ORDER BY client_id";
+
+    private static final String SELECT_ANSWERS = "SELECT s.slide_index, p.client_id, a.choice, a.text, a.reaction_time_ms, "
+            + "a.answer_timestamp, a.status, a.base_points, a.final_points, a.used_power_up_id, "
+            + "a.used_power_up_context_json::text FROM player_answer a JOIN game_slide s ON s.slide_id = a.slide_id "
+            + "JOIN player p ON p.player_id = a.player_id WHERE s.session_id = ? ORDER BY s.slide_index, p.client_id";
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private GameResultBatchRepository repository;
+
+    @BeforeEach
+    void connect() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getProperty("spring.datasource.url"),
+                System.getProperty("spring.datasource.username"), System.getProperty("spring.datasource.password"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository = new GameResultBatchRepository(jdbcTemplate);
+    }
+
+    @Test
+    void storesTheSameColumnsWithCopyAsWithBatchedInserts() {
+        UUID sessionId = UUID.randomUUID();
+        OffsetDateTime now = DateTimeUtil.fromMillis(System.currentTimeMillis()); // Millisecond precision survives both paths
+
+        List<List<String>> batched = storedRows(sessionId, now, game -> {
+            repository.insertPlayers(game.players());
+            repository.insertGameSlides(game.slides());
+            game.linkAnswers();
+            repository.insertPlayerAnswers(game.answers());
+        });
+        List<List<String>> copied = storedRows(sessionId, now, game -> {
+            repository.copyPlayers(game.players());
+            repository.insertGameSlides(game.slides());
+            game.linkAnswers();
+            repository.copyPlayerAnswers(game.answers());
+        });
+
+        assertThat(batched).hasSize(PLAYERS + PLAYERS * SLIDES);
+        assertThat(copied).containsExactlyElementsOf(batched);
+    }
+
+    @Test
+    void keepsNullsEmptyTextQuotesAndJsonThroughCopy() {
+        UUID sessionId = UUID.randomUUID();
+        OffsetDateTime now = DateTimeUtil.fromMillis(System.currentTimeMillis());
+
+        List<List<String>> rows = storedRows(sessionId, now, game -> {
+            repository.copyPlayers(game.players());
+            repository.insertGameSlides(game.slides());
+            game.linkAnswers();
+            repository.copyPlayerAnswers(game.answers());
+        });
+
+        List<String> quoted = rows.get(0); // client-00
+        assertThat(quoted.get(1)).isEqualTo("Ngọc \"Nina\", #0");
+        assertThat(quoted.get(15)).isEqualTo("{\"device\": \"test\"}"); // jsonb's own rendering
+        assertThat(quoted.get(17)).isNull();
+        List<String> empty = rows.get(1); // client-01
+        assertThat(empty.get(1)).isEmpty();
+        assertThat(empty.get(15)).isNull();
+
+        List<String> multiline = rows.get(PLAYERS); // Slide 0, client-00
+        assertThat(multiline.get(3)).isEqualTo("line one\nline, \"two\"");
+        assertThat(multiline.get(10)).isEqualTo("{\"multiplier\": 2}");
+        assertThat(rows.get(PLAYERS + 1).get(3)).isEmpty();
+        assertThat(rows.get(PLAYERS + 2).get(3)).isNull();
+        assertThat(rows.get(PLAYERS + 2).get(2)).isNull();
+    }
+
+    // Writes a fresh copy of the game in a transaction that is rolled back, and returns what was stored
+    private List<List<String>> storedRows(UUID sessionId, OffsetDateTime now, Consumer<Game> write) {
+        Game game = Game.build(sessionId, now);
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            write.accept(game);
+            List<List<String>> rows = new ArrayList<>(jdbcTemplate.query(SELECT_PLAYERS, GameResultBatchRepositoryTest::columns, sessionId));
+            rows.addAll(jdbcTemplate.query(SELECT_ANSWERS, GameResultBatchRepositoryTest::columns, sessionId));
+            return rows;
+        });
+    }
+
+    private static List<String> columns(ResultSet rs, int rowNum) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+            columns.add(rs.getString(i));
+        }
+        return columns;
+    }
+
+    private record Game(List<Player> players, List<GameSlide> slides, List<PlayerAnswer> answers) {
+
+        static Game build(UUID sessionId, OffsetDateTime now) {
+            List<Player> players = new ArrayList<>();
+            for (int p = 0; p < PLAYERS; p++) {
+                Player player = new Player();
+                player.setSessionId(sessionId);
+                player.setClientId(String.format("client-%02d", p));
+                player.setNickname(p == 0 ? "Ngọc \"Nina\", #0" : p == 1 ? "" : "Player " + p);
+                player.setStatus("FINISHED");
+                player.setJoinedAt(now);
+                player.setLastActivityAt(now);
+                player.setWaitingSince(p % 4 == 0 ? now : null);
+                player.setJoinSlideIndex(p % 3 == 0 ? null : p % 3);
+                player.setRank(p + 1);
+                player.setTotalScore(p % 5 == 0 ? null : 1000 * SLIDES - p);
+                player.setAnswerCount(SLIDES);
+                player.setAvatarId(p % 3 == 0 ? UUID.nameUUIDFromBytes(new byte[]{(byte) p}) : null);
+                player.setTotalTime(p % 2 == 0 ? 4_000L * SLIDES : null);
+                player.setAverageTime(4_000);
+                player.setDeviceInfoJson(p == 0 ? "{\"device\":\"test\"}" : null);
+                players.add(player);
+            }
+            List<GameSlide> slides = new ArrayList<>();
+            for (int s = 0; s < SLIDES; s++) {
+                GameSlide slide = new GameSlide();
+                slide.setSessionId(sessionId);
+                slide.setSlideIndex(s);
+                slide.setSlideType("QUESTION_SLIDE");
+                slide.setStatus("ENDED");
+                slide.setStartedAt(now);
+                slide.setEndedAt(now);
+                slides.add(slide);
+            }
+            List<PlayerAnswer> answers = new ArrayList<>();
+            for (int s = 0; s < SLIDES; s++) {
+                for (int p = 0; p < PLAYERS; p++) {
+                    PlayerAnswer answer = new PlayerAnswer();
+                    answer.setChoice(p % 3 == 2 ? null : p % 2 == 0 ? Integer.toString(p % 4) : "[0," + p % 4 + "]");
+                    answer.setText(p % 3 == 0 ? "line one\nline, \"two\"" : p % 3 == 1 ? "" : null);
+                    answer.setUsedPowerUpContextJson(p % 4 == 0 ? "{\"multiplier\":2}" : null);
+                    answer.setReactionTimeMs(p % 5 == 0 ? null : 1_000 + p);
+                    answer.setAnswerTimestamp(now);
+                    answer.setStatus(p % 2 == 0 ? "CORRECT" : "WRONG");
+                    answer.setBasePoints(1000);
+                    answer.setFinalPoints(p % 2 == 0 ? 900 : 0);
+                    answers.add(answer);
+                }
+            }
+            return new Game(players, slides, answers);
+        }
+
+        void linkAnswers() {
+            for (int s = 0; s < SLIDES; s++) {
+                for (int p = 0; p < PLAYERS; p++) {
+                    PlayerAnswer answer = answers.get(s * PLAYERS + p);
+                    answer.setSlideId(slides.get(s).getSlideId());
+                    answer.setPlayerId(players.get(p).getPlayerId());
+                }
+            }
+        }
+    }
+}
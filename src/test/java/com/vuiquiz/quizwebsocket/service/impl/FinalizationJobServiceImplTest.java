@@ -0,0 +1,97 @@
+package com.vuiquiz.quizwebsocket.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.GameResultProperties;
+import com.vuiquiz.quizwebsocket.dto.FinalizationJobDto;
+import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto;
+import com.vuiquiz.quizwebsocket.exception.ForbiddenAccessException;
+import com.vuiquiz.quizwebsocket.exception.ResourceNotFoundException;
+import com.vuiquiz.quizwebsocket.security.services.UserDetailsImpl;
+import com.vuiquiz.quizwebsocket.service.GameResultService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FinalizationJobServiceImplTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    @TempDir
+    Path directory;
+
+    private final GameResultService gameResultService = mock(GameResultService.class);
+    private FinalizationSpool spool;
+    private FinalizationJobServiceImpl jobService;
+
+    @BeforeEach
+    void setUp() {
+        GameResultProperties properties = new GameResultProperties();
+        properties.getFinalize().setSpoolDir(directory.toString());
+        spool = new FinalizationSpool(properties, new ObjectMapper());
+        jobService = new FinalizationJobServiceImpl(gameResultService, spool, properties, new SimpleMeterRegistry());
+        UserDetailsImpl user = new UserDetailsImpl(USER_ID, "host", "host@example.com", "", List.of());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        SecurityContextHolder.clearContext();
+        jobService.shutdown();
+    }
+
+    @Test
+    void refusesAMissingQuizWithoutSpoolingIt() throws Exception {
+        doThrow(new ResourceNotFoundException("Quiz", "id", "q")).when(gameResultService).validateFinalization(any(), any());
+
+        assertThatThrownBy(() -> jobService.submit(payload())).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(spool.pending()).isEmpty();
+    }
+
+    @Test
+    void refusesAnotherUsersSessionWithoutSpoolingIt() throws Exception {
+        doThrow(new ForbiddenAccessException("not the host")).when(gameResultService).validateFinalization(any(), any());
+
+        assertThatThrownBy(() -> jobService.submit(payload())).isInstanceOf(ForbiddenAccessException.class);
+        assertThat(spool.pending()).isEmpty();
+    }
+
+    @Test
+    void storesAValidFinalizationInTheBackground() {
+        SessionFinalizationDto payload = payload();
+        when(gameResultService.saveSessionFinalization(any(), any())).thenReturn("session-1");
+
+        FinalizationJobDto job = jobService.submit(payload);
+
+        assertThat(job.getJobId()).isNotNull();
+        verify(gameResultService).validateFinalization(payload, USER_ID);
+        verify(gameResultService, timeout(5000)).saveSessionFinalization(any(), any());
+    }
+
+    private static SessionFinalizationDto payload() {
+        SessionFinalizationDto payload = new SessionFinalizationDto();
+        payload.setGamePin("123456");
+        payload.setQuizId("6b14fbae-7e64-4a38-a7ee-5c56c1224825");
+        payload.setHostUserId(USER_ID.toString());
+        payload.setPlayers(List.of());
+        payload.setGameSlides(List.of());
+        return payload;
+    }
+}
@@ -0,0 +1,84 @@
+package com.vuiquiz.quizwebsocket.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.GameResultProperties;
+import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FinalizationSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    private FinalizationSpool spool;
+
+    @BeforeEach
+    void setUp() {
+        GameResultProperties properties = new GameResultProperties();
+        properties.getFinalize().setSpoolDir(directory.toString());
+        spool = new FinalizationSpool(properties, new ObjectMapper());
+    }
+
+    @Test
+    void returnsAppendedEntriesOldestFirst() throws Exception {
+        UUID userId = UUID.randomUUID();
+        spool.append(new FinalizationSpool.Entry("job-2", userId, 2000, payload("222222")));
+        spool.append(new FinalizationSpool.Entry("job-1", userId, 1000, payload("111111")));
+
+        List<FinalizationSpool.Entry> pending = spool.pending();
+
+        assertThat(pending).extracting(FinalizationSpool.Entry::jobId).containsExactly("job-1", "job-2");
+        assertThat(pending.get(0).userId()).isEqualTo(userId);
+        assertThat(pending.get(0).payload().getGamePin()).isEqualTo("111111");
+        assertThat(pending.get(0).payload().getQuizId()).isEqualTo(payload("111111").getQuizId());
+    }
+
+    @Test
+    void discardsPartialWrites() throws Exception {
+        spool.append(new FinalizationSpool.Entry("job-1", UUID.randomUUID(), 1000, payload("111111")));
+        Path partial = Files.writeString(directory.resolve("job-2.tmp"), "{\"jobId\":\"job-2\",\"payl");
+
+        assertThat(spool.pending()).extracting(FinalizationSpool.Entry::jobId).containsExactly("job-1");
+        assertThat(partial).doesNotExist();
+    }
+
+    @Test
+    void movesUnreadableEntriesToFailed() throws Exception {
+        Files.writeString(directory.resolve("job-1.json"), "not json");
+
+        assertThat(spool.pending()).isEmpty();
+        assertThat(directory.resolve("failed").resolve("job-1.json")).exists();
+    }
+
+    @Test
+    void dropsCompletedAndFailedEntries() throws Exception {
+        UUID userId = UUID.randomUUID();
+        spool.append(new FinalizationSpool.Entry("job-1", userId, 1000, payload("111111")));
+        spool.append(new FinalizationSpool.Entry("job-2", userId, 2000, payload("222222")));
+
+        spool.complete("job-1");
+        spool.fail("job-2");
+
+        assertThat(spool.pending()).isEmpty();
+        assertThat(directory.resolve("failed").resolve("job-2.json")).exists();
+    }
+
+    private static SessionFinalizationDto payload(String gamePin) {
+        SessionFinalizationDto payload = new SessionFinalizationDto();
+        payload.setGamePin(gamePin);
+        payload.setQuizId("6b14fbae-7e64-4a38-a7ee-5c56c1224825");
+        payload.setHostUserId("host");
+        payload.setPlayers(List.of());
+        payload.setGameSlides(List.of());
+        return payload;
+    }
+}
@@ -0,0 +1,317 @@
+package com.vuiquiz.quizwebsocket.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.GameResultProperties;
+import com.vuiquiz.quizwebsocket.dto.SessionFinalizationDto;
+import com.vuiquiz.quizwebsocket.dto.SessionGameSlideDto;
+import com.vuiquiz.quizwebsocket.dto.SessionPlayerAnswerDto;
+import com.vuiquiz.quizwebsocket.dto.SessionPlayerDto;
+import com.vuiquiz.quizwebsocket.dto.SessionSlideCheckpointDto;
+import com.vuiquiz.quizwebsocket.exception.SessionAlreadyFinalizedException;
+import com.vuiquiz.quizwebsocket.model.GameSession;
+import com.vuiquiz.quizwebsocket.model.GameSlide;
+import com.vuiquiz.quizwebsocket.model.Player;
+import com.vuiquiz.quizwebsocket.model.Quiz;
+import com.vuiquiz.quizwebsocket.repository.GameResultBatchRepository;
+import com.vuiquiz.quizwebsocket.repository.GameSessionRepository;
+import com.vuiquiz.quizwebsocket.repository.QuizRepository;
+import com.vuiquiz.quizwebsocket.repository.UserAccountRepository;
+import com.vuiquiz.quizwebsocket.security.services.UserDetailsImpl;
+import com.vuiquiz.quizwebsocket.service.websocket.QuestionTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the service against mocked repositories backed by maps, which stand in for the stored rows.
+ */
+class GameResultServiceImplTest {
+
+    private static final UUID HOST_ID = UUID.randomUUID();
+    private static final UUID QUIZ_ID = UUID.randomUUID();
+    private static final long STARTED_AT = 1_746_977_232_795L;
+
+    private final GameSessionRepository gameSessionRepository = mock(GameSessionRepository.class);
+    private final UserAccountRepository userAccountRepository = mock(UserAccountRepository.class);
+    private final QuizRepository quizRepository = mock(QuizRepository.class);
+    private final GameResultBatchRepository batchRepository = mock(GameResultBatchRepository.class);
+    private GameResultServiceImpl service;
+
+    // <Finalize key, stored session>
+    private final Map<String, GameSession> sessions = new HashMap<>();
+    // <Session ID, <client ID, player ID>>
+    private final Map<UUID, Map<String, UUID>> players = new HashMap<>();
+    // <Session ID, stored slide indexes>
+    private final Map<UUID, Set<Integer>> slides = new HashMap<>();
+    private final Quiz quiz = new Quiz();
+
+    @BeforeEach
+    void setUp() {
+        service = new GameResultServiceImpl(gameSessionRepository, userAccountRepository, quizRepository, batchRepository,
+                new ObjectMapper(), mock(QuestionTimer.class), new GameResultProperties());
+
+        when(userAccountRepository.existsById(HOST_ID)).thenReturn(true);
+        when(quizRepository.existsById(QUIZ_ID)).thenReturn(true);
+        when(quizRepository.findById(QUIZ_ID)).thenReturn(Optional.of(quiz));
+        when(gameSessionRepository.findByFinalizeKey(any()))
+                .thenAnswer(invocation -> Optional.ofNullable(sessions.get(invocation.<String>getArgument(0))));
+        when(gameSessionRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            GameSession session = invocation.getArgument(0);
+            if (session.getSessionId() == null) {
+                session.setSessionId(UUID.randomUUID());
+            }
+            sessions.put(session.getFinalizeKey(), session);
+            return session;
+        });
+        when(batchRepository.findPlayerIdsByClientId(any()))
+                .thenAnswer(invocation -> new HashMap<>(players.getOrDefault(invocation.<UUID>getArgument(0), Map.of())));
+        when(batchRepository.findSlideIndexes(any()))
+                .thenAnswer(invocation -> new HashSet<>(slides.getOrDefault(invocation.<UUID>getArgument(0), Set.of())));
+        doAnswer(invocation -> {
+            for (Player player : invocation.<List<Player>>getArgument(0)) {
+                players.computeIfAbsent(player.getSessionId(), id -> new HashMap<>()).put(player.getClientId(), player.getPlayerId());
+            }
+            return null;
+        }).when(batchRepository).insertPlayers(anyList());
+        doAnswer(invocation -> {
+            for (GameSlide slide : invocation.<List<GameSlide>>getArgument(0)) {
+                slides.computeIfAbsent(slide.getSessionId(), id -> new HashSet<>()).add(slide.getSlideIndex());
+            }
+            return null;
+        }).when(batchRepository).insertGameSlides(anyList());
+
+        UserDetailsImpl host = new UserDetailsImpl(HOST_ID, "host", "host@example.com", "", List.of());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(host, null, host.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void returnsTheFirstSessionToARetriedFinalize() {
+        String first = service.saveSessionFinalization(finalization("retry-1", 2), HOST_ID);
+        String retry = service.saveSessionFinalization(finalization("retry-1", 2), HOST_ID);
+
+        assertThat(retry).isEqualTo(first);
+        assertThat(sessions).hasSize(1);
+        verify(gameSessionRepository, times(1)).saveAndFlush(any());
+        verify(batchRepository, times(1)).insertGameSlides(anyList());
+    }
+
+    @Test
+    void countsAPlayOnceWhateverTheRetries() {
+        service.saveSessionFinalization(finalization("retry-1", 2), HOST_ID);
+        service.saveSessionFinalization(finalization("retry-1", 2), HOST_ID);
+        service.saveSessionFinalization(finalization("retry-1", 2), HOST_ID);
+
+        assertThat(quiz.getPlayCount()).isEqualTo(1);
+    }
+
+    @Test
+    void locksTheFinalizeKeyBeforeLookingForTheStoredSession() {
+        SessionFinalizationDto payload = finalization("retry-1", 1);
+        String finalizeKey = service.finalizeKeyOf(payload, HOST_ID);
+
+        service.saveSessionFinalization(payload, HOST_ID);
+
+        InOrder order = inOrder(batchRepository, gameSessionRepository);
+        order.verify(batchRepository).lockFinalizeKey(finalizeKey);
+        order.verify(gameSessionRepository).findByFinalizeKey(finalizeKey);
+    }
+
+    @Test
+    void prefersTheIdempotencyKeyOverTheGameAndStartTime() {
+        SessionFinalizationDto keyed = finalization("retry-1", 1);
+        SessionFinalizationDto sameKeyOtherGame = finalization("retry-1", 1);
+        sameKeyOtherGame.setGamePin("654321");
+        sameKeyOtherGame.setSessionStartTime(STARTED_AT + 1);
+        SessionFinalizationDto unkeyed = finalization(null, 1);
+
+        assertThat(service.finalizeKeyOf(sameKeyOtherGame, HOST_ID)).isEqualTo(service.finalizeKeyOf(keyed, HOST_ID));
+        assertThat(service.finalizeKeyOf(unkeyed, HOST_ID)).isNotNull().isNotEqualTo(service.finalizeKeyOf(keyed, HOST_ID));
+    }
+
+    @Test
+    void fallsBackToTheGameAndStartTime() {
+        SessionFinalizationDto unkeyed = finalization(null, 1);
+        SessionFinalizationDto otherStart = finalization(null, 1);
+        otherStart.setSessionStartTime(STARTED_AT + 1);
+
+        assertThat(service.finalizeKeyOf(finalization(null, 2), HOST_ID)).isEqualTo(service.finalizeKeyOf(unkeyed, HOST_ID));
+        assertThat(service.finalizeKeyOf(otherStart, HOST_ID)).isNotEqualTo(service.finalizeKeyOf(unkeyed, HOST_ID));
+
+        unkeyed.setSessionStartTime(null);
+        assertThat(service.finalizeKeyOf(unkeyed, HOST_ID)).isNull();
+    }
+
+    @Test
+    void scopesTheKeyToTheHost() {
+        SessionFinalizationDto payload = finalization("retry-1", 1);
+
+        assertThat(service.finalizeKeyOf(payload, UUID.randomUUID())).isNotEqualTo(service.finalizeKeyOf(payload, HOST_ID));
+    }
+
+    @Test
+    void storesFinalizationsWithoutAKeyEveryTime() {
+        SessionFinalizationDto payload = finalization(null, 1);
+        payload.setSessionStartTime(null);
+
+        service.saveSessionFinalization(payload, HOST_ID);
+
+        verify(batchRepository, never()).lockFinalizeKey(any());
+        verify(gameSessionRepository, never()).findByFinalizeKey(any());
+        assertThat(quiz.getPlayCount()).isEqualTo(1);
+    }
+
+    @Test
+    void createsARunningSessionOnTheFirstCheckpoint() {
+        String sessionId = service.saveSlideCheckpoint(checkpoint(0));
+
+        GameSession session = sessions.values().iterator().next();
+        assertThat(session.getSessionId().toString()).isEqualTo(sessionId);
+        assertThat(session.getStatus()).isEqualTo("RUNNING");
+        assertThat(session.getHostId()).isEqualTo(HOST_ID);
+        assertThat(session.getQuizId()).isEqualTo(QUIZ_ID);
+        assertThat(slides.get(session.getSessionId())).containsExactly(0);
+        assertThat(players.get(session.getSessionId())).containsOnlyKeys("c1", "c2");
+    }
+
+    @Test
+    void skipsSlidesAnEarlierCheckpointStored() {
+        String first = service.saveSlideCheckpoint(checkpoint(0));
+        String second = service.saveSlideCheckpoint(checkpoint(0, 1));
+
+        assertThat(second).isEqualTo(first);
+        ArgumentCaptor<List<GameSlide>> inserted = slideCaptor();
+        verify(batchRepository, times(2)).insertGameSlides(inserted.capture());
+        assertThat(inserted.getAllValues().get(1)).extracting(GameSlide::getSlideIndex).containsExactly(1);
+        verify(batchRepository, times(1)).insertPlayers(anyList());
+        verify(batchRepository, times(1)).updatePlayers(anyList());
+    }
+
+    @Test
+    void refusesACheckpointAfterTheFinalize() {
+        service.saveSlideCheckpoint(checkpoint(0));
+        service.saveSessionFinalization(finalization("retry-1", 2), HOST_ID);
+
+        assertThatThrownBy(() -> service.saveSlideCheckpoint(checkpoint(2)))
+                .isInstanceOf(SessionAlreadyFinalizedException.class);
+        assertThat(slides.values().iterator().next()).containsExactlyInAnyOrder(0, 1);
+    }
+
+    @Test
+    void completesTheCheckpointedSessionOnFinalize() {
+        String checkpointed = service.saveSlideCheckpoint(checkpoint(0, 1));
+
+        String finalized = service.saveSessionFinalization(finalization("retry-1", 3), HOST_ID);
+
+        assertThat(finalized).isEqualTo(checkpointed);
+        assertThat(sessions).hasSize(1);
+        assertThat(sessions.values().iterator().next().getStatus()).isEqualTo("ENDED");
+        ArgumentCaptor<List<GameSlide>> inserted = slideCaptor();
+        verify(batchRepository, times(2)).insertGameSlides(inserted.capture());
+        assertThat(inserted.getAllValues().get(1)).extracting(GameSlide::getSlideIndex).containsExactly(2);
+        verify(batchRepository, times(1)).insertPlayers(anyList()); // By the checkpoint; the finalize updates them
+        verify(batchRepository, times(1)).updatePlayers(anyList());
+        assertThat(quiz.getPlayCount()).isEqualTo(1);
+    }
+
+    @Test
+    void refusesACheckpointWithNothingIdentifyingTheGame() {
+        SessionSlideCheckpointDto checkpoint = checkpoint(0);
+        checkpoint.setIdempotencyKey(null);
+        checkpoint.setSessionStartTime(null);
+
+        assertThatThrownBy(() -> service.saveSlideCheckpoint(checkpoint)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(sessions).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<GameSlide>> slideCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private static SessionSlideCheckpointDto checkpoint(int... slideIndexes) {
+        SessionSlideCheckpointDto checkpoint = new SessionSlideCheckpointDto();
+        checkpoint.setGamePin("123456");
+        checkpoint.setQuizId(QUIZ_ID.toString());
+        checkpoint.setHostUserId(HOST_ID.toString());
+        checkpoint.setIdempotencyKey("retry-1");
+        checkpoint.setSessionStartTime(STARTED_AT);
+        checkpoint.setGameType("LIVE");
+        checkpoint.setPlayers(List.of(player("c1"), player("c2")));
+        List<SessionGameSlideDto> closedSlides = new ArrayList<>();
+        for (int slideIndex : slideIndexes) {
+            closedSlides.add(slide(slideIndex));
+        }
+        checkpoint.setSlides(closedSlides);
+        return checkpoint;
+    }
+
+    private static SessionFinalizationDto finalization(String idempotencyKey, int slideCount) {
+        SessionFinalizationDto payload = new SessionFinalizationDto();
+        payload.setGamePin("123456");
+        payload.setQuizId(QUIZ_ID.toString());
+        payload.setHostUserId(HOST_ID.toString());
+        payload.setIdempotencyKey(idempotencyKey);
+        payload.setSessionStartTime(STARTED_AT);
+        payload.setSessionEndTime(STARTED_AT + 60_000);
+        payload.setGameType("LIVE");
+        payload.setFinalPlayerCount(2);
+        payload.setFinalSessionStatus("ENDED");
+        payload.setPlayers(List.of(player("c1"), player("c2")));
+        List<SessionGameSlideDto> gameSlides = new ArrayList<>();
+        for (int i = 0; i < slideCount; i++) {
+            gameSlides.add(slide(i));
+        }
+        payload.setGameSlides(gameSlides);
+        return payload;
+    }
+
+    private static SessionPlayerDto player(String clientId) {
+        SessionPlayerDto player = new SessionPlayerDto();
+        player.setClientId(clientId);
+        player.setNickname("Player " + clientId);
+        player.setStatus("FINISHED");
+        return player;
+    }
+
+    private static SessionGameSlideDto slide(int slideIndex) {
+        SessionGameSlideDto slide = new SessionGameSlideDto();
+        slide.setSlideIndex(slideIndex);
+        slide.setSlideType("QUESTION_SLIDE");
+        slide.setStatus("ENDED");
+        SessionPlayerAnswerDto answer = new SessionPlayerAnswerDto();
+        answer.setClientId("c1");
+        answer.setStatus("CORRECT");
+        slide.setPlayerAnswers(List.of(answer));
+        return slide;
+    }
+}
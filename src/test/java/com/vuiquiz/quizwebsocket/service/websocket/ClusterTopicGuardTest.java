@@ -0,0 +1,45 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterTopicGuardTest {
+
+    private final ClusterTopicGuard guard = new ClusterTopicGuard();
+
+    @Test
+    void dropsFramesForClusterTopics() {
+        assertThat(guard.preSend(frame(SimpMessageType.SUBSCRIBE, "/topic/cluster.session"), null)).isNull();
+        assertThat(guard.preSend(frame(SimpMessageType.MESSAGE, "/topic/cluster.session"), null)).isNull();
+    }
+
+    @Test
+    void dropsSubscriptionsWithBrokerWildcards() {
+        for (String destination : List.of("/topic/#", "/topic/*.session", "/topic/>", "/topic/player.#")) {
+            assertThat(guard.preSend(frame(SimpMessageType.SUBSCRIBE, destination), null)).as(destination).isNull();
+        }
+    }
+
+    @Test
+    void passesGameDestinations() {
+        for (String destination : List.of("/topic/player/123456", "/topic/host/123456", "/user/queue/private",
+                "/app/controller/123456")) {
+            Message<byte[]> frame = frame(SimpMessageType.SUBSCRIBE, destination);
+            assertThat(guard.preSend(frame, null)).as(destination).isSameAs(frame);
+        }
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId("s1");
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,173 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactFrameCodecTest {
+
+    private static final String FRAME = "{\"type\":\"QUESTION_START\",\"answers\":[{\"text\":\"Hà Nội\",\"points\":1000},"
+            + "{\"text\":\"Huế\",\"points\":0}],\"timeLimit\":20000}";
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = new CBORMapper();
+    private WebSocketProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private CompactFrameCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebSocketProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        codec = new CompactFrameCodec(properties, meterRegistry);
+    }
+
+    @Test
+    void sendsCborToSessionsThatAskedForIt() throws Exception {
+        connect("binary", CompactFrameCodec.CBOR);
+        byte[] json = FRAME.getBytes(StandardCharsets.UTF_8);
+
+        Message<?> sent = send("binary", json);
+
+        byte[] cbor = (byte[]) sent.getPayload();
+        assertThat(cbor.length).isLessThan(json.length);
+        assertThat(cborMapper.readTree(cbor)).isEqualTo(jsonMapper.readTree(json));
+        assertThat(sent.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        assertThat(SimpMessageHeaderAccessor.wrap(sent).getFirstNativeHeader(CompactFrameCodec.CODEC_HEADER)).isEqualTo(CompactFrameCodec.CBOR);
+        assertThat(meterRegistry.get("websocket.codec.frames").tag("direction", "outbound").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsJsonForSessionsThatDidNot() {
+        connect("text", null);
+        byte[] json = FRAME.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(send("text", json).getPayload()).isSameAs(json);
+    }
+
+    @Test
+    void forgetsTheNegotiationAtDisconnect() {
+        connect("binary", CompactFrameCodec.CBOR);
+        codec.inbound().preSend(frame(SimpMessageType.DISCONNECT, "binary", new byte[0]), null);
+        byte[] json = FRAME.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(send("binary", json).getPayload()).isSameAs(json);
+    }
+
+    @Test
+    void negotiatesNothingWhileDisabled() {
+        properties.getCodec().setEnabled(false);
+        connect("binary", CompactFrameCodec.CBOR);
+        byte[] json = FRAME.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(send("binary", json).getPayload()).isSameAs(json);
+    }
+
+    @Test
+    void transcodesABroadcastOncePerPayload() {
+        connect("a", CompactFrameCodec.CBOR);
+        connect("b", CompactFrameCodec.CBOR);
+        byte[] json = FRAME.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(send("b", json).getPayload()).isSameAs(send("a", json).getPayload());
+        // An equal but distinct payload is another frame
+        assertThat(send("a", FRAME.getBytes(StandardCharsets.UTF_8)).getPayload()).isNotSameAs(send("a", json).getPayload());
+    }
+
+    @Test
+    void passesNonJsonPayloadsThrough() {
+        connect("binary", CompactFrameCodec.CBOR);
+        byte[] text = "plain text".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(send("binary", text).getPayload()).isSameAs(text);
+    }
+
+    @Test
+    void turnsInboundCborIntoJson() throws Exception {
+        JsonNode answer = jsonMapper.readTree("{\"type\":\"ANSWER\",\"choice\":2,\"text\":\"Đà Nẵng\"}");
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("binary");
+        accessor.setDestination("/app/controller/123456");
+        accessor.setContentType(CompactFrameCodec.APPLICATION_CBOR);
+        accessor.setLeaveMutable(true);
+
+        Message<?> decoded = codec.inbound().preSend(
+                MessageBuilder.createMessage(cborMapper.writeValueAsBytes(answer), accessor.getMessageHeaders()), null);
+
+        assertThat(jsonMapper.readTree((byte[]) decoded.getPayload())).isEqualTo(answer);
+        assertThat(decoded.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(MimeTypeUtils.APPLICATION_JSON);
+        assertThat(SimpMessageHeaderAccessor.getDestination(decoded.getHeaders())).isEqualTo("/app/controller/123456");
+    }
+
+    @Test
+    void recognisesCborByTheCodecHeaderOnBinaryFrames() throws Exception {
+        JsonNode answer = jsonMapper.readTree("{\"type\":\"ANSWER\",\"choice\":[0,3]}");
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setSessionId("binary");
+        accessor.setDestination("/app/controller/123456");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(CompactFrameCodec.CODEC_HEADER, CompactFrameCodec.CBOR);
+
+        Message<?> decoded = codec.inbound().preSend(
+                MessageBuilder.createMessage(cborMapper.writeValueAsBytes(answer), accessor.getMessageHeaders()), null);
+
+        assertThat(jsonMapper.readTree((byte[]) decoded.getPayload())).isEqualTo(answer);
+    }
+
+    @Test
+    void dropsInboundFramesThatAreNotCbor() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("binary");
+        accessor.setContentType(CompactFrameCodec.APPLICATION_CBOR);
+
+        Message<?> decoded = codec.inbound().preSend(MessageBuilder.createMessage(new byte[]{(byte) 0xff}, accessor.getMessageHeaders()), null);
+
+        assertThat(decoded).isNull();
+        assertThat(meterRegistry.get("websocket.codec.failures").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void leavesJsonFromTextClientsAlone() {
+        byte[] json = FRAME.getBytes(StandardCharsets.UTF_8);
+        Message<byte[]> message = frame(SimpMessageType.MESSAGE, "text", json);
+
+        assertThat(codec.inbound().preSend(message, null)).isSameAs(message);
+    }
+
+    private void connect(String sessionId, String codecHeader) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        if (codecHeader != null) {
+            accessor.setNativeHeader(CompactFrameCodec.CODEC_HEADER, codecHeader);
+        }
+        codec.inbound().preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+    }
+
+    private Message<?> send(String sessionId, byte[] payload) {
+        Message<byte[]> message = frame(SimpMessageType.MESSAGE, sessionId, payload);
+        return ((ExecutorChannelInterceptor) codec.outbound()).beforeHandle(message, null, null);
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,145 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GameActionRelayEngineTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GameActionRelayEngine engine = new GameActionRelayEngine(objectMapper);
+
+    @Test
+    void replacesAnExistingCidAndKeepsTheRestByteForByte() throws IOException {
+        List<GameActionRelayEngine.RelayFrame> frames = relay("[{\"data\":{\"id\":45,\"cid\":\"spoofed\",\"content\":\"{\\\"a\\\": 1}\"}, \"ext\" : [1, 2]}]", "s1", false);
+
+        assertThat(frames).hasSize(1);
+        assertThat(text(frames.get(0))).isEqualTo("{\"data\":{\"id\":45,\"cid\":\"s1\",\"content\":\"{\\\"a\\\": 1}\"}, \"ext\" : [1, 2]}");
+        assertThat(frames.get(0).messageId()).isEqualTo(45);
+        assertThat(frames.get(0).isPrivate()).isFalse();
+    }
+
+    @Test
+    void appendsAMissingCidAsTheLastDataField() throws IOException {
+        assertThat(text(relay("[{\"data\":{\"id\":6}}]", "s1", false).get(0))).isEqualTo("{\"data\":{\"id\":6,\"cid\":\"s1\"}}");
+        assertThat(text(relay("[{\"data\":{}}]", "s1", false).get(0))).isEqualTo("{\"data\":{\"cid\":\"s1\"}}");
+    }
+
+    @Test
+    void leavesCidsOfNestedObjectsAlone() throws IOException {
+        String payload = "[{\"data\":{\"content\":{\"cid\":\"inner\",\"data\":{\"id\":8,\"cid\":\"deeper\"}},\"id\":2}}]";
+
+        GameActionRelayEngine.RelayFrame frame = relay(payload, "s1", false).get(0);
+
+        JsonNode data = objectMapper.readTree(frame.payload()).get("data");
+        assertThat(data.get("cid").asText()).isEqualTo("s1");
+        assertThat(data.get("content").get("cid").asText()).isEqualTo("inner");
+        assertThat(data.get("content").get("data").get("cid").asText()).isEqualTo("deeper");
+        assertThat(frame.messageId()).isEqualTo(2);
+    }
+
+    @Test
+    void splicesAtByteOffsetsAfterMultiByteAndEscapedText() throws IOException {
+        String payload = "[{\"data\":{\"content\":\"Câu hỏi 🎉 \\u00e9 \\\"cid\\\": \\\\\",\"cid\":\"x\",\"id\":1},\"note\":\"ü\"}]";
+
+        GameActionRelayEngine.RelayFrame frame = relay(payload, "s1", false).get(0);
+
+        assertThat(text(frame)).isEqualTo("{\"data\":{\"content\":\"Câu hỏi 🎉 \\u00e9 \\\"cid\\\": \\\\\",\"cid\":\"s1\",\"id\":1},\"note\":\"ü\"}");
+        assertThat(objectMapper.readTree(frame.payload()).get("data").get("content").asText()).isEqualTo("Câu hỏi 🎉 é \"cid\": \\");
+    }
+
+    @Test
+    void escapesTheSenderId() throws IOException {
+        GameActionRelayEngine.RelayFrame frame = relay("[{\"data\":{\"id\":1}}]", "a\"b\\c", false).get(0);
+
+        assertThat(objectMapper.readTree(frame.payload()).get("data").get("cid").asText()).isEqualTo("a\"b\\c");
+    }
+
+    @Test
+    void replacesACidThatIsNotAString() throws IOException {
+        assertThat(text(relay("[{\"data\":{\"cid\":{\"x\":[1]},\"id\":1}}]", "s1", false).get(0)))
+                .isEqualTo("{\"data\":{\"cid\":\"s1\",\"id\":1}}");
+    }
+
+    @Test
+    void skipsMessagesWithMoreThanOneCid() throws IOException {
+        List<GameActionRelayEngine.RelayFrame> frames = relay(
+                "[{\"data\":{\"cid\":\"a\",\"id\":1,\"cid\":\"b\"}},{\"data\":{\"id\":2}}]", "s1", false);
+
+        assertThat(frames).extracting(GameActionRelayEngine.RelayFrame::messageId).containsExactly(2);
+    }
+
+    @Test
+    void usesTheLastDataObjectLikeMapBinding() throws IOException {
+        GameActionRelayEngine.RelayFrame frame = relay("[{\"data\":{\"id\":1,\"cid\":\"a\"},\"data\":{\"id\":2}}]", "s1", false).get(0);
+
+        assertThat(frame.messageId()).isEqualTo(2);
+        assertThat(text(frame)).isEqualTo("{\"data\":{\"id\":1,\"cid\":\"a\"},\"data\":{\"id\":2,\"cid\":\"s1\"}}");
+    }
+
+    @Test
+    void sendsPrivateHostMessagesUntouched() throws IOException {
+        String message = "{\"data\":{\"id\":8,\"cid\":\"player-1\",\"content\":\"{}\"}}";
+
+        GameActionRelayEngine.RelayFrame frame = relay("[" + message + "]", "host", true).get(0);
+
+        assertThat(frame.isPrivate()).isTrue();
+        assertThat(frame.privateTargetSessionId()).isEqualTo("player-1");
+        assertThat(text(frame)).isEqualTo(message);
+    }
+
+    @Test
+    void relaysPrivateMessageIdsFromPlayersToEveryone() throws IOException {
+        GameActionRelayEngine.RelayFrame frame = relay("[{\"data\":{\"id\":8,\"cid\":\"player-1\"}}]", "s1", false).get(0);
+
+        assertThat(frame.isPrivate()).isFalse();
+        assertThat(text(frame)).isEqualTo("{\"data\":{\"id\":8,\"cid\":\"s1\"}}");
+    }
+
+    @Test
+    void skipsElementsWithoutADataObject() throws IOException {
+        List<GameActionRelayEngine.RelayFrame> frames = relay("[1,{\"data\":[1]},{\"other\":{}},{\"data\":{\"id\":3}}]", "s1", false);
+
+        assertThat(frames).extracting(GameActionRelayEngine.RelayFrame::messageId).containsExactly(3);
+    }
+
+    @Test
+    void rejectsMalformedPayloadsWithoutRelayingAnything() {
+        for (String payload : List.of(
+                "{\"data\":{\"id\":1}}",
+                "[{\"data\":{\"id\":1}},{\"data\":{\"id\":2}",
+                "[{\"data\":{\"id\":1}},{\"data\":{\"id\":2,}}]",
+                "[{\"data\":{\"id\":1}},{\"data\":{\"content\":\"unterminated}}]",
+                "[{\"data\":{\"id\":1}}] trailing",
+                "[{\"data\":{\"id\":1}}][{\"data\":{\"id\":2}}]",
+                "")) {
+            assertThatThrownBy(() -> relay(payload, "s1", false))
+                    .as(payload)
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void appendsDataFieldsToARelayedFrame() throws IOException {
+        GameActionRelayEngine.RelayFrame frame = relay("[{\"data\":{\"id\":45}}]", "s1", false).get(0);
+
+        byte[] stamped = engine.appendDataFields(frame.payload(), "\"serverReactionMs\":120");
+
+        assertThat(new String(stamped, StandardCharsets.UTF_8)).isEqualTo("{\"data\":{\"id\":45,\"cid\":\"s1\",\"serverReactionMs\":120}}");
+    }
+
+    private List<GameActionRelayEngine.RelayFrame> relay(String payload, String senderSessionId, boolean fromHost) throws IOException {
+        return engine.relay(payload.getBytes(StandardCharsets.UTF_8), senderSessionId, fromHost);
+    }
+
+    private static String text(GameActionRelayEngine.RelayFrame frame) {
+        return new String(frame.payload(), StandardCharsets.UTF_8);
+    }
+}
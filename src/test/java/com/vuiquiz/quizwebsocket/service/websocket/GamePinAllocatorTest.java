@@ -0,0 +1,106 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GamePinAllocatorTest {
+
+    private final GamePinAllocator allocator = new GamePinAllocator(new SimpleMeterRegistry());
+
+    @Test
+    void handsOutEveryPinOnceUntilExhausted() {
+        BitSet seen = new BitSet(GamePinAllocator.PIN_SPACE);
+        for (int i = 0; i < GamePinAllocator.PIN_SPACE; i++) {
+            String pin = allocator.allocate();
+            assertThat(pin).hasSize(6);
+            int offset = Integer.parseInt(pin) - GamePinAllocator.MIN_PIN;
+            assertThat(seen.get(offset)).as("PIN %s handed out twice", pin).isFalse();
+            seen.set(offset);
+        }
+
+        assertThat(allocator.allocatedCount()).isEqualTo(GamePinAllocator.PIN_SPACE);
+        assertThatThrownBy(allocator::allocate).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void reallocatesAReleasedPinOnceTheRestAreTaken() {
+        for (int i = 0; i < GamePinAllocator.PIN_SPACE; i++) {
+            allocator.allocate();
+        }
+
+        allocator.release("123456");
+
+        assertThat(allocator.isAllocated("123456")).isFalse();
+        assertThat(allocator.allocate()).isEqualTo("123456");
+        assertThatThrownBy(allocator::allocate).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void reservesAFreePinOnlyOnce() {
+        assertThat(allocator.reserve("654321")).isTrue();
+        assertThat(allocator.isAllocated("654321")).isTrue();
+        assertThat(allocator.allocatedCount()).isEqualTo(1);
+
+        assertThat(allocator.reserve("654321")).isFalse();
+        assertThat(allocator.allocatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void refusesToReserveAnAllocatedPin() {
+        String pin = allocator.allocate();
+
+        assertThat(allocator.reserve(pin)).isFalse();
+        assertThat(allocator.allocatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void refusesToReservePinsOutsideTheSpace() {
+        for (String pin : List.of("099999", "1000000", "12345", "abcdef", "-12345", "")) {
+            assertThat(allocator.reserve(pin)).as(pin).isFalse();
+        }
+        assertThat(allocator.reserve(null)).isFalse();
+        assertThat(allocator.allocatedCount()).isZero();
+    }
+
+    @Test
+    void ignoresASecondRelease() {
+        String first = allocator.allocate();
+        String second = allocator.allocate();
+
+        allocator.release(first);
+        allocator.release(first);
+
+        assertThat(allocator.allocatedCount()).isEqualTo(1);
+        assertThat(allocator.isAllocated(second)).isTrue();
+    }
+
+    @Test
+    void ignoresReleasesOfPinsItNeverHandedOut() {
+        String pin = allocator.allocate();
+        String other = pin.equals("500000") ? "500001" : "500000";
+
+        allocator.release(other);
+        allocator.release("abc");
+        allocator.release(null);
+
+        assertThat(allocator.allocatedCount()).isEqualTo(1);
+        assertThat(allocator.isAllocated(pin)).isTrue();
+    }
+
+    @Test
+    void reservesAReleasedPinAgain() {
+        String pin = allocator.allocate();
+        allocator.release(pin);
+
+        assertThat(allocator.reserve(pin)).isTrue();
+        allocator.release(pin);
+        assertThat(allocator.isAllocated(pin)).isFalse();
+        assertThat(allocator.allocatedCount()).isZero();
+    }
+}
@@ -0,0 +1,238 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import com.vuiquiz.quizwebsocket.service.websocket.GameSessionManager.ParticipantRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GameSessionManagerTest {
+
+    // Long enough for the reaper to see a timeout of 1 ms as exceeded
+    private static final long PAST_TIMEOUT_MS = 20;
+
+    private final List<String> evictions = new ArrayList<>();
+    private WebSocketProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private GamePinAllocator pinAllocator;
+    private GameSessionManager sessionManager;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebSocketProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        pinAllocator = new GamePinAllocator(meterRegistry);
+        sessionManager = new GameSessionManager(pinAllocator, properties, meterRegistry);
+        sessionManager.addChangeListener(new GameSessionManager.SessionChangeListener() {
+            @Override
+            public void sessionEvicted(String gamePin, GameSessionManager.EvictionReason reason) {
+                evictions.add(gamePin + " " + reason);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionManager.shutdown();
+    }
+
+    @Test
+    void evictsPlaceholdersNoHostJoined() throws InterruptedException {
+        properties.getPin().setPlaceholderTtlMs(1);
+        String gamePin = sessionManager.createSession();
+        Thread.sleep(PAST_TIMEOUT_MS);
+
+        sessionManager.reapSessions();
+
+        assertThat(sessionManager.getSession(gamePin)).isNull();
+        assertThat(pinAllocator.isAllocated(gamePin)).isFalse();
+        assertThat(evictions).containsExactly(gamePin + " PLACEHOLDER_EXPIRED");
+        assertThat(evictedCount(GameSessionManager.EvictionReason.PLACEHOLDER_EXPIRED)).isEqualTo(1);
+    }
+
+    @Test
+    void keepsPlaceholdersWithinTheirTtl() {
+        String gamePin = sessionManager.createSession();
+
+        sessionManager.reapSessions();
+
+        assertThat(sessionManager.getSession(gamePin)).isNotNull();
+        assertThat(evictions).isEmpty();
+    }
+
+    @Test
+    void evictsGamesWhoseHostDidNotComeBack() throws InterruptedException {
+        properties.getReaper().setHostlessTimeoutMs(1);
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.addParticipant(gamePin, "player");
+        sessionManager.removeParticipant("host");
+        Thread.sleep(PAST_TIMEOUT_MS);
+
+        sessionManager.reapSessions();
+
+        assertThat(sessionManager.getSession(gamePin)).isNull();
+        assertThat(sessionManager.findParticipant("player")).isNull();
+        assertThat(pinAllocator.isAllocated(gamePin)).isFalse();
+        assertThat(evictions).containsExactly(gamePin + " HOSTLESS");
+    }
+
+    @Test
+    void keepsGamesWhoseHostIsConnected() throws InterruptedException {
+        properties.getReaper().setHostlessTimeoutMs(1);
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.addParticipant(gamePin, "player");
+        Thread.sleep(PAST_TIMEOUT_MS);
+
+        sessionManager.reapSessions();
+
+        assertThat(sessionManager.getSession(gamePin)).isNotNull();
+        assertThat(evictions).isEmpty();
+    }
+
+    @Test
+    void evictsIdleGames() throws InterruptedException {
+        properties.getReaper().setIdleTimeoutMs(1);
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.addParticipant(gamePin, "player");
+        Thread.sleep(PAST_TIMEOUT_MS);
+
+        sessionManager.reapSessions();
+
+        assertThat(sessionManager.getSession(gamePin)).isNull();
+        assertThat(sessionManager.findParticipant("host")).isNull();
+        assertThat(sessionManager.findParticipant("player")).isNull();
+        assertThat(evictions).containsExactly(gamePin + " IDLE");
+    }
+
+    @Test
+    void keepsGamesThatWereTouchedRecently() throws InterruptedException {
+        properties.getReaper().setIdleTimeoutMs(PAST_TIMEOUT_MS * 5);
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        Thread.sleep(PAST_TIMEOUT_MS * 3);
+        sessionManager.getSession(gamePin).touch();
+        Thread.sleep(PAST_TIMEOUT_MS * 3);
+
+        sessionManager.reapSessions();
+
+        assertThat(sessionManager.getSession(gamePin)).isNotNull();
+    }
+
+    @Test
+    void leavesTheIdleDecisionToTheNodesOfRemoteParticipants() throws InterruptedException {
+        properties.getReaper().setIdleTimeoutMs(1);
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.applyRemotePlayer(gamePin, "remote-player");
+        Thread.sleep(PAST_TIMEOUT_MS);
+
+        sessionManager.reapSessions();
+
+        assertThat(sessionManager.getSession(gamePin)).isNotNull();
+        assertThat(evictions).isEmpty();
+    }
+
+    @Test
+    void indexesEachParticipantWithItsGameAndRole() {
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.addParticipant(gamePin, "player");
+
+        assertThat(sessionManager.findParticipant("host"))
+                .isEqualTo(new GameSessionManager.ParticipantRef(gamePin, ParticipantRole.HOST));
+        assertThat(sessionManager.findParticipant("player"))
+                .isEqualTo(new GameSessionManager.ParticipantRef(gamePin, ParticipantRole.PLAYER));
+        assertThat(sessionManager.findGamePinBySessionId("player")).isEqualTo(gamePin);
+        assertThat(sessionManager.findParticipant("stranger")).isNull();
+        assertThat(sessionManager.countLocalParticipants()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsASessionInTheFirstGameItJoined() {
+        String first = sessionManager.createSession();
+        String second = sessionManager.createSession();
+        sessionManager.trySetHost(first, "host1");
+        sessionManager.trySetHost(second, "host2");
+        sessionManager.addParticipant(first, "player");
+
+        sessionManager.addParticipant(second, "player");
+
+        assertThat(sessionManager.findGamePinBySessionId("player")).isEqualTo(first);
+        assertThat(sessionManager.getSession(second).getAllPlayerSessionIds()).isEmpty();
+        assertThat(sessionManager.trySetHost(sessionManager.createSession(), "host1")).isFalse();
+    }
+
+    @Test
+    void promotesAPlayerToHostOfTheSameGame() {
+        String gamePin = sessionManager.createSession();
+        sessionManager.addParticipant(gamePin, "player");
+
+        assertThat(sessionManager.trySetHost(gamePin, "player")).isTrue();
+
+        assertThat(sessionManager.findParticipant("player").role()).isEqualTo(ParticipantRole.HOST);
+    }
+
+    @Test
+    void unindexesRemovedParticipantsAndReleasesAbandonedGames() {
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.addParticipant(gamePin, "player");
+
+        assertThat(sessionManager.removeParticipant("player")).isEqualTo(gamePin);
+        assertThat(sessionManager.findParticipant("player")).isNull();
+        assertThat(sessionManager.removeParticipant("player")).isNull();
+
+        assertThat(sessionManager.removeParticipant("host")).isEqualTo(gamePin);
+        assertThat(sessionManager.getSession(gamePin)).isNull();
+        assertThat(pinAllocator.isAllocated(gamePin)).isFalse();
+        assertThat(sessionManager.countLocalParticipants()).isZero();
+    }
+
+    @Test
+    void countsAResumedPlayerOnce() {
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.addParticipant(gamePin, "player");
+
+        assertThat(sessionManager.bindResumedSession("resumed", "player")).isTrue();
+
+        assertThat(sessionManager.findGamePinBySessionId("resumed")).isEqualTo(gamePin);
+        assertThat(sessionManager.countLocalParticipants()).isEqualTo(2);
+        assertThat(meterRegistry.get("websocket.participants.active").gauge().value()).isEqualTo(2);
+        Map<String, GameSessionManager.ParticipantRef> visited = new HashMap<>();
+        sessionManager.forEachLocalParticipant(visited::put);
+        assertThat(visited).containsOnlyKeys("host", "player");
+
+        sessionManager.unbindResumedSession("resumed");
+
+        assertThat(sessionManager.findParticipant("resumed")).isNull();
+        assertThat(sessionManager.findParticipant("player")).isNotNull();
+        assertThat(sessionManager.countLocalParticipants()).isEqualTo(2);
+    }
+
+    @Test
+    void bindsResumedSessionsOnlyToPlayers() {
+        String gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+
+        assertThat(sessionManager.bindResumedSession("resumed", "host")).isFalse();
+        assertThat(sessionManager.bindResumedSession("resumed", "gone")).isFalse();
+        assertThat(sessionManager.findParticipant("resumed")).isNull();
+        assertThat(sessionManager.countLocalParticipants()).isEqualTo(1);
+    }
+
+    private double evictedCount(GameSessionManager.EvictionReason reason) {
+        return meterRegistry.get("websocket.sessions.evicted").tag("reason", reason.name().toLowerCase()).counter().count();
+    }
+}
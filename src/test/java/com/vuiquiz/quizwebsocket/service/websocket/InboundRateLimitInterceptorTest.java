@@ -0,0 +1,116 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InboundRateLimitInterceptorTest {
+
+    private static final int SESSION_BURST = 3;
+    private static final int GAME_BURST = 10;
+
+    private WebSocketProperties properties;
+    private GameSessionManager sessionManager;
+    private InboundRateLimitInterceptor interceptor;
+    private String gamePin;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebSocketProperties();
+        // Slow refill, so a test never earns a token back while it runs
+        properties.getRateLimit().setSessionRatePerSecond(0.1);
+        properties.getRateLimit().setSessionBurst(SESSION_BURST);
+        properties.getRateLimit().setGameRatePerSecond(0.1);
+        properties.getRateLimit().setGameBurst(GAME_BURST);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        sessionManager = new GameSessionManager(new GamePinAllocator(meterRegistry), properties, meterRegistry);
+        interceptor = new InboundRateLimitInterceptor(properties, sessionManager, meterRegistry);
+
+        gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.addParticipant(gamePin, "player");
+    }
+
+    @AfterEach
+    void tearDown() {
+        interceptor.shutdown();
+        sessionManager.shutdown();
+    }
+
+    @Test
+    void dropsPlayerFramesBeyondTheSessionBurst() {
+        assertThat(acceptedOf("player", SESSION_BURST + 2)).isEqualTo(SESSION_BURST);
+    }
+
+    @Test
+    void givesTheHostTheGameLimits() {
+        // e.g. one REVEAL_ANSWER per player
+        assertThat(acceptedOf("host", GAME_BURST + 2)).isEqualTo(GAME_BURST);
+    }
+
+    @Test
+    void sharesTheGameBucketBetweenAllSessionsOfAGame() {
+        for (int i = 0; i < GAME_BURST; i++) {
+            sessionManager.addParticipant(gamePin, "p" + i);
+            assertThat(interceptor.preSend(send("p" + i), null)).isNotNull();
+        }
+        assertThat(interceptor.preSend(send("player"), null)).isNull();
+    }
+
+    @Test
+    void startsOverAfterADisconnect() {
+        acceptedOf("player", SESSION_BURST + 1);
+
+        interceptor.preSend(frame(SimpMessageType.DISCONNECT, "player", null), null);
+
+        assertThat(interceptor.preSend(frame(SimpMessageType.SUBSCRIBE, "player", "/topic/player/" + gamePin), null)).isNotNull();
+    }
+
+    @Test
+    void neverThrottlesConnectFrames() {
+        for (int i = 0; i < SESSION_BURST * 2; i++) {
+            assertThat(interceptor.preSend(frame(SimpMessageType.CONNECT, "player", null), null)).isNotNull();
+        }
+    }
+
+    @Test
+    void answersWithAnErrorWhenConfiguredTo() {
+        properties.getRateLimit().setRejectWithError(true);
+        acceptedOf("player", SESSION_BURST);
+
+        assertThatThrownBy(() -> interceptor.preSend(send("player"), null)).isInstanceOf(MessageDeliveryException.class);
+    }
+
+    private int acceptedOf(String sessionId, int frames) {
+        int accepted = 0;
+        for (int i = 0; i < frames; i++) {
+            if (interceptor.preSend(send(sessionId), null) != null) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    private Message<byte[]> send(String sessionId) {
+        return frame(SimpMessageType.MESSAGE, sessionId, "/app/controller/" + gamePin);
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
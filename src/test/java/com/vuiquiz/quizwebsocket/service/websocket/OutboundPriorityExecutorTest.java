@@ -0,0 +1,166 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundPriorityExecutorTest {
+
+    private static final String GAME_TOPIC = "/topic/player/123456";
+    private static final String PRIVATE_QUEUE = "/user/queue/private";
+
+    private OutboundPriorityExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void keepsPublishOrderWithinASession() throws InterruptedException {
+        executor = newExecutor(1);
+        CountDownLatch release = blockThread("other");
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+
+        executor.execute(frame("s1", GAME_TOPIC, OutboundPriority.BULK, () -> sent.add("ANSWER"), done));
+        executor.execute(frame("s1", GAME_TOPIC, OutboundPriority.URGENT, () -> sent.add("TIME_UP"), done));
+        release.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sent).containsExactly("ANSWER", "TIME_UP");
+    }
+
+    @Test
+    void sendsAnUrgentFrameAheadOfBulkFramesForOtherDestinationsOfTheSession() throws InterruptedException {
+        executor = newExecutor(1);
+        CountDownLatch release = blockThread("other");
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+
+        executor.execute(frame("s1", PRIVATE_QUEUE, OutboundPriority.BULK, () -> sent.add("ANSWERS 1"), done));
+        executor.execute(frame("s1", PRIVATE_QUEUE, OutboundPriority.BULK, () -> sent.add("ANSWERS 2"), done));
+        executor.execute(frame("s1", GAME_TOPIC, OutboundPriority.NORMAL, () -> sent.add("REVEAL"), done));
+        executor.execute(frame("s1", GAME_TOPIC, OutboundPriority.URGENT, () -> sent.add("START_QUESTION"), done));
+        release.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        // REVEAL goes first since it is ahead of START_QUESTION on the game topic
+        assertThat(sent).containsExactly("REVEAL", "START_QUESTION", "ANSWERS 1", "ANSWERS 2");
+    }
+
+    @Test
+    void servesTheSessionWithTheMostUrgentFrameFirst() throws InterruptedException {
+        executor = newExecutor(1);
+        CountDownLatch release = blockThread("other");
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+
+        executor.execute(frame("s1", OutboundPriority.BULK, () -> sent.add("s1 ANSWER"), done));
+        executor.execute(frame("s2", OutboundPriority.NORMAL, () -> sent.add("s2 REVEAL"), done));
+        executor.execute(frame("s3", OutboundPriority.URGENT, () -> sent.add("s3 START_QUESTION"), done));
+        release.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sent).containsExactly("s3 START_QUESTION", "s2 REVEAL", "s1 ANSWER");
+    }
+
+    @Test
+    void neverSendsToOneSessionFromTwoThreads() throws InterruptedException {
+        executor = newExecutor(8);
+        int frames = 2000;
+        List<Integer> sent = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean sending = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(frames);
+        OutboundPriority[] classes = OutboundPriority.values();
+
+        for (int i = 0; i < frames; i++) {
+            int index = i;
+            executor.execute(frame("s1", GAME_TOPIC, classes[i % classes.length], () -> {
+                if (!sending.compareAndSet(false, true)) {
+                    overlapped.set(true);
+                }
+                sent.add(index);
+                sending.set(false);
+            }, done));
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(overlapped).isFalse();
+        for (int i = 0; i < frames; i++) {
+            assertThat(sent.get(i)).isEqualTo(i);
+        }
+        assertThat(executor.queuedTasks()).isZero();
+    }
+
+    private OutboundPriorityExecutor newExecutor(int threads) {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getOutbound().setThreads(threads);
+        return new OutboundPriorityExecutor(properties, new SimpleMeterRegistry());
+    }
+
+    // Occupies the executor's only thread until the returned latch is released, so the next frames queue up
+    private CountDownLatch blockThread(String sessionId) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(frame(sessionId, OutboundPriority.NORMAL, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, new CountDownLatch(1)));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return release;
+    }
+
+    private static MessageHandlingRunnable frame(String sessionId, OutboundPriority priority, Runnable send, CountDownLatch done) {
+        return frame(sessionId, GAME_TOPIC, priority, send, done);
+    }
+
+    private static MessageHandlingRunnable frame(String sessionId, String destination, OutboundPriority priority,
+                                                 Runnable send, CountDownLatch done) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        accessor.setHeader(OutboundPriority.HEADER, priority);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        MessageHandler handler = m -> {
+            send.run();
+            done.countDown();
+        };
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return handler;
+            }
+
+            @Override
+            public void run() {
+                handler.handleMessage(message);
+            }
+        };
+    }
+}
@@ -0,0 +1,169 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlayerResumeServiceTest {
+
+    private static final long GRACE_MS = 50;
+
+    private WebSocketProperties properties;
+    private GameSessionManager sessionManager;
+    private RosterUpdateCoalescer coalescer;
+    private PlayerResumeService resumeService;
+    private String gamePin;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebSocketProperties();
+        properties.getResume().setGraceMs(GRACE_MS);
+        properties.getResume().setGameReplayCapacity(4);
+        properties.getResume().setPlayerReplayCapacity(2);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        sessionManager = new GameSessionManager(new GamePinAllocator(meterRegistry), properties, meterRegistry);
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+        coalescer = new RosterUpdateCoalescer(sessionManager, new GameMessageBroadcaster(template), properties,
+                new SlowConsumerPolicy(properties, meterRegistry));
+        coalescer.register();
+        resumeService = new PlayerResumeService(sessionManager, coalescer, properties);
+
+        gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+        sessionManager.addParticipant(gamePin, "player");
+    }
+
+    @AfterEach
+    void tearDown() {
+        resumeService.shutdown();
+        coalescer.shutdown();
+        sessionManager.shutdown();
+    }
+
+    @Test
+    void resumesThePlayerOwningTheToken() {
+        String token = resumeService.issueToken(gamePin, "player");
+        resumeService.onDisconnect("player");
+
+        assertThat(resumeService.bindOnConnect("resumed", token)).isEqualTo("player");
+
+        assertThat(resumeService.participantIdOf("resumed")).isEqualTo("player");
+        assertThat(resumeService.currentSessionOf("player")).isEqualTo("resumed");
+        assertThat(sessionManager.findGamePinBySessionId("resumed")).isEqualTo(gamePin);
+    }
+
+    @Test
+    void rejectsUnknownTokens() {
+        resumeService.issueToken(gamePin, "player");
+
+        assertThat(resumeService.bindOnConnect("resumed", "not-a-token")).isNull();
+        assertThat(resumeService.participantIdOf("resumed")).isEqualTo("resumed");
+        assertThat(sessionManager.findParticipant("resumed")).isNull();
+    }
+
+    @Test
+    void issuesNoTokensWhenDisabled() {
+        properties.getResume().setEnabled(false);
+
+        assertThat(resumeService.issueToken(gamePin, "player")).isNull();
+        assertThat(resumeService.onDisconnect("player")).isEqualTo(PlayerResumeService.DisconnectOutcome.NOT_RESUMABLE);
+    }
+
+    @Test
+    void ignoresTheOldSocketOfAResumedPlayer() {
+        String token = resumeService.issueToken(gamePin, "player");
+        resumeService.bindOnConnect("resumed", token); // The new socket arrives before the old one closes
+
+        assertThat(resumeService.onDisconnect("player")).isEqualTo(PlayerResumeService.DisconnectOutcome.SUPERSEDED);
+        assertThat(resumeService.onDisconnect("resumed")).isEqualTo(PlayerResumeService.DisconnectOutcome.DEFERRED);
+        assertThat(sessionManager.findParticipant("resumed")).isNull();
+        assertThat(sessionManager.findParticipant("player")).isNotNull();
+    }
+
+    @Test
+    void removesPlayersThatDoNotComeBackWithinTheGracePeriod() throws InterruptedException {
+        String token = resumeService.issueToken(gamePin, "player");
+        assertThat(resumeService.onDisconnect("player")).isEqualTo(PlayerResumeService.DisconnectOutcome.DEFERRED);
+        assertThat(sessionManager.findParticipant("player")).isNotNull();
+
+        Thread.sleep(GRACE_MS * 4);
+
+        assertThat(sessionManager.findParticipant("player")).isNull();
+        assertThat(sessionManager.getSession(gamePin).getAllPlayerSessionIds()).isEmpty();
+        assertThat(resumeService.bindOnConnect("resumed", token)).isNull();
+    }
+
+    @Test
+    void keepsPlayersThatResumeWithinTheGracePeriod() throws InterruptedException {
+        String token = resumeService.issueToken(gamePin, "player");
+        resumeService.onDisconnect("player");
+        resumeService.bindOnConnect("resumed", token);
+
+        Thread.sleep(GRACE_MS * 4);
+
+        assertThat(sessionManager.findParticipant("player")).isNotNull();
+        assertThat(resumeService.participantIdOf("resumed")).isEqualTo("player");
+    }
+
+    @Test
+    void replaysBroadcastsAndPrivateFramesAfterTheLastSeenSeq() {
+        String token = resumeService.issueToken(gamePin, "player");
+        assertThat(resumeService.recordBroadcast(gamePin, frame("b1"))).containsEntry(PlayerResumeService.SEQ_HEADER, "1");
+        resumeService.recordPrivate(gamePin, "player", frame("p2"));
+        resumeService.recordBroadcast(gamePin, frame("b3"));
+        resumeService.recordPrivate(gamePin, "other", frame("ignored")); // No slot, so no seq either
+        resumeService.recordBroadcast(gamePin, frame("b4"));
+        resumeService.onDisconnect("player");
+        resumeService.bindOnConnect("resumed", token);
+
+        PlayerResumeService.Replay replay = resumeService.replay(gamePin, "resumed", 1);
+
+        assertThat(replay.playerId()).isEqualTo("player");
+        assertThat(replay.currentSeq()).isEqualTo(4);
+        assertThat(replay.complete()).isTrue();
+        assertThat(replay.frames()).extracting(PlayerResumeService.ReplayFrame::seq).containsExactly(2L, 3L, 4L);
+        assertThat(payloads(replay.frames())).containsExactly("p2", "b3", "b4");
+    }
+
+    @Test
+    void reportsAReplayAsIncompleteOnceMissedFramesWereEvicted() {
+        String token = resumeService.issueToken(gamePin, "player");
+        for (int i = 1; i <= 6; i++) {
+            resumeService.recordBroadcast(gamePin, frame("b" + i)); // Capacity 4 keeps 3..6
+        }
+        resumeService.bindOnConnect("resumed", token);
+
+        PlayerResumeService.Replay behind = resumeService.replay(gamePin, "resumed", 1);
+        assertThat(behind.complete()).isFalse();
+        assertThat(payloads(behind.frames())).containsExactly("b3", "b4", "b5", "b6");
+
+        PlayerResumeService.Replay caughtUp = resumeService.replay(gamePin, "resumed", 2);
+        assertThat(caughtUp.complete()).isTrue();
+        assertThat(caughtUp.frames()).hasSize(4);
+    }
+
+    @Test
+    void replaysOnlyToSessionsThatResumedAPlayerOfTheGame() {
+        String token = resumeService.issueToken(gamePin, "player");
+        resumeService.bindOnConnect("resumed", token);
+
+        assertThat(resumeService.replay(gamePin, "player", 0)).isNull();
+        assertThat(resumeService.replay("000000", "resumed", 0)).isNull();
+    }
+
+    private static byte[] frame(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> payloads(List<PlayerResumeService.ReplayFrame> frames) {
+        return frames.stream().map(f -> new String(f.payload(), StandardCharsets.UTF_8)).toList();
+    }
+}
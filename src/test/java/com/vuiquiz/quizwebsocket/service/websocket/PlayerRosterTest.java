@@ -0,0 +1,110 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PlayerRosterTest {
+
+    private final PlayerRoster roster = new PlayerRoster();
+
+    @Test
+    void bumpsTheVersionOnlyWhenTheRosterChanges() {
+        assertThat(roster.add("p1")).isTrue();
+        assertThat(roster.add("p2")).isTrue();
+        assertThat(roster.version()).isEqualTo(2);
+
+        assertThat(roster.add("p1")).isFalse();
+        assertThat(roster.remove("unknown")).isFalse();
+        assertThat(roster.version()).isEqualTo(2);
+
+        assertThat(roster.remove("p1")).isTrue();
+        assertThat(roster.version()).isEqualTo(3);
+        assertThat(roster.size()).isEqualTo(1);
+        assertThat(roster.contains("p1")).isFalse();
+    }
+
+    @Test
+    void sharesASnapshotUntilTheRosterChanges() {
+        roster.add("p1");
+        PlayerRoster.Snapshot first = roster.snapshot();
+
+        assertThat(roster.snapshot()).isSameAs(first);
+
+        roster.add("p2");
+        PlayerRoster.Snapshot second = roster.snapshot();
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.version()).isEqualTo(2);
+        assertThat(second.sessionIds()).containsExactlyInAnyOrder("p1", "p2");
+    }
+
+    @Test
+    void keepsSnapshotsAsTheyWereTaken() {
+        roster.add("p1");
+        PlayerRoster.Snapshot snapshot = roster.snapshot();
+
+        roster.remove("p1");
+        roster.add("p2");
+
+        assertThat(snapshot.version()).isEqualTo(1);
+        assertThat(snapshot.sessionIds()).containsExactly("p1");
+        assertThat(snapshot.contains("p2")).isFalse();
+        assertThatThrownBy(() -> snapshot.sessionIds().add("p3")).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void startsEmptyAtVersionZero() {
+        PlayerRoster.Snapshot snapshot = roster.snapshot();
+
+        assertThat(snapshot.version()).isZero();
+        assertThat(snapshot.size()).isZero();
+    }
+
+    @Test
+    void neverTakesASnapshotMissingChangesItsVersionCounts() throws Exception {
+        int writers = 4;
+        int joinsPerWriter = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> joins = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                joins.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < joinsPerWriter; i++) {
+                        roster.add(writer + "-" + i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            long lastVersion = 0;
+            while (roster.version() < (long) writers * joinsPerWriter) {
+                PlayerRoster.Snapshot snapshot = roster.snapshot();
+                // Only joins so far, one version each: a snapshot holds at least as many players as its version
+                assertThat(snapshot.size()).isGreaterThanOrEqualTo((int) snapshot.version());
+                assertThat(snapshot.version()).isGreaterThanOrEqualTo(lastVersion);
+                lastVersion = snapshot.version();
+            }
+            for (Future<?> join : joins) {
+                join.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PlayerRoster.Snapshot last = roster.snapshot();
+        assertThat(last.version()).isEqualTo((long) writers * joinsPerWriter);
+        assertThat(last.size()).isEqualTo(writers * joinsPerWriter);
+    }
+}
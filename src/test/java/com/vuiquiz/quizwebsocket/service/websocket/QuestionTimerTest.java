@@ -0,0 +1,181 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QuestionTimerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Frames sent to /topic/player/{pin}
+    private final BlockingQueue<JsonNode> playerFrames = new LinkedBlockingQueue<>();
+    private WebSocketProperties properties;
+    private GameSessionManager sessionManager;
+    private QuestionTimer timer;
+    private String gamePin;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebSocketProperties();
+        properties.getQuestionTimer().setCloseGraceMs(0);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        sessionManager = new GameSessionManager(new GamePinAllocator(meterRegistry), properties, meterRegistry);
+        PlayerResumeService playerResumeService = mock(PlayerResumeService.class);
+        when(playerResumeService.recordBroadcast(anyString(), any())).thenReturn(Map.of());
+        InboundLaneExecutor inboundLaneExecutor = mock(InboundLaneExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(inboundLaneExecutor).executeForGame(anyString(), any());
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> capture(message));
+        timer = new QuestionTimer(sessionManager, new GameActionRelayEngine(objectMapper), new GameMessageBroadcaster(template),
+                playerResumeService, mock(TopicLastValueCache.class), mock(AnswerDigestService.class), inboundLaneExecutor,
+                properties, meterRegistry);
+        timer.register();
+
+        gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdown();
+        sessionManager.shutdown();
+    }
+
+    @Test
+    void relaysAnswersUnchangedBeforeAnyQuestion() {
+        byte[] answer = answer("p1");
+
+        assertThat(timer.stampAnswer(gamePin, "p1", answer)).isSameAs(answer);
+    }
+
+    @Test
+    void stampsAnswersWhileTheWindowIsOpen() throws IOException {
+        timer.onHostBroadcast(gamePin, GameMessageIds.START_QUESTION, startQuestion("{\"questionIndex\":3}"));
+
+        JsonNode data = objectMapper.readTree(timer.stampAnswer(gamePin, "p1", answer("p1"))).get("data");
+
+        assertThat(data.get(QuestionTimer.SERVER_REACTION_FIELD).asInt()).isBetween(0, 5_000);
+        assertThat(data.get(QuestionTimer.SERVER_ANSWERED_AT_FIELD).asLong()).isPositive();
+        QuestionTimer.MeasuredAnswer measured = timer.measuredAnswer(gamePin, 3, "p1");
+        assertThat(measured).isNotNull();
+        assertThat(measured.reactionMs()).isEqualTo(data.get(QuestionTimer.SERVER_REACTION_FIELD).asInt());
+        assertThat(timer.measuredAnswer(gamePin, 0, "p1")).isNull();
+    }
+
+    @Test
+    void keepsAPlayersFirstAnswerToAQuestion() throws InterruptedException {
+        timer.onHostBroadcast(gamePin, GameMessageIds.START_QUESTION, startQuestion("{\"questionIndex\":0}"));
+        timer.stampAnswer(gamePin, "p1", answer("p1"));
+        QuestionTimer.MeasuredAnswer first = timer.measuredAnswer(gamePin, 0, "p1");
+
+        Thread.sleep(20);
+        timer.stampAnswer(gamePin, "p1", answer("p1"));
+
+        assertThat(timer.measuredAnswer(gamePin, 0, "p1")).isEqualTo(first);
+    }
+
+    @Test
+    void stampsButDoesNotKeepAnswersToQuestionsWithoutAnIndex() throws IOException {
+        timer.onHostBroadcast(gamePin, GameMessageIds.START_QUESTION, startQuestion("{\"time\":0}"));
+
+        JsonNode data = objectMapper.readTree(timer.stampAnswer(gamePin, "p1", answer("p1"))).get("data");
+
+        assertThat(data.has(QuestionTimer.SERVER_REACTION_FIELD)).isTrue();
+        assertThat(timer.measuredAnswer(gamePin, 0, "p1")).isNull();
+    }
+
+    @Test
+    void rejectsAnswersAfterTheHostClosedTheWindow() {
+        timer.onHostBroadcast(gamePin, GameMessageIds.START_QUESTION, startQuestion("{\"questionIndex\":0}"));
+
+        assertThat(timer.onHostBroadcast(gamePin, GameMessageIds.TIME_UP, new byte[0])).isTrue();
+
+        assertThat(timer.stampAnswer(gamePin, "p1", answer("p1"))).isNull();
+        assertThat(timer.measuredAnswer(gamePin, 0, "p1")).isNull();
+    }
+
+    @Test
+    void relaysLateAnswersUnstampedWhenConfiguredTo() {
+        properties.getQuestionTimer().setRejectLateAnswers(false);
+        timer.onHostBroadcast(gamePin, GameMessageIds.START_QUESTION, startQuestion("{\"questionIndex\":0}"));
+        timer.onHostBroadcast(gamePin, GameMessageIds.GAME_OVER, new byte[0]);
+        byte[] answer = answer("p1");
+
+        assertThat(timer.stampAnswer(gamePin, "p1", answer)).isSameAs(answer);
+    }
+
+    @Test
+    void closesTheWindowWhenTheTimeLimitRunsOut() throws Exception {
+        timer.onHostBroadcast(gamePin, GameMessageIds.START_QUESTION, startQuestion("{\"questionIndex\":2,\"time\":50}"));
+
+        JsonNode timeUp = playerFrames.poll(2, TimeUnit.SECONDS);
+        assertThat(timeUp).as("a TIME_UP from the server").isNotNull();
+        assertThat(timeUp.get("data").get("id").asInt()).isEqualTo(GameMessageIds.TIME_UP);
+        JsonNode content = objectMapper.readTree(timeUp.get("data").get("content").asText());
+        assertThat(content.get("questionIndex").asInt()).isEqualTo(2);
+        assertThat(content.get("closedBy").asText()).isEqualTo("server");
+
+        assertThat(timer.stampAnswer(gamePin, "p1", answer("p1"))).isNull();
+        // The host's own TIME_UP for the same question is not relayed again, a later one is
+        assertThat(timer.onHostBroadcast(gamePin, GameMessageIds.TIME_UP, new byte[0])).isFalse();
+        assertThat(timer.onHostBroadcast(gamePin, GameMessageIds.TIME_UP, new byte[0])).isTrue();
+    }
+
+    @Test
+    void leavesTheWindowToTheNextQuestionOnceReplaced() throws Exception {
+        timer.onHostBroadcast(gamePin, GameMessageIds.START_QUESTION, startQuestion("{\"questionIndex\":0,\"time\":50}"));
+        timer.onHostBroadcast(gamePin, GameMessageIds.START_QUESTION, startQuestion("{\"questionIndex\":1}"));
+
+        assertThat(playerFrames.poll(300, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(timer.stampAnswer(gamePin, "p1", answer("p1"))).isNotNull();
+        assertThat(timer.measuredAnswer(gamePin, 1, "p1")).isNotNull();
+    }
+
+    private byte[] startQuestion(String content) {
+        Map<String, Object> data = Map.of("id", GameMessageIds.START_QUESTION, "content", content);
+        try {
+            return objectMapper.writeValueAsBytes(Map.of("data", data));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] answer(String playerId) {
+        return ("{\"data\":{\"id\":" + GameMessageIds.ANSWER + ",\"cid\":\"" + playerId + "\"}}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean capture(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && destination.startsWith("/topic/player/")) {
+            try {
+                playerFrames.add(objectMapper.readTree((byte[]) message.getPayload()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return true;
+    }
+}
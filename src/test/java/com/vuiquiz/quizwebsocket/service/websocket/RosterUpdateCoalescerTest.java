@@ -0,0 +1,176 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RosterUpdateCoalescerTest {
+
+    private static final long DEBOUNCE_MS = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Frames sent to /topic/player/{pin}
+    private final BlockingQueue<JsonNode> deltas = new LinkedBlockingQueue<>();
+    private GameSessionManager sessionManager;
+    private RosterUpdateCoalescer coalescer;
+    private String gamePin;
+
+    @BeforeEach
+    void setUp() {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getRoster().setDebounceMs(DEBOUNCE_MS);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        sessionManager = new GameSessionManager(new GamePinAllocator(meterRegistry), properties, meterRegistry);
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> capture(message));
+        coalescer = new RosterUpdateCoalescer(sessionManager, new GameMessageBroadcaster(template), properties,
+                new SlowConsumerPolicy(properties, meterRegistry));
+        coalescer.register();
+
+        gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+        sessionManager.shutdown();
+    }
+
+    @Test
+    void sendsChangesWithinTheDebounceWindowAsOneDelta() throws Exception {
+        join("p1");
+        join("p2");
+        join("p3");
+
+        JsonNode delta = nextDelta();
+        assertThat(ids(delta.get("joined"))).containsExactly("p1", "p2", "p3");
+        assertThat(ids(delta.get("left"))).isEmpty();
+        assertThat(delta.get("playerCount").asInt()).isEqualTo(3);
+        assertThat(deltas.poll(3 * DEBOUNCE_MS, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void cancelsAJoinAndLeaveOfTheSameSessionWithinAWindow() throws Exception {
+        join("p1");
+        join("p2");
+        leave("p1");
+
+        JsonNode delta = nextDelta();
+        assertThat(ids(delta.get("joined"))).containsExactly("p2");
+        assertThat(ids(delta.get("left"))).isEmpty();
+    }
+
+    @Test
+    void sendsNothingWhenAllChangesCancelOut() throws Exception {
+        join("p1");
+        leave("p1");
+
+        assertThat(deltas.poll(3 * DEBOUNCE_MS, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void chainsVersionsFromDeltaToDelta() throws Exception {
+        join("p1");
+        JsonNode first = nextDelta();
+        assertThat(first.get("fromVersion").asLong()).isZero();
+        assertThat(first.get("version").asLong()).isEqualTo(1);
+
+        join("p2");
+        JsonNode second = nextDelta();
+        assertThat(second.get("fromVersion").asLong()).isEqualTo(1);
+        assertThat(second.get("version").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    void startsFromTheLastSentVersionAfterAWindowThatCancelledOut() throws Exception {
+        join("p1");
+        JsonNode first = nextDelta();
+
+        join("p2");
+        leave("p2"); // Moves the roster to version 3 without a delta
+        assertThat(deltas.poll(3 * DEBOUNCE_MS, TimeUnit.MILLISECONDS)).isNull();
+
+        join("p3");
+        JsonNode next = nextDelta();
+        assertThat(next.get("fromVersion").asLong()).isEqualTo(first.get("version").asLong());
+        assertThat(next.get("version").asLong()).isEqualTo(4);
+    }
+
+    @Test
+    void announcesTheHostWithoutListingItAsJoined() throws Exception {
+        String otherGame = sessionManager.createSession();
+        sessionManager.trySetHost(otherGame, "host2");
+        coalescer.participantJoined(otherGame, "host2");
+
+        JsonNode delta = nextDelta();
+        assertThat(delta.get("hostId").asText()).isEqualTo("host2");
+        assertThat(ids(delta.get("joined"))).isEmpty();
+        assertThat(delta.get("version").asLong()).isZero();
+    }
+
+    @Test
+    void mergesDeltasWithTheOlderBaseAndTheNewerVersion() throws Exception {
+        byte[] older = objectMapper.writeValueAsBytes(objectMapper.readTree(
+                "{\"type\":\"ROSTER_DELTA\",\"fromVersion\":4,\"version\":6,\"playerCount\":5,\"joined\":[\"a\",\"b\"],\"left\":[\"c\"]}"));
+        byte[] newer = objectMapper.writeValueAsBytes(objectMapper.readTree(
+                "{\"type\":\"ROSTER_DELTA\",\"fromVersion\":6,\"version\":9,\"playerCount\":5,\"joined\":[\"c\",\"d\"],\"left\":[\"a\",\"e\"]}"));
+
+        JsonNode merged = objectMapper.readTree(coalescer.mergeDeltas(older, newer));
+
+        assertThat(merged.get("fromVersion").asLong()).isEqualTo(4);
+        assertThat(merged.get("version").asLong()).isEqualTo(9);
+        assertThat(ids(merged.get("joined"))).containsExactly("b", "d");
+        assertThat(ids(merged.get("left"))).containsExactly("e");
+    }
+
+    private void join(String sessionId) {
+        sessionManager.addParticipant(gamePin, sessionId);
+        coalescer.participantJoined(gamePin, sessionId);
+    }
+
+    private void leave(String sessionId) {
+        sessionManager.removeParticipant(sessionId);
+        coalescer.participantLeft(gamePin, sessionId);
+    }
+
+    private JsonNode nextDelta() throws InterruptedException {
+        JsonNode delta = deltas.poll(2, TimeUnit.SECONDS);
+        assertThat(delta).as("a roster delta").isNotNull();
+        assertThat(delta.get("type").asText()).isEqualTo(RosterUpdateCoalescer.ROSTER_DELTA);
+        return delta;
+    }
+
+    private boolean capture(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && destination.startsWith("/topic/player/")) {
+            try {
+                deltas.add(objectMapper.readTree((byte[]) message.getPayload()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return true;
+    }
+
+    private static List<String> ids(JsonNode array) {
+        List<String> ids = new ArrayList<>();
+        array.forEach(id -> ids.add(id.asText()));
+        return ids;
+    }
+}
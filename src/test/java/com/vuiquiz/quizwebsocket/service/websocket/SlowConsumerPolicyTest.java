@@ -0,0 +1,124 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlowConsumerPolicyTest {
+
+    private static final String SESSION_ID = "s1";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Message<?>> released = new ArrayList<>();
+    private final MessageChannel channel = (message, timeout) -> released.add(message);
+    private SlowConsumerPolicy policy;
+    private WebSocketSession countingSession;
+
+    @BeforeEach
+    void connect() throws Exception {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getSlowConsumer().setConflateAfterFrames(2);
+        policy = new SlowConsumerPolicy(properties, new SimpleMeterRegistry());
+        new RosterUpdateCoalescer(mock(GameSessionManager.class), null, properties, policy).register();
+
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(SESSION_ID);
+        WebSocketHandler handler = new AbstractWebSocketHandler() {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession decorated) {
+                countingSession = decorated;
+            }
+        };
+        policy.decorate(handler).afterConnectionEstablished(session);
+    }
+
+    @Test
+    void mergesParkedRosterDeltasInsteadOfKeepingOnlyTheNewest() throws Exception {
+        fallBehind();
+
+        assertThat(policy.beforeHandle(delta(1, List.of("a", "b"), List.of()), channel, null)).isNull();
+        assertThat(policy.beforeHandle(delta(2, List.of("c"), List.of("a", "x")), channel, null)).isNull();
+        catchUp();
+
+        assertThat(released).hasSize(1);
+        JsonNode merged = objectMapper.readTree((byte[]) released.get(0).getPayload());
+        assertThat(merged.get("version").asLong()).isEqualTo(2);
+        assertThat(ids(merged.get("joined"))).containsExactly("b", "c");
+        assertThat(ids(merged.get("left"))).containsExactly("x");
+    }
+
+    @Test
+    void keepsOnlyTheNewestFrameOfKeysWithoutAMerger() throws Exception {
+        fallBehind();
+
+        policy.beforeHandle(frame("{\"n\":1}", SlowConsumerPolicy.RANKING), channel, null);
+        policy.beforeHandle(frame("{\"n\":2}", SlowConsumerPolicy.RANKING), channel, null);
+        catchUp();
+
+        assertThat(released).hasSize(1);
+        assertThat(new String((byte[]) released.get(0).getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"n\":2}");
+    }
+
+    @Test
+    void deliversSupersedableFramesDirectlyWhileTheSessionKeepsUp() throws Exception {
+        Message<?> delta = delta(1, List.of("a"), List.of());
+
+        assertThat(policy.beforeHandle(delta, channel, null)).isSameAs(delta);
+    }
+
+    // Hands frames to the session that it has not written yet
+    private void fallBehind() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            assertThat(policy.beforeHandle(frame("{}", null), channel, null)).isNotNull();
+        }
+    }
+
+    private void catchUp() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            countingSession.sendMessage(new TextMessage("MESSAGE\n\n{}"));
+        }
+    }
+
+    private Message<byte[]> delta(long version, List<String> joined, List<String> left) throws Exception {
+        Map<String, Object> payload = Map.of("type", RosterUpdateCoalescer.ROSTER_DELTA, "version", version,
+                "joined", joined, "left", left);
+        return frame(objectMapper.writeValueAsString(payload), SlowConsumerPolicy.ROSTER);
+    }
+
+    private static Message<byte[]> frame(String json, String conflationKey) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setDestination("/topic/player/123456");
+        if (conflationKey != null) {
+            accessor.setHeader(SlowConsumerPolicy.CONFLATION_KEY_HEADER, conflationKey);
+        }
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private static List<String> ids(JsonNode array) {
+        List<String> ids = new ArrayList<>();
+        array.forEach(id -> ids.add(id.asText()));
+        return ids;
+    }
+}
@@ -0,0 +1,57 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long START = TimeUnit.SECONDS.toNanos(100);
+
+    @Test
+    void acceptsABurstThenRejects() {
+        TokenBucket bucket = new TokenBucket(10, 5, START);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(START)).as("frame %d", i).isTrue();
+        }
+        assertThat(bucket.tryAcquire(START)).isFalse();
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(10, 1, START);
+        assertThat(bucket.tryAcquire(START)).isTrue();
+
+        assertThat(bucket.tryAcquire(START + TimeUnit.MILLISECONDS.toNanos(50))).isFalse();
+        assertThat(bucket.tryAcquire(START + TimeUnit.MILLISECONDS.toNanos(100))).isTrue();
+        assertThat(bucket.tryAcquire(START + TimeUnit.MILLISECONDS.toNanos(150))).isFalse();
+    }
+
+    @Test
+    void reportsOnlyTheFirstRejectionUntilAFrameIsAccepted() {
+        TokenBucket bucket = new TokenBucket(10, 1, START);
+        bucket.tryAcquire(START);
+
+        assertThat(bucket.tryAcquire(START)).isFalse();
+        assertThat(bucket.markThrottled()).isTrue();
+        assertThat(bucket.tryAcquire(START)).isFalse();
+        assertThat(bucket.markThrottled()).isFalse();
+
+        assertThat(bucket.tryAcquire(START + TimeUnit.SECONDS.toNanos(1))).isTrue();
+        assertThat(bucket.markThrottled()).isTrue();
+    }
+
+    @Test
+    void isFullOnceEverythingHasRefilled() {
+        TokenBucket bucket = new TokenBucket(10, 3, START);
+        assertThat(bucket.isFull(START)).isTrue();
+
+        bucket.tryAcquire(START);
+        bucket.tryAcquire(START);
+        assertThat(bucket.isFull(START)).isFalse();
+        assertThat(bucket.isFull(START + TimeUnit.MILLISECONDS.toNanos(200))).isTrue();
+    }
+}
@@ -0,0 +1,133 @@
+package com.vuiquiz.quizwebsocket.service.websocket;
+
+import com.vuiquiz.quizwebsocket.config.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopicLastValueCacheTest {
+
+    private final List<Message<?>> sent = new ArrayList<>();
+    private WebSocketProperties properties;
+    private GameSessionManager sessionManager;
+    private TopicLastValueCache cache;
+    private String gamePin;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebSocketProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        sessionManager = new GameSessionManager(new GamePinAllocator(meterRegistry), properties, meterRegistry);
+        cache = new TopicLastValueCache(sessionManager, properties, (message, timeout) -> sent.add(message), meterRegistry);
+        cache.register();
+
+        gamePin = sessionManager.createSession();
+        sessionManager.trySetHost(gamePin, "host");
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionManager.shutdown();
+    }
+
+    @Test
+    void replaysTheLatestFrameOfEachMessageIdOldestFirst() {
+        cache.record(gamePin, GameMessageIds.GET_READY, frame("ready 1"), Map.of());
+        cache.record(gamePin, GameMessageIds.START_QUESTION, frame("question 1"), Map.of());
+        cache.record(gamePin, GameMessageIds.TIME_UP, frame("time up 1"), Map.of());
+        cache.record(gamePin, GameMessageIds.GET_READY, frame("ready 2"), Map.of());
+
+        int replayed = cache.replayTo(gamePin, "late", "sub-0");
+
+        assertThat(replayed).isEqualTo(3);
+        assertThat(payloads()).containsExactly("question 1", "time up 1", "ready 2");
+    }
+
+    @Test
+    void sendsToTheLateSubscriptionOnly() {
+        cache.record(gamePin, GameMessageIds.START_QUESTION, frame("question 1"), Map.of("seq", "7"));
+
+        cache.replayTo(gamePin, "late", "sub-0");
+
+        Message<?> message = sent.get(0);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        assertThat(accessor.getSessionId()).isEqualTo("late");
+        assertThat(accessor.getSubscriptionId()).isEqualTo("sub-0");
+        assertThat(accessor.getDestination()).isEqualTo("/topic/player/" + gamePin);
+        assertThat(accessor.getFirstNativeHeader(TopicLastValueCache.LAST_VALUE_HEADER)).isEqualTo("true");
+        assertThat(accessor.getFirstNativeHeader("seq")).isEqualTo("7");
+        assertThat(OutboundPriority.of(message)).isEqualTo(OutboundPriority.URGENT);
+    }
+
+    @Test
+    void replaysNothingForAGameWithoutBroadcasts() {
+        assertThat(cache.replayTo(gamePin, "late", "sub-0")).isZero();
+        cache.record(gamePin, GameMessageIds.START_QUESTION, frame("question 1"), Map.of());
+        assertThat(cache.replayTo(gamePin, "late", null)).isZero();
+        assertThat(sent).isEmpty();
+    }
+
+    @Test
+    void startsOverOnPlayAgain() {
+        cache.record(gamePin, GameMessageIds.START_QUESTION, frame("question 1"), Map.of());
+        cache.record(gamePin, GameMessageIds.GAME_OVER, frame("game over"), Map.of());
+
+        cache.record(gamePin, GameMessageIds.PLAY_AGAIN, frame("play again"), Map.of());
+        cache.replayTo(gamePin, "late", "sub-0");
+
+        assertThat(payloads()).containsExactly("play again");
+    }
+
+    @Test
+    void skipsOversizedFramesAndMessageIdsBeyondTheBound() {
+        properties.getLastValue().setMaxTypesPerGame(2);
+        properties.getLastValue().setMaxFrameBytes(16);
+        cache.record(gamePin, GameMessageIds.GET_READY, frame("ready"), Map.of());
+        cache.record(gamePin, GameMessageIds.START_QUESTION, frame("a question too large to cache"), Map.of());
+        cache.record(gamePin, GameMessageIds.START_QUESTION, frame("question"), Map.of());
+        cache.record(gamePin, GameMessageIds.TIME_UP, frame("time up"), Map.of());
+        cache.record(gamePin, GameMessageIds.GET_READY, frame("ready 2"), Map.of());
+
+        cache.replayTo(gamePin, "late", "sub-0");
+
+        assertThat(payloads()).containsExactly("question", "ready 2");
+    }
+
+    @Test
+    void dropsAGameWithItsSession() {
+        cache.record(gamePin, GameMessageIds.START_QUESTION, frame("question 1"), Map.of());
+
+        cache.sessionEvicted(gamePin, GameSessionManager.EvictionReason.IDLE);
+
+        assertThat(cache.replayTo(gamePin, "late", "sub-0")).isZero();
+    }
+
+    @Test
+    void ignoresBroadcastsOfUnknownGames() {
+        cache.record("999999", GameMessageIds.START_QUESTION, frame("question 1"), Map.of());
+
+        assertThat(cache.replayTo("999999", "late", "sub-0")).isZero();
+    }
+
+    private List<String> payloads() {
+        List<String> payloads = new ArrayList<>();
+        for (Message<?> message : sent) {
+            payloads.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+        }
+        return payloads;
+    }
+
+    private static byte[] frame(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}